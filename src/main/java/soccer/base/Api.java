@@ -1,21 +1,20 @@
 package soccer.base;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
 public class Api {
 
@@ -172,40 +171,48 @@ public class Api {
         }
     }
 
-    public static RestOutput<List<String>> loadHtmlPage(Path htmlPagePath) {
+    public static RestOutput<byte[]> gzip(byte[] byteArray) {
 
-        RestOutput<byte[]> resourceByteArrayOutput;
-        byte[] resourceByteArray;
-        List<String> htmlPage;
-        String line;
+        ByteArrayOutputStream byteArrayOutputStream;
 
-        if (Api.isNull(htmlPagePath)) {
+        if (Api.isNull(byteArray)) {
             return RestOutput.badRequest();
         }
 
-        // Load the Resource
-        resourceByteArrayOutput = loadResource(htmlPagePath);
-        if (RestOutput.isNOK(resourceByteArrayOutput)) {
-            Api.error("loadHtmlPage is NOT OK", resourceByteArrayOutput, htmlPagePath);
-            return RestOutput.of(resourceByteArrayOutput);
+        byteArrayOutputStream = new ByteArrayOutputStream(byteArray.length / 4 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(byteArray);
+        } catch (IOException e) {
+            error(e, "Failure to gzip. INTERNAL FAILURE", byteArray.length);
+            return RestOutput.internalFailure();
         }
-        resourceByteArray = resourceByteArrayOutput.output();
 
-        htmlPage = new ArrayList<String>();
+        return RestOutput.ok(byteArrayOutputStream.toByteArray());
+    }
 
-        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(resourceByteArray,
-                                                                                                               0,
-                                                                                                               resourceByteArray.length)))) {
+    public static RestOutput<String> hash(byte[] byteArray) {
 
-            while ((line = bufferedReader.readLine()) != null) {
-                htmlPage.add(line);
-            }
-        } catch (IOException e) {
-            Api.error(e, "loadHtmlPage failed. INTERNAL FAILURE", htmlPagePath);
+        byte[] digest;
+        StringBuilder stringBuilder;
+
+        if (Api.isNull(byteArray)) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(byteArray);
+        } catch (NoSuchAlgorithmException e) {
+            error(e, "Failure to hash. INTERNAL FAILURE", byteArray.length);
             return RestOutput.internalFailure();
         }
 
-        return RestOutput.ok(htmlPage);
+        // Hexadecimal, as used in URLs and entity tags
+        stringBuilder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            stringBuilder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return RestOutput.ok(stringBuilder.toString());
     }
 
     public static ExecutorService executorService(String poolName) {
@@ -213,6 +220,61 @@ public class Api {
         return Executors.newCachedThreadPool(new BaseThreadFactory(poolName));
     }
 
+    public static Integer integerProperty(String property, Integer defaultValue) {
+
+        String value;
+
+        value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            Api.info("Property " + property + " = " + value);
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            Api.error("Property " + property + " is not a valid integer. Default value used", value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static <E extends Enum<E>> E enumProperty(String property, Class<E> enumClass, E defaultValue) {
+
+        String value;
+
+        value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            Api.info("Property " + property + " = " + value);
+            return Enum.valueOf(enumClass, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Api.error("Property " + property + " is not a valid value. Default value used", value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static Duration durationProperty(String property, Duration defaultValue) {
+
+        String value;
+
+        value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            // Durations are provided in milliseconds
+            Api.info("Property " + property + " = " + value + " ms");
+            return Duration.ofMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            Api.error("Property " + property + " is not a valid duration. Default value used", value, defaultValue);
+            return defaultValue;
+        }
+    }
+
     public static URI URI(String uri) {
 
         try {
@@ -1,62 +1,114 @@
 package soccer.handler.core;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
 import soccer.base.Result;
+import soccer.handler.market.MarketIndex;
+import soccer.handler.player.PlayerStorage;
 import soccer.handler.session.SessionHandler;
+import soccer.handler.session.SessionStore;
+import soccer.handler.session.SessionTokenMode;
+import soccer.handler.session.TokenSigner;
 import soccer.handler.team.TeamHandler;
 import soccer.handler.user.UserHandler;
 import soccer.http.HttpService;
+import soccer.http.AssetCache;
+import soccer.http.servlet.AssetServlet;
 import soccer.http.servlet.DashboardServlet;
 import soccer.http.servlet.LoginServlet;
-import soccer.model.Market;
+import soccer.model.MarketQuery;
 import soccer.model.Player;
 import soccer.model.PlayerId;
 import soccer.model.Team;
 import soccer.model.TeamId;
 import soccer.model.User;
 import soccer.model.UserToken;
+import soccer.model.event.EventType;
 import soccer.model.outcome.CreateTeamOutcome;
 import soccer.model.outcome.TransferPlayerOutcome;
 import soccer.model.outcome.UpdatePlayerOutcome;
 import soccer.model.outcome.UpdateTeamOutcome;
+import soccer.rest.EventHub;
+import soccer.rest.Payload;
+import soccer.rest.PayloadCache;
+import soccer.rest.RestCall;
 import soccer.rest.RestService;
 import soccer.store.StoreService;
 import soccer.store.player.PlayerRecord;
+import soccer.store.snapshot.SnapshotReader;
+import soccer.store.snapshot.SnapshotStore;
+import soccer.store.snapshot.SnapshotWriter;
 import soccer.store.team.TeamRecord;
 import soccer.store.user.UserRecord;
 
 public class CoreHandler {
 
-    private final ConcurrentHashMap<String, UserHandler>       _userHandlerMap;
-    private final ConcurrentHashMap<UserToken, SessionHandler> _sessionHandlerMap;
-    private final StoreService                                 _storeService;
-    private final RestService                                  _restService;
-    private final HttpService                                  _httpService;
-
-    private CoreHandler(URI databaseURI, Optional<String> webPathOptional, Optional<Integer> webPortOptional) {
+    private final ConcurrentHashMap<String, UserHandler> _userHandlerMap;
+    private final ConcurrentHashMap<TeamId, UserHandler> _teamUserHandlerMap;
+    private final EventHub                               _eventHub;
+    private final SessionStore                           _sessionStore;
+    // Present when sessions are held by signed tokens rather than in memory
+    private final Optional<TokenSigner>                  _tokenSignerOptional;
+    private final MarketIndex                            _marketIndex;
+    private final PlayerStorage                          _playerStorage;
+    private final PayloadCache<TeamId>                   _teamPayloadCache;
+    private final PayloadCache<String>                   _marketPayloadCache;
+    private final StoreService                           _storeService;
+    // Present when a snapshot of all users, teams and players is kept on disk
+    private final Optional<SnapshotStore>                _snapshotStoreOptional;
+    private final AssetCache                             _assetCache;
+    private final RestService                            _restService;
+    private final HttpService                            _httpService;
+
+    private CoreHandler(StoreService storeService,
+                        Optional<String> webPathOptional,
+                        Optional<Integer> webPortOptional,
+                        Optional<TokenSigner> tokenSignerOptional) {
 
         _userHandlerMap = new ConcurrentHashMap<String, UserHandler>();
-        _sessionHandlerMap = new ConcurrentHashMap<UserToken, SessionHandler>();
-        _storeService = new StoreService(databaseURI);
+        // Index of the users by team, to find the owner of a team in constant time
+        _teamUserHandlerMap = new ConcurrentHashMap<TeamId, UserHandler>();
+        // Changes of the market pushed to the dashboards
+        _eventHub = new EventHub();
+        // A dashboard listening to events does not poll, but its session remains in use
+        _sessionStore = new SessionStore(_eventHub::isSubscribed, _eventHub::unsubscribe);
+        _tokenSignerOptional = tokenSignerOptional;
+        // Players in the market, maintained as players are updated and transferred
+        _marketIndex = new MarketIndex(_eventHub::publish);
+        // Fields of all players of this CoreHandler, released along with it
+        _playerStorage = new PlayerStorage();
+        _teamPayloadCache = new PayloadCache<TeamId>("team", Setup.TEAM_PAYLOAD_CACHE_SIZE);
+        _marketPayloadCache = new PayloadCache<String>("market", Setup.MARKET_PAYLOAD_CACHE_SIZE);
+        _storeService = storeService;
+        _snapshotStoreOptional = Optional.ofNullable(System.getProperty(Setup.SNAPSHOT_PATH_PROPERTY))
+                                         .map(path -> new SnapshotStore(Path.of(path),
+                                                                        _storeService,
+                                                                        this::writeSnapshot));
+        // Pages and their static assets, loaded once at startup
+        _assetCache = new AssetCache(Setup.WEB_ASSET_LIST, Setup.WEB_PAGE_LIST);
         _restService = new RestService(this);
         _httpService = new HttpService(webPathOptional,
                                        webPortOptional,
                                        restService(),
-                                       List.of(new LoginServlet(this), new DashboardServlet(this)),
+                                       List.of(new LoginServlet(this),
+                                               new DashboardServlet(this),
+                                               new AssetServlet(this)),
                                        Setup.WEB_PATH);
     }
 
@@ -65,9 +117,49 @@ public class CoreHandler {
         return _userHandlerMap;
     }
 
-    private ConcurrentHashMap<UserToken, SessionHandler> sessionHandlerMap() {
+    private ConcurrentHashMap<TeamId, UserHandler> teamUserHandlerMap() {
+
+        return _teamUserHandlerMap;
+    }
+
+    private SessionStore sessionStore() {
+
+        return _sessionStore;
+    }
+
+    private Optional<TokenSigner> tokenSignerOptional() {
+
+        return _tokenSignerOptional;
+    }
+
+    private EventHub eventHub() {
+
+        return _eventHub;
+    }
+
+    private MarketIndex marketIndex() {
+
+        return _marketIndex;
+    }
+
+    private PlayerStorage playerStorage() {
+
+        return _playerStorage;
+    }
+
+    private PayloadCache<TeamId> teamPayloadCache() {
+
+        return _teamPayloadCache;
+    }
+
+    private PayloadCache<String> marketPayloadCache() {
+
+        return _marketPayloadCache;
+    }
+
+    private Optional<SnapshotStore> snapshotStoreOptional() {
 
-        return _sessionHandlerMap;
+        return _snapshotStoreOptional;
     }
 
     private StoreService storeService() {
@@ -75,6 +167,11 @@ public class CoreHandler {
         return _storeService;
     }
 
+    public AssetCache assetCache() {
+
+        return _assetCache;
+    }
+
     public RestService restService() {
 
         return _restService;
@@ -85,35 +182,108 @@ public class CoreHandler {
         return _httpService;
     }
 
+    private RestOutput<UserToken> openSession(UserHandler userHandler) {
+
+        RestOutput<UserToken> userTokenOutput;
+        UserToken userToken;
+        RestOutput<SessionHandler> sessionHandlerOutput;
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(userHandler)) {
+            return RestOutput.badRequest();
+        }
+
+        // A signed token holds the session itself, nothing is kept in memory
+        if (tokenSignerOptional().isPresent()) {
+            userTokenOutput = tokenSignerOptional().get().sign(userHandler.userId());
+            if (RestOutput.isNOK(userTokenOutput)) {
+                Api.error("sign to openSession is NOT OK", userTokenOutput, userHandler, this);
+                return RestOutput.of(userTokenOutput);
+            }
+            return userTokenOutput;
+        }
+
+        // Generate unique User Token
+        userToken = new UserToken(UUID.randomUUID().toString());
+
+        sessionHandlerOutput = SessionHandler.with(userToken, userHandler);
+        if (RestOutput.isNOK(sessionHandlerOutput)) {
+            Api.error("SessionHandler to openSession is NOT OK", sessionHandlerOutput, userToken, userHandler, this);
+            return RestOutput.of(sessionHandlerOutput);
+        }
+
+        // Add the session, closing the oldest sessions of this user beyond the limit
+        resultOutput = sessionStore().add(sessionHandlerOutput.output());
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("add SessionHandler to openSession is NOT OK", resultOutput, userToken, userHandler, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        return RestOutput.ok(userToken);
+    }
+
     private RestOutput<UserHandler> findUserHandler(UserToken userToken) {
 
-        SessionHandler sessionHandler;
+        RestOutput<String> userIdOutput;
+        UserHandler userHandler;
+        RestOutput<SessionHandler> sessionHandlerOutput;
 
         if (Api.isNull(userToken)) {
             return RestOutput.badRequest();
         }
 
-        sessionHandler = sessionHandlerMap().get(userToken);
-        if (sessionHandler == null) {
-            Api.error("This session does not exist anymore. FORBIDDEN", userToken, this);
-            return RestOutput.forbidden();
+        // A signed token is verified without any session lookup
+        if (tokenSignerOptional().isPresent()) {
+            userIdOutput = tokenSignerOptional().get().verify(userToken);
+            if (RestOutput.isNOK(userIdOutput)) {
+                return RestOutput.of(userIdOutput);
+            }
+            userHandler = userHandlerMap().get(userIdOutput.output());
+            if (userHandler == null) {
+                Api.error("User of this token does not exist. FORBIDDEN", userToken, this);
+                return RestOutput.forbidden();
+            }
+            return RestOutput.ok(userHandler);
         }
 
-        if (sessionHandler.hasTimedOut()) {
-            Api.error("This session has timed out. FORBIDDEN", userToken, sessionHandler, this);
-            return RestOutput.forbidden();
+        // Find and refresh the session
+        sessionHandlerOutput = sessionStore().find(userToken);
+        if (RestOutput.isNOK(sessionHandlerOutput)) {
+            return RestOutput.of(sessionHandlerOutput);
         }
 
-        // Refresh the session
-        sessionHandler.refresh();
-
-        return RestOutput.ok(sessionHandler.userHandler());
+        return RestOutput.ok(sessionHandlerOutput.output().userHandler());
     }
 
     private void monitorSessionHandlers() {
 
-        // Remove any session which has timed out
-        sessionHandlerMap().values().removeIf(SessionHandler::hasTimedOut);
+        // Report the sessions, expired by the SessionStore
+        Api.info("Sessions " + sessionStore(), this);
+        tokenSignerOptional().ifPresent(tokenSigner -> Api.info("Tokens " + tokenSigner, this));
+
+        // Report the contention between transfers, if any
+        if (TeamHandler.lockRetryCount() > 0) {
+            Api.info("Team locks " + TeamHandler.lockCount()
+                     + " retries "
+                     + TeamHandler.lockRetryCount()
+                     + " failures "
+                     + TeamHandler.lockFailureCount(), this);
+        }
+
+        // Report the reuse of serialized payloads
+        Api.info("Payload caches " + teamPayloadCache() + " " + marketPayloadCache(), this);
+
+        Api.info("Events " + eventHub(), this);
+
+        Api.info("Players " + playerStorage(), this);
+
+        snapshotStoreOptional().ifPresent(snapshotStore -> Api.info("Snapshots " + snapshotStore, this));
+
+        // Report the load of the rest calls
+        Api.info("Rest calls " + RestCall.executor(), this);
+
+        // Report the use of the database connections, and the time spent waiting for one
+        Api.info("Connections " + storeService().connectionPool(), this);
 
         // Reschedule the monitoring later on
         CompletableFuture.runAsync(this::monitorSessionHandlers,
@@ -121,6 +291,23 @@ public class CoreHandler {
                                                                      TimeUnit.MILLISECONDS));
     }
 
+    private boolean isSessionValid(UserToken userToken) {
+
+        // A signed token expires or is revoked without any notice, while a session in memory closes its stream
+        return tokenSignerOptional().map(tokenSigner -> RestOutput.isOK(tokenSigner.verify(userToken))).orElse(true);
+    }
+
+    private void heartbeatEvents() {
+
+        // Detect the event streams closed by their client, or whose session is not valid anymore
+        eventHub().heartbeat(this::isSessionValid);
+
+        // Reschedule the heartbeat later on
+        CompletableFuture.runAsync(this::heartbeatEvents,
+                                   CompletableFuture.delayedExecutor(Setup.EVENT_HEARTBEAT_PERIOD.toMillis(),
+                                                                     TimeUnit.MILLISECONDS));
+    }
+
     private RestOutput<UserHandler> addUser(User user, Boolean addToStore) {
 
         RestOutput<UserHandler> userHandlerOutput;
@@ -159,9 +346,8 @@ public class CoreHandler {
 
         RestOutput<UserHandler> userHandlerOutput;
         UserHandler userHandler;
+        RestOutput<UserToken> userTokenOutput;
         UserToken userToken;
-        RestOutput<SessionHandler> sessionHandlerOutput;
-        SessionHandler sessionHandler;
         RestOutput<Team> teamOutput;
         Team team;
         RestOutput<CreateTeamOutcome> createTeamOutcomeOutput;
@@ -178,29 +364,13 @@ public class CoreHandler {
         }
         userHandler = userHandlerOutput.output();
 
-        // Generate unique User Token
-        userToken = new UserToken(UUID.randomUUID().toString());
-
-        sessionHandlerOutput = SessionHandler.with(userToken, userHandler);
-        if (RestOutput.isNOK(sessionHandlerOutput)) {
-            Api.error("SessionHandler to signUpUser is NOT OK",
-                      sessionHandlerOutput,
-                      userToken,
-                      userHandler,
-                      user,
-                      this);
-            return RestOutput.of(sessionHandlerOutput);
-        }
-        sessionHandler = sessionHandlerOutput.output();
-
-        if (sessionHandlerMap().putIfAbsent(userToken, sessionHandler) != null) {
-            Api.error("SessionHandler to signUpUser is a duplicate. INTERNAL FAILURE",
-                      userToken,
-                      userHandler,
-                      user,
-                      this);
-            return RestOutput.internalFailure();
+        // Open a session for the new user
+        userTokenOutput = openSession(userHandler);
+        if (RestOutput.isNOK(userTokenOutput)) {
+            Api.error("openSession to signUpUser is NOT OK", userTokenOutput, userHandler, user, this);
+            return RestOutput.of(userTokenOutput);
         }
+        userToken = userTokenOutput.output();
 
         // Generate a random team
         teamOutput = TeamHandler.random();
@@ -224,15 +394,12 @@ public class CoreHandler {
             return RestOutput.internalFailure();
         }
 
-        return RestOutput.ok(sessionHandler.userToken());
+        return RestOutput.ok(userToken);
     }
 
     public RestOutput<UserToken> loginUser(User user) {
 
         UserHandler userHandler;
-        UserToken userToken;
-        RestOutput<SessionHandler> sessionHandlerOutput;
-        SessionHandler sessionHandler;
 
         if (Api.isNull(user, user.getUsername(), user.getPassword())) {
             return RestOutput.badRequest();
@@ -250,31 +417,41 @@ public class CoreHandler {
             return RestOutput.forbidden();
         }
 
-        // Generate unique User Token
-        userToken = new UserToken(UUID.randomUUID().toString());
+        // Open a session for this user
+        return openSession(userHandler);
+    }
 
-        sessionHandlerOutput = SessionHandler.with(userToken, userHandler);
-        if (RestOutput.isNOK(sessionHandlerOutput)) {
-            Api.error("SessionHandler to loginUser is NOT OK",
-                      sessionHandlerOutput,
-                      userToken,
-                      userHandler,
-                      user,
-                      this);
-            return RestOutput.of(sessionHandlerOutput);
+    public RestOutput<Result> logoutUser(UserToken userToken) {
+
+        RestOutput<UserHandler> userHandlerOutput;
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(userToken)) {
+            return RestOutput.badRequest();
         }
-        sessionHandler = sessionHandlerOutput.output();
 
-        if (sessionHandlerMap().putIfAbsent(userToken, sessionHandler) != null) {
-            Api.error("SessionHandler to loginUser is a duplicate. INTERNAL FAILURE",
-                      userToken,
-                      userHandler,
-                      user,
-                      this);
-            return RestOutput.internalFailure();
+        // Only a valid session may be closed
+        userHandlerOutput = findUserHandler(userToken);
+        if (RestOutput.isNOK(userHandlerOutput)) {
+            Api.error("findUserHandler to logoutUser is NOT OK", userHandlerOutput, userToken, this);
+            return RestOutput.of(userHandlerOutput);
+        }
+
+        // A signed token remains valid until revoked
+        if (tokenSignerOptional().isPresent()) {
+            resultOutput = tokenSignerOptional().get().revoke(userToken);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("revoke to logoutUser is NOT OK", resultOutput, userToken, this);
+                return RestOutput.of(resultOutput);
+            }
+            eventHub().unsubscribe(userToken);
+            return RestOutput.OK;
         }
 
-        return RestOutput.ok(sessionHandler.userToken());
+        // Its event stream is closed with the session
+        sessionStore().remove(userToken);
+
+        return RestOutput.OK;
     }
 
     public RestOutput<Result> validateUserToken(UserToken userToken) {
@@ -310,7 +487,7 @@ public class CoreHandler {
         errorReference = new AtomicReference<String>(null);
 
         // Associate a team to this user
-        teamHandlerOutput = userHandler.createTeam(team, errorReference);
+        teamHandlerOutput = userHandler.createTeam(team, playerStorage(), errorReference);
         if (RestOutput.isBadRequest(teamHandlerOutput)) {
             error = errorReference.get();
             if (error == null) {
@@ -329,6 +506,19 @@ public class CoreHandler {
         }
         teamHandler = teamHandlerOutput.output();
 
+        // Index this team, also when restored from the store at startup
+        if (teamUserHandlerMap().putIfAbsent(teamHandler.teamId(), userHandler) != null) {
+            Api.error("Team to createTeam is already indexed. INTERNAL FAILURE", teamHandler, userHandler, this);
+            return RestOutput.internalFailure();
+        }
+
+        // Present this team and its players already in the market
+        resultOutput = teamHandler.indexMarket(marketIndex());
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("indexMarket to createTeam is NOT OK", resultOutput, teamHandler, userHandler, this);
+            return RestOutput.of(resultOutput);
+        }
+
         if (addToStore) {
             // Persist this new team and its players in the store
             resultOutput = teamHandler.persist(Boolean.TRUE, userHandler.userId(), storeService());
@@ -342,10 +532,11 @@ public class CoreHandler {
         return RestOutput.ok(new CreateTeamOutcome(teamHandler.teamId()));
     }
 
-    public RestOutput<Team> retrieveTeam(UserToken userToken, Optional<TeamId> teamIdOptional) {
+    public RestOutput<Payload> retrieveTeam(UserToken userToken, Optional<TeamId> teamIdOptional) {
 
         RestOutput<UserHandler> userHandlerOutput;
         UserHandler userHandler;
+        TeamHandler teamHandler;
 
         if (Api.isNull(userToken, teamIdOptional)) {
             return RestOutput.badRequest();
@@ -359,7 +550,22 @@ public class CoreHandler {
         }
         userHandler = userHandlerOutput.output();
 
-        return userHandler.retrieveTeam(teamIdOptional);
+        teamHandler = userHandler.accessTeamHandler();
+        if (teamHandler == null) {
+            Api.error("Team for this user is not defined to retrieveTeam. NOT FOUND", userToken, userHandler, this);
+            return RestOutput.notFound();
+        }
+
+        // Checked before the cache, which is shared by all requests on this team
+        if (teamIdOptional.isPresent() && (teamIdOptional.get().equals(teamHandler.teamId()) == false)) {
+            Api.error("TeamId does not match to retrieveTeam. BAD REQUEST", userToken, teamIdOptional, this);
+            return RestOutput.badRequest();
+        }
+
+        // Serialize this team once per version
+        return teamPayloadCache().payload(teamHandler.teamId(),
+                                          teamHandler.version(),
+                                          () -> teamHandler.retrieveTeam(teamIdOptional));
     }
 
     public RestOutput<UpdateTeamOutcome> updateTeam(UserToken userToken, TeamId teamId, Team team) {
@@ -386,7 +592,11 @@ public class CoreHandler {
         }
 
         // Update this team
-        return userHandler.updateTeam(team.getTeamId(), team.getTeamName(), team.getTeamCountry(), storeService());
+        return userHandler.updateTeam(team.getTeamId(),
+                                      team.getTeamName(),
+                                      team.getTeamCountry(),
+                                      marketIndex(),
+                                      storeService());
     }
 
     public RestOutput<UpdatePlayerOutcome> updatePlayer(UserToken userToken, PlayerId playerId, Player player) {
@@ -418,17 +628,18 @@ public class CoreHandler {
                                         player.getPlayerLastName(),
                                         player.getPlayerCountry(),
                                         player.getPlayerTransferValue(),
+                                        marketIndex(),
                                         storeService());
     }
 
-    public RestOutput<Market> retrieveMarket(UserToken userToken) {
+    public RestOutput<Payload> retrieveMarket(UserToken userToken, MarketQuery marketQuery) {
 
         RestOutput<UserHandler> userHandlerOutput;
         UserHandler userHandler;
-        Team[] teamArray;
-        Market market;
+        TeamHandler teamHandler;
+        int pageSize;
 
-        if (Api.isNull(userToken)) {
+        if (Api.isNull(userToken, marketQuery)) {
             return RestOutput.badRequest();
         }
 
@@ -440,23 +651,47 @@ public class CoreHandler {
         }
         userHandler = userHandlerOutput.output();
 
-        // Iterate over the teams of all users excluding the active user
-        // To allow for concurrent transfers and to not lock all teams for this snapshot,
-        // we accept the very remote possibility for listing a player already transfered
-        // But the transfer function itself fully protects this race condition
+        teamHandler = userHandler.accessTeamHandler();
+        if (teamHandler == null) {
+            Api.error("Team for this user is not defined to retrieveMarket. NOT FOUND", userToken, userHandler, this);
+            return RestOutput.notFound();
+        }
+
+        pageSize = Objects.requireNonNullElse(marketQuery.getPageSize(), Setup.DEFAULT_MARKET_PAGE_SIZE);
+        if ((pageSize < 1) || (pageSize > Setup.MAX_MARKET_PAGE_SIZE)) {
+            Api.error("PageSize is not valid to retrieveMarket. BAD REQUEST", marketQuery, this);
+            return RestOutput.badRequest();
+        }
+
+        // Read from the market index without locking any team
+        // The transfer itself always checks the current state of the player
+        // A page depends on the team requesting it and on all the attributes of the query
+        return marketPayloadCache().payload(teamHandler.teamId() + " " + marketQuery,
+                                            marketIndex().version(),
+                                            () -> marketIndex().retrieveMarket(marketQuery,
+                                                                               teamHandler.teamId(),
+                                                                               pageSize));
+    }
 
-        teamArray = userHandlerMap().values()
-                                    .stream()
-                                    .filter(uh -> uh != userHandler)
-                                    .map(UserHandler::retrieveMarket)
-                                    .map(RestOutput::stream)
-                                    .filter(Objects::nonNull)
-                                    .flatMap(Optional::stream)
-                                    .toArray(Team[]::new);
+    public RestOutput<Result> subscribeEvents(UserToken userToken,
+                                              List<EventType> eventTypeList,
+                                              SseEventSink sseEventSink,
+                                              Sse sse) {
 
-        market = new Market(teamArray);
+        RestOutput<UserHandler> userHandlerOutput;
 
-        return RestOutput.ok(market);
+        if (Api.isNull(userToken, eventTypeList, sseEventSink, sse)) {
+            return RestOutput.badRequest();
+        }
+
+        // Only a valid session may listen to events
+        userHandlerOutput = findUserHandler(userToken);
+        if (RestOutput.isNOK(userHandlerOutput)) {
+            Api.error("UserHandler to subscribeEvents is NOT OK", userHandlerOutput, userToken, this);
+            return RestOutput.of(userHandlerOutput);
+        }
+
+        return eventHub().subscribe(userToken, eventTypeList, sseEventSink, sse);
     }
 
     public RestOutput<TransferPlayerOutcome> transferPlayer(UserToken userToken, Player player) {
@@ -490,9 +725,8 @@ public class CoreHandler {
             return RestOutput.ok(new TransferPlayerOutcome(teamId, playerId, "Team for this user is not defined"));
         }
 
-        // TODO Linear lookup OK as long as total number of teams remain small
-        fromUserHandler = userHandlerMap().values().stream().filter(uh -> uh.hasTeam(teamId)).findAny().orElse(null);
-
+        // Find the owner of the team to transfer from
+        fromUserHandler = teamUserHandlerMap().get(teamId);
         if (fromUserHandler == null) {
             Api.error("User of team to transfer from is not defined", userToken, toUserHandler, teamId, playerId, this);
             return RestOutput.ok(new TransferPlayerOutcome(teamId,
@@ -506,138 +740,290 @@ public class CoreHandler {
             return RestOutput.ok(new TransferPlayerOutcome(teamId, playerId, "Team to transfer from is not defined"));
         }
 
+        // A team can not buy its own player, as both sides of the transfer would be the same team record
+        if (fromTeamHandler == toTeamHandler) {
+            Api.error("Player to transfer already belongs to this team", userToken, toUserHandler, playerId, this);
+            return RestOutput.ok(new TransferPlayerOutcome(teamId,
+                                                           playerId,
+                                                           "Player to transfer already belongs to this team"));
+        }
+
         // Transfer this player from the old team to the team of this user
         return toTeamHandler.transferPlayer(fromUserHandler.userId(),
                                             fromTeamHandler,
                                             toUserHandler.userId(),
                                             playerId,
+                                            marketIndex(),
                                             storeService());
     }
 
-    public RestOutput<Result> run() {
+    private void restoreUser(UserRecord userRecord) {
 
-        RestOutput<Result> resultOutput;
-        RestOutput<UserHandler> addUserOutput;
-        RestOutput<List<UserRecord>> userRecordListOutput;
-        List<UserRecord> userRecordList;
         User user;
+        RestOutput<UserHandler> addUserOutput;
+
+        user = new User(userRecord.userId(), userRecord.userPassword());
+
+        // Add each user into the map
+        addUserOutput = addUser(user, Boolean.FALSE);
+        if (RestOutput.isNOK(addUserOutput)) {
+            Api.error("addUser to restoreUser failed. User skipped", addUserOutput, user, userRecord, this);
+        }
+    }
+
+    private boolean restoreTeam(TeamRecord teamRecord, Player[] playerArray) {
+
         UserHandler userHandler;
-        RestOutput<List<TeamRecord>> teamRecordListOutput;
-        List<TeamRecord> teamRecordList;
-        RestOutput<List<PlayerRecord>> playerRecordListOutput;
-        List<PlayerRecord> playerRecordList;
-        List<Player> playerList;
-        Map<TeamId, List<Player>> playerListMap;
         Team team;
         RestOutput<CreateTeamOutcome> createTeamOutcomeOutput;
         CreateTeamOutcome createTeamOutcome;
 
-        // Start the StoreService
-        resultOutput = storeService().start();
+        userHandler = userHandlerMap().get(teamRecord.userId());
+        if (userHandler == null) {
+            // The user may not be loaded yet
+            return false;
+        }
+
+        // Create the full team for this user
+        team = new Team(teamRecord.teamId(), teamRecord.name(), teamRecord.country(), teamRecord.balance(), playerArray);
+
+        // Add each team for its respective user
+        createTeamOutcomeOutput = createTeam(userHandler, team, Boolean.FALSE);
+        if (RestOutput.isNOK(createTeamOutcomeOutput)) {
+            Api.error("createTeam to restoreTeam failed. Team skipped",
+                      createTeamOutcomeOutput,
+                      team,
+                      teamRecord,
+                      userHandler,
+                      this);
+            return true;
+        }
+        createTeamOutcome = createTeamOutcomeOutput.output();
+
+        // The team should be recreated without error
+        if (createTeamOutcome.getError() != null) {
+            Api.error("createTream to restoreTeam failed. Team skipped",
+                      createTeamOutcome,
+                      team,
+                      teamRecord,
+                      userHandler,
+                      this);
+        }
+
+        return true;
+    }
+
+    private RestOutput<Result> loadPlayers(TeamAssembly teamAssembly) {
+
+        RestOutput<Result> resultOutput;
+
+        resultOutput = storeService().loadPlayerRecords(teamAssembly::offerPlayer);
         if (RestOutput.isNOK(resultOutput)) {
-            Api.error("Start StoreService is NOT OK", resultOutput, this);
+            Api.error("loadPlayerRecords is NOT OK", resultOutput, this);
             return RestOutput.of(resultOutput);
         }
 
-        // Load all users
-        userRecordListOutput = storeService().loadUserRecords();
-        if (RestOutput.isNOK(userRecordListOutput)) {
-            Api.error("loadUserRecords is NOT OK", userRecordListOutput, this);
-            return RestOutput.of(userRecordListOutput);
+        // The roster of the last team is not followed by another team
+        teamAssembly.completeRoster();
+
+        return RestOutput.OK;
+    }
+
+    private RestOutput<Result> loadStore() {
+
+        TeamAssembly teamAssembly;
+        ExecutorService executorService;
+        CompletableFuture<RestOutput<Result>> userFuture;
+        CompletableFuture<RestOutput<Result>> teamFuture;
+        CompletableFuture<RestOutput<Result>> playerFuture;
+        RestOutput<Result> userOutput;
+        RestOutput<Result> teamOutput;
+        RestOutput<Result> playerOutput;
+
+        // Each team is restored as soon as both its record and its players are read
+        teamAssembly = new TeamAssembly(this::restoreTeam);
+
+        // Load all users, teams and players concurrently
+        executorService = Api.executorService("loader");
+        try {
+            userFuture = CompletableFuture.supplyAsync(() -> storeService().loadUserRecords(this::restoreUser),
+                                                       executorService);
+            teamFuture = CompletableFuture.supplyAsync(() -> storeService().loadTeamRecords(teamAssembly::offerTeam),
+                                                       executorService);
+            playerFuture = CompletableFuture.supplyAsync(() -> loadPlayers(teamAssembly), executorService);
+
+            userOutput = userFuture.join();
+            teamOutput = teamFuture.join();
+            playerOutput = playerFuture.join();
+
+        } finally {
+            executorService.shutdown();
         }
-        userRecordList = userRecordListOutput.output();
 
-        for (UserRecord userRecord : userRecordList) {
+        if (RestOutput.isNOK(userOutput)) {
+            Api.error("loadUserRecords is NOT OK", userOutput, this);
+            return RestOutput.of(userOutput);
+        }
 
-            user = new User(userRecord.userId(), userRecord.userPassword());
+        if (RestOutput.isNOK(teamOutput)) {
+            Api.error("loadTeamRecords is NOT OK", teamOutput, this);
+            return RestOutput.of(teamOutput);
+        }
 
-            // Add each user into the map
-            addUserOutput = addUser(user, Boolean.FALSE);
-            if (RestOutput.isNOK(addUserOutput)) {
-                Api.error("addUser to run failed. User skipped", addUserOutput, user, userRecord, this);
-            }
+        if (RestOutput.isNOK(playerOutput)) {
+            Api.error("loadPlayers is NOT OK", playerOutput, this);
+            return RestOutput.of(playerOutput);
         }
 
-        // Load all teams
-        teamRecordListOutput = storeService().loadTeamRecords();
-        if (RestOutput.isNOK(teamRecordListOutput)) {
-            Api.error("loadTeamRecords is NOT OK", teamRecordListOutput, this);
-            return RestOutput.of(teamRecordListOutput);
+        // Restore the teams read before their user
+        teamAssembly.retryParkedTeams();
+
+        for (TeamRecord teamRecord : teamAssembly.parkedTeams()) {
+            Api.error("User does not exist to restore Team. Team skippped", teamRecord, this);
         }
-        teamRecordList = teamRecordListOutput.output();
 
-        // Load all players
-        playerRecordListOutput = storeService().loadPlayerRecords();
-        if (RestOutput.isNOK(playerRecordListOutput)) {
-            Api.error("loadPlayerRecords is NOT OK", playerRecordListOutput, this);
-            return RestOutput.of(playerRecordListOutput);
+        for (TeamRecord teamRecord : teamAssembly.teamsWithoutPlayers()) {
+            Api.error("no list of players to run. Team skipped", teamRecord, this);
         }
-        playerRecordList = playerRecordListOutput.output();
 
-        // Group all players into their relevant teams
-        playerListMap = playerRecordList.stream()
-                                        .map(pr -> new Player(pr.playerId(),
-                                                              pr.playerType(),
-                                                              pr.firstName(),
-                                                              pr.lastName(),
-                                                              pr.country(),
-                                                              pr.age(),
-                                                              pr.assetValue(),
-                                                              pr.transferValue(),
-                                                              pr.teamId()))
-                                        .collect(Collectors.groupingBy(Player::getTeamId));
+        // Check there is no orphan player without a team
+        if (teamAssembly.orphanRosterCount() > 0) {
+            Api.error("There are orphan players. INTERNAL FAILURE", teamAssembly.orphanRosterCount(), this);
+            return RestOutput.internalFailure();
+        }
 
-        for (TeamRecord teamRecord : teamRecordList) {
+        return RestOutput.OK;
+    }
 
-            userHandler = userHandlerMap().get(teamRecord.userId());
-            if (userHandler == null) {
-                Api.error("User does not exist to restore Team. Team skippped", teamRecord, this);
-                continue;
+    private RestOutput<Result> writeSnapshot(SnapshotWriter snapshotWriter) {
+
+        TeamHandler teamHandler;
+        Team team;
+        RestOutput<Result> resultOutput;
+
+        // Each team is captured under its lock, after the change sequence of the snapshot was read.
+        // Any change with a lower sequence is then published already, and any later one is replayed from the store
+        for (UserHandler userHandler : userHandlerMap().values()) {
+
+            resultOutput = snapshotWriter.writeUser(userHandler.userRecord());
+            if (RestOutput.isNOK(resultOutput)) {
+                return RestOutput.of(resultOutput);
             }
 
-            // Remove this list of players
-            playerList = playerListMap.remove(teamRecord.teamId());
-            if (playerList == null) {
-                Api.error("no list of players to run. Team skipped", teamRecord, userHandler, this);
+            teamHandler = userHandler.accessTeamHandler();
+            if (teamHandler == null) {
+                // The team of a new user is persisted after the snapshot started, so it is replayed from the store
                 continue;
             }
+            team = teamHandler.captureTeam().output();
 
-            // Create the full team for this user
-            team = new Team(teamRecord.teamId(),
-                            teamRecord.name(),
-                            teamRecord.country(),
-                            teamRecord.balance(),
-                            playerList.toArray(Player[]::new));
-
-            // Add each team for its respective user
-            createTeamOutcomeOutput = createTeam(userHandler, team, Boolean.FALSE);
-            if (RestOutput.isNOK(createTeamOutcomeOutput)) {
-                Api.error("createTeam to run failed. Team skipped",
-                          createTeamOutcomeOutput,
-                          team,
-                          teamRecord,
-                          userHandler,
-                          this);
-                continue;
+            resultOutput = snapshotWriter.writeTeam(new TeamRecord(userHandler.userId(),
+                                                                   team.getTeamId(),
+                                                                   team.getTeamName(),
+                                                                   team.getTeamCountry(),
+                                                                   team.getTeamBalance()));
+            if (RestOutput.isNOK(resultOutput)) {
+                return RestOutput.of(resultOutput);
             }
-            createTeamOutcome = createTeamOutcomeOutput.output();
 
-            // The team should be recreated without error
-            if (createTeamOutcome.getError() != null) {
-                Api.error("createTream to run failed. Team skipped",
-                          createTeamOutcome,
-                          team,
-                          teamRecord,
-                          userHandler,
-                          this);
-                continue;
+            for (Player player : team.getPlayerArray()) {
+                resultOutput = snapshotWriter.writePlayer(new PlayerRecord(player.getPlayerId(),
+                                                                           player.getPlayerType(),
+                                                                           player.getPlayerFirstName(),
+                                                                           player.getPlayerLastName(),
+                                                                           player.getPlayerCountry(),
+                                                                           player.getPlayerAge(),
+                                                                           player.getPlayerAssetValue(),
+                                                                           player.getPlayerTransferValue(),
+                                                                           team.getTeamId()));
+                if (RestOutput.isNOK(resultOutput)) {
+                    return RestOutput.of(resultOutput);
+                }
             }
         }
 
-        // Check there is no orphan player without a team
-        if (playerListMap.isEmpty() == false) {
-            Api.error("There are orphan players. INTERNAL FAILURE", playerListMap.size(), this);
-            return RestOutput.internalFailure();
+        return RestOutput.OK;
+    }
+
+    private RestOutput<Result> loadSnapshot(SnapshotStore snapshotStore) {
+
+        RestOutput<SnapshotReader> snapshotReaderOutput;
+        SnapshotReader snapshotReader;
+        SnapshotAssembly snapshotAssembly;
+        RestOutput<Result> resultOutput;
+
+        snapshotReaderOutput = snapshotStore.open();
+        if (RestOutput.isNOK(snapshotReaderOutput)) {
+            Api.info("No snapshot to restore " + snapshotReaderOutput, snapshotStore);
+            return RestOutput.of(snapshotReaderOutput);
+        }
+        snapshotReader = snapshotReaderOutput.output();
+
+        // Nothing is restored until the snapshot and the changes since then are all read
+        snapshotAssembly = new SnapshotAssembly();
+
+        resultOutput = snapshotReader.read(snapshotAssembly::offerUser,
+                                           snapshotAssembly::offerTeam,
+                                           snapshotAssembly::offerPlayer);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("read of snapshot is NOT OK", resultOutput, snapshotReader, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        // Replay the rows written after the snapshot, which are more recent than its records
+        resultOutput = storeService().loadUserRecords(snapshotReader.changeSequence(), snapshotAssembly::replayUser);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("loadUserRecords since snapshot is NOT OK", resultOutput, snapshotReader, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        resultOutput = storeService().loadTeamRecords(snapshotReader.changeSequence(), snapshotAssembly::replayTeam);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("loadTeamRecords since snapshot is NOT OK", resultOutput, snapshotReader, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        resultOutput = storeService().loadPlayerRecords(snapshotReader.changeSequence(),
+                                                        snapshotAssembly::replayPlayer);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("loadPlayerRecords since snapshot is NOT OK", resultOutput, snapshotReader, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        // A snapshot taken during a transfer never persisted can not be trusted
+        if ((snapshotAssembly.duplicateCount() > 0) || (snapshotAssembly.orphanPlayerCount() > 0)) {
+            Api.error("Snapshot is not consistent. BAD REQUEST", snapshotAssembly, snapshotReader, this);
+            return RestOutput.badRequest();
+        }
+
+        for (TeamRecord teamRecord : snapshotAssembly.restore(this::restoreUser, this::restoreTeam)) {
+            Api.error("User does not exist to restore Team. Team skippped", teamRecord, this);
+        }
+
+        Api.info("Snapshot restored " + snapshotAssembly, snapshotReader);
+
+        return RestOutput.OK;
+    }
+
+    public RestOutput<Result> run() {
+
+        RestOutput<Result> resultOutput;
+
+        // Start the StoreService
+        resultOutput = storeService().start();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Start StoreService is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        // Restore from the snapshot if any, or load all users with their team and players
+        resultOutput = snapshotStoreOptional().map(this::loadSnapshot).orElse(RestOutput.notFound());
+        if (RestOutput.isNOK(resultOutput)) {
+            resultOutput = loadStore();
+        }
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("loadStore is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
         }
 
         // Check each users has its team
@@ -646,6 +1032,13 @@ public class CoreHandler {
             return RestOutput.internalFailure();
         }
 
+        // Load the pages and their assets before serving them
+        resultOutput = assetCache().load();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Load AssetCache is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
         // Start the HttpService
         resultOutput = httpService().start();
         if (RestOutput.isNOK(resultOutput)) {
@@ -653,15 +1046,48 @@ public class CoreHandler {
             return RestOutput.of(resultOutput);
         }
 
+        // Expire the sessions as their time out is reached
+        sessionStore().start();
+
+        // Refresh the tokens revoked by all nodes, and forget them once expired
+        tokenSignerOptional().ifPresent(TokenSigner::start);
+
+        // Write the snapshot periodically
+        snapshotStoreOptional().ifPresent(SnapshotStore::start);
+
         // Monitor periodically the sessionHandlers
         monitorSessionHandlers();
 
+        // Keep the event streams alive
+        heartbeatEvents();
+
         return RestOutput.OK;
     }
 
     public RestOutput<Result> terminate() {
 
         RestOutput<Result> resultOutput;
+        RestOutput<Result> httpOutput;
+
+        // Close all event streams
+        eventHub().stop();
+
+        // Stop the HttpService first, so that no update is accepted after the final flush
+        httpOutput = httpService().stop();
+        if (RestOutput.isNOK(httpOutput)) {
+            Api.error("Stop HttpService is NOT OK", httpOutput, this);
+        }
+
+        tokenSignerOptional().ifPresent(TokenSigner::stop);
+
+        // Write all pending updates before stopping the store
+        resultOutput = storeService().flush();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Flush StoreService is NOT OK", resultOutput, this);
+        }
+
+        // Write a last snapshot, unless the database is dropped
+        snapshotStoreOptional().ifPresent(snapshotStore -> snapshotStore.stop(storeService().isTemporary() == false));
 
         // Stop the StoreService and drop the database
         resultOutput = storeService().stop(true);
@@ -670,11 +1096,9 @@ public class CoreHandler {
             return RestOutput.of(resultOutput);
         }
 
-        // Stop the HttpService
-        resultOutput = httpService().stop();
-        if (RestOutput.isNOK(resultOutput)) {
-            Api.error("Stop HttpService is NOT OK", resultOutput, this);
-            return RestOutput.of(resultOutput);
+        // Reported once the store is stopped, as its pending updates are written anyway
+        if (RestOutput.isNOK(httpOutput)) {
+            return RestOutput.of(httpOutput);
         }
 
         return RestOutput.OK;
@@ -682,20 +1106,40 @@ public class CoreHandler {
 
     @Override
     public String toString() {
-        return "CoreHandler [_userHandlerMap=" + _userHandlerMap + ", _sessionHandlerMap=" + _sessionHandlerMap + "]";
+        return "CoreHandler [_userHandlerMap=" + _userHandlerMap + ", _sessionStore=" + _sessionStore + "]";
     }
 
     public static RestOutput<CoreHandler> with(URI databaseURI,
                                                Optional<String> webPathOptional,
                                                Optional<Integer> webPortOptional) {
 
+        StoreService storeService;
+        SessionTokenMode sessionTokenMode;
+        RestOutput<TokenSigner> tokenSignerOutput;
+        Optional<TokenSigner> tokenSignerOptional;
         CoreHandler coreHandler;
 
         if (Api.isNull(databaseURI, webPathOptional, webPortOptional)) {
             return RestOutput.badRequest();
         }
 
-        coreHandler = new CoreHandler(databaseURI, webPathOptional, webPortOptional);
+        storeService = new StoreService(databaseURI);
+
+        // Sessions in memory by default, or held by tokens signed with a key shared by all nodes
+        sessionTokenMode = Api.enumProperty(Setup.SESSION_TOKEN_MODE_PROPERTY,
+                                            SessionTokenMode.class,
+                                            Setup.DEFAULT_SESSION_TOKEN_MODE);
+        tokenSignerOptional = Optional.empty();
+        if (sessionTokenMode == SessionTokenMode.SIGNED) {
+            tokenSignerOutput = TokenSigner.with(System.getProperty(Setup.SESSION_TOKEN_KEY_PROPERTY), storeService);
+            if (RestOutput.isNOK(tokenSignerOutput)) {
+                Api.error("TokenSigner to create CoreHandler is NOT OK", tokenSignerOutput);
+                return RestOutput.of(tokenSignerOutput);
+            }
+            tokenSignerOptional = Optional.of(tokenSignerOutput.output());
+        }
+
+        coreHandler = new CoreHandler(storeService, webPathOptional, webPortOptional, tokenSignerOptional);
 
         return RestOutput.ok(coreHandler);
     }
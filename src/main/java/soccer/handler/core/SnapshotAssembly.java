@@ -0,0 +1,129 @@
+package soccer.handler.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+import soccer.base.Api;
+import soccer.model.Player;
+import soccer.model.PlayerId;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+import soccer.store.user.UserRecord;
+
+class SnapshotAssembly {
+
+    // Records of the snapshot, replaced by the ones changed in the store since then
+    private final HashMap<String, UserRecord>     _userRecordMap;
+    private final HashMap<TeamId, TeamRecord>     _teamRecordMap;
+    private final HashMap<PlayerId, PlayerRecord> _playerRecordMap;
+
+    // Records present twice in the snapshot, as a player caught during its transfer
+    private int                                   _duplicateCount;
+
+    SnapshotAssembly() {
+
+        _userRecordMap = new HashMap<String, UserRecord>();
+        _teamRecordMap = new HashMap<TeamId, TeamRecord>();
+        _playerRecordMap = new HashMap<PlayerId, PlayerRecord>();
+
+        _duplicateCount = 0;
+    }
+
+    void offerUser(UserRecord userRecord) {
+
+        if (_userRecordMap.put(userRecord.userId(), userRecord) != null) {
+            _duplicateCount++;
+        }
+    }
+
+    void offerTeam(TeamRecord teamRecord) {
+
+        if (_teamRecordMap.put(teamRecord.teamId(), teamRecord) != null) {
+            _duplicateCount++;
+        }
+    }
+
+    void offerPlayer(PlayerRecord playerRecord) {
+
+        if (_playerRecordMap.put(playerRecord.playerId(), playerRecord) != null) {
+            _duplicateCount++;
+        }
+    }
+
+    void replayUser(UserRecord userRecord) {
+
+        _userRecordMap.put(userRecord.userId(), userRecord);
+    }
+
+    void replayTeam(TeamRecord teamRecord) {
+
+        _teamRecordMap.put(teamRecord.teamId(), teamRecord);
+    }
+
+    void replayPlayer(PlayerRecord playerRecord) {
+
+        _playerRecordMap.put(playerRecord.playerId(), playerRecord);
+    }
+
+    int duplicateCount() {
+
+        return _duplicateCount;
+    }
+
+    int orphanPlayerCount() {
+
+        return (int) _playerRecordMap.values()
+                                     .stream()
+                                     .filter(pr -> _teamRecordMap.containsKey(pr.teamId()) == false)
+                                     .count();
+    }
+
+    List<TeamRecord> restore(Consumer<UserRecord> userConsumer, BiPredicate<TeamRecord, Player[]> teamPredicate) {
+
+        HashMap<TeamId, List<Player>> playerListMap;
+        List<Player> playerList;
+        List<TeamRecord> parkedTeamList;
+
+        // All users first, so that each team finds its user
+        _userRecordMap.values().forEach(userConsumer);
+
+        playerListMap = new HashMap<TeamId, List<Player>>();
+        for (PlayerRecord playerRecord : _playerRecordMap.values()) {
+            playerListMap.computeIfAbsent(playerRecord.teamId(), t -> new ArrayList<Player>())
+                         .add(TeamAssembly.player(playerRecord));
+        }
+
+        parkedTeamList = new ArrayList<TeamRecord>();
+        for (TeamRecord teamRecord : _teamRecordMap.values()) {
+
+            playerList = playerListMap.get(teamRecord.teamId());
+            if (playerList == null) {
+                Api.error("no list of players to run. Team skipped", teamRecord, this);
+                continue;
+            }
+
+            if (teamPredicate.test(teamRecord, playerList.toArray(Player[]::new)) == false) {
+                parkedTeamList.add(teamRecord);
+            }
+        }
+
+        // Teams whose user does not exist
+        return parkedTeamList;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotAssembly [_userRecordMap=" + _userRecordMap.size()
+               + ", _teamRecordMap="
+               + _teamRecordMap.size()
+               + ", _playerRecordMap="
+               + _playerRecordMap.size()
+               + ", _duplicateCount="
+               + _duplicateCount
+               + "]";
+    }
+}
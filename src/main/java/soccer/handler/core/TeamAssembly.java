@@ -0,0 +1,192 @@
+package soccer.handler.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+
+import soccer.base.Api;
+import soccer.model.Player;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+
+class TeamAssembly {
+
+    // Returns false when the team can not be restored yet, as its user is not loaded
+    private final BiPredicate<TeamRecord, Player[]>       _teamPredicate;
+
+    private final HashMap<TeamId, TeamRecord>             _teamRecordMap;
+    private final HashMap<TeamId, Player[]>               _playerArrayMap;
+    private final ConcurrentHashMap<TeamRecord, Player[]> _parkedTeamMap;
+    private final ReentrantLock                           _lock;
+
+    // Roster being read. Only accessed by the thread loading the players
+    private TeamId                                        _rosterTeamId;
+    private List<Player>                                  _rosterList;
+
+    TeamAssembly(BiPredicate<TeamRecord, Player[]> teamPredicate) {
+
+        _teamPredicate = teamPredicate;
+
+        // Teams and rosters waiting for each other
+        _teamRecordMap = new HashMap<TeamId, TeamRecord>();
+        _playerArrayMap = new HashMap<TeamId, Player[]>();
+        _parkedTeamMap = new ConcurrentHashMap<TeamRecord, Player[]>();
+        _lock = new ReentrantLock();
+
+        _rosterTeamId = null;
+        _rosterList = new ArrayList<Player>();
+    }
+
+    private void lock() {
+
+        _lock.lock();
+    }
+
+    private void unlock() {
+
+        _lock.unlock();
+    }
+
+    private void assemble(TeamRecord teamRecord, Player[] playerArray) {
+
+        if (_teamPredicate.test(teamRecord, playerArray) == false) {
+            _parkedTeamMap.put(teamRecord, playerArray);
+        }
+    }
+
+    void offerTeam(TeamRecord teamRecord) {
+
+        Player[] playerArray;
+
+        if (Api.isNull(teamRecord)) {
+            return;
+        }
+
+        try {
+            lock();
+
+            playerArray = _playerArrayMap.remove(teamRecord.teamId());
+            if (playerArray == null) {
+                // Wait for the roster of this team
+                _teamRecordMap.put(teamRecord.teamId(), teamRecord);
+                return;
+            }
+
+        } finally {
+            unlock();
+        }
+
+        assemble(teamRecord, playerArray);
+    }
+
+    private void offerRoster(TeamId teamId, Player[] playerArray) {
+
+        TeamRecord teamRecord;
+
+        try {
+            lock();
+
+            teamRecord = _teamRecordMap.remove(teamId);
+            if (teamRecord == null) {
+                // Wait for the record of this team
+                _playerArrayMap.put(teamId, playerArray);
+                return;
+            }
+
+        } finally {
+            unlock();
+        }
+
+        assemble(teamRecord, playerArray);
+    }
+
+    void offerPlayer(PlayerRecord playerRecord) {
+
+        if (Api.isNull(playerRecord)) {
+            return;
+        }
+
+        // Players are sorted by team, so a new team completes the roster of the previous one
+        if (Objects.equals(_rosterTeamId, playerRecord.teamId()) == false) {
+            completeRoster();
+            _rosterTeamId = playerRecord.teamId();
+        }
+
+        _rosterList.add(player(playerRecord));
+    }
+
+    static Player player(PlayerRecord playerRecord) {
+
+        return new Player(playerRecord.playerId(),
+                          playerRecord.playerType(),
+                          playerRecord.firstName(),
+                          playerRecord.lastName(),
+                          playerRecord.country(),
+                          playerRecord.age(),
+                          playerRecord.assetValue(),
+                          playerRecord.transferValue(),
+                          playerRecord.teamId());
+    }
+
+    void completeRoster() {
+
+        if (_rosterTeamId == null) {
+            return;
+        }
+
+        offerRoster(_rosterTeamId, _rosterList.toArray(Player[]::new));
+
+        _rosterTeamId = null;
+        _rosterList = new ArrayList<Player>();
+    }
+
+    void retryParkedTeams() {
+
+        // Users are all loaded by now
+        _parkedTeamMap.entrySet().removeIf(entry -> _teamPredicate.test(entry.getKey(), entry.getValue()));
+    }
+
+    List<TeamRecord> parkedTeams() {
+
+        return new ArrayList<TeamRecord>(_parkedTeamMap.keySet());
+    }
+
+    List<TeamRecord> teamsWithoutPlayers() {
+
+        try {
+            lock();
+
+            return new ArrayList<TeamRecord>(_teamRecordMap.values());
+
+        } finally {
+            unlock();
+        }
+    }
+
+    int orphanRosterCount() {
+
+        try {
+            lock();
+
+            return _playerArrayMap.size();
+
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TeamAssembly [_teamRecordMap=" + _teamRecordMap.size()
+               + ", _playerArrayMap="
+               + _playerArrayMap.size()
+               + ", _parkedTeamMap="
+               + _parkedTeamMap.size()
+               + "]";
+    }
+}
@@ -0,0 +1,30 @@
+package soccer.handler.market;
+
+import soccer.model.Player;
+
+class MarketEntry {
+
+    private final MarketKey _marketKey;
+
+    // Copy of the player when it was indexed. Never modified
+    private final Player    _player;
+
+    MarketEntry(Player player) {
+
+        _marketKey = new MarketKey(player.getPlayerTransferValue(), player.getPlayerId());
+        _player = player;
+    }
+
+    MarketKey marketKey() {
+        return _marketKey;
+    }
+
+    Player player() {
+        return _player;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketEntry [_marketKey=" + _marketKey + ", _player=" + _player + "]";
+    }
+}
@@ -0,0 +1,317 @@
+package soccer.handler.market;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.model.Market;
+import soccer.model.MarketQuery;
+import soccer.model.Player;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.Team;
+import soccer.model.TeamId;
+import soccer.model.event.Event;
+
+public class MarketIndex {
+
+    // All players in the market
+    private final ConcurrentHashMap<PlayerId, MarketEntry>                                     _entryMap;
+
+    // Views of the same players, sorted by price
+    private final ConcurrentSkipListMap<MarketKey, MarketEntry>                                _priceMap;
+    private final ConcurrentHashMap<PlayerType, ConcurrentSkipListMap<MarketKey, MarketEntry>> _typeMap;
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<MarketKey, MarketEntry>>     _countryMap;
+
+    // Teams as last published, to present the players of the market
+    private final ConcurrentHashMap<TeamId, MarketTeam>                                        _teamMap;
+
+    // Changes after each mutation of the market
+    private final AtomicLong                                                                   _version;
+
+    // Notified of each change of the market, by the thread making it
+    private final Consumer<Event>                                                              _eventConsumer;
+
+    public MarketIndex(Consumer<Event> eventConsumer) {
+
+        _entryMap = new ConcurrentHashMap<PlayerId, MarketEntry>();
+
+        _priceMap = new ConcurrentSkipListMap<MarketKey, MarketEntry>();
+        _typeMap = new ConcurrentHashMap<PlayerType, ConcurrentSkipListMap<MarketKey, MarketEntry>>();
+        _countryMap = new ConcurrentHashMap<String, ConcurrentSkipListMap<MarketKey, MarketEntry>>();
+
+        _teamMap = new ConcurrentHashMap<TeamId, MarketTeam>();
+
+        _version = new AtomicLong(0);
+
+        _eventConsumer = eventConsumer;
+    }
+
+    public long version() {
+
+        return _version.get();
+    }
+
+    private static <T> void insertView(ConcurrentHashMap<T, ConcurrentSkipListMap<MarketKey, MarketEntry>> viewMap,
+                                       T value,
+                                       MarketEntry marketEntry) {
+
+        // Atomic per value, so that an empty view is never dropped while an entry is added to it
+        viewMap.compute(value, (v, view) -> {
+            if (view == null) {
+                view = new ConcurrentSkipListMap<MarketKey, MarketEntry>();
+            }
+            view.put(marketEntry.marketKey(), marketEntry);
+            return view;
+        });
+    }
+
+    private static <T> void removeView(ConcurrentHashMap<T, ConcurrentSkipListMap<MarketKey, MarketEntry>> viewMap,
+                                       T value,
+                                       MarketEntry marketEntry) {
+
+        viewMap.computeIfPresent(value, (v, view) -> {
+            view.remove(marketEntry.marketKey(), marketEntry);
+            return (view.isEmpty()) ? null : view;
+        });
+    }
+
+    private void insertViews(MarketEntry marketEntry) {
+
+        _priceMap.put(marketEntry.marketKey(), marketEntry);
+        insertView(_typeMap, marketEntry.player().getPlayerType(), marketEntry);
+        insertView(_countryMap, marketEntry.player().getPlayerCountry(), marketEntry);
+    }
+
+    private void removeViews(MarketEntry marketEntry) {
+
+        _priceMap.remove(marketEntry.marketKey(), marketEntry);
+        removeView(_typeMap, marketEntry.player().getPlayerType(), marketEntry);
+        removeView(_countryMap, marketEntry.player().getPlayerCountry(), marketEntry);
+    }
+
+    public void publishTeam(TeamId teamId, String name, String country, Long balance) {
+
+        MarketTeam previousTeam;
+
+        if (Api.isNull(teamId, name, country, balance)) {
+            return;
+        }
+
+        previousTeam = _teamMap.put(teamId, new MarketTeam(teamId, name, country, balance));
+        _version.incrementAndGet();
+
+        if ((previousTeam != null) && (previousTeam.balance().equals(balance) == false)) {
+            _eventConsumer.accept(Event.balanceChanged(teamId, balance));
+        }
+    }
+
+    public void offerPlayer(Player player) {
+
+        MarketEntry marketEntry;
+        MarketEntry previousEntry;
+
+        if (Api.isNull(player) || Api.isNull(player.getPlayerId(), player.getPlayerTransferValue())) {
+            return;
+        }
+
+        // Updates of a player are serialized by the lock of its team
+        // Old views are removed before new ones are added, so a reader may miss a player but never see it twice
+        marketEntry = new MarketEntry(player);
+
+        previousEntry = _entryMap.put(player.getPlayerId(), marketEntry);
+        if (previousEntry != null) {
+            removeViews(previousEntry);
+        }
+
+        insertViews(marketEntry);
+        _version.incrementAndGet();
+
+        _eventConsumer.accept(Event.listed(player));
+    }
+
+    public void removePlayer(PlayerId playerId) {
+
+        MarketEntry previousEntry;
+
+        if (Api.isNull(playerId)) {
+            return;
+        }
+
+        previousEntry = _entryMap.remove(playerId);
+        if (previousEntry != null) {
+            removeViews(previousEntry);
+            _version.incrementAndGet();
+
+            _eventConsumer.accept(Event.delisted(previousEntry.player().getTeamId(), playerId));
+        }
+    }
+
+    public void transferPlayer(TeamId fromTeamId, TeamId toTeamId, PlayerId playerId) {
+
+        if (Api.isNull(fromTeamId, toTeamId, playerId)) {
+            return;
+        }
+
+        // The player has left the market already
+        _eventConsumer.accept(Event.transferred(fromTeamId, toTeamId, playerId));
+    }
+
+    public int size() {
+
+        return _entryMap.size();
+    }
+
+    private ConcurrentNavigableMap<MarketKey, MarketEntry> view(MarketQuery marketQuery) {
+
+        ConcurrentSkipListMap<MarketKey, MarketEntry> view;
+
+        // Narrowest view for this query
+        if (marketQuery.getPlayerType() != null) {
+            view = _typeMap.get(marketQuery.getPlayerType());
+        } else if (marketQuery.getCountry() != null) {
+            view = _countryMap.get(marketQuery.getCountry());
+        } else {
+            view = _priceMap;
+        }
+
+        if (view == null) {
+            return new ConcurrentSkipListMap<MarketKey, MarketEntry>();
+        }
+
+        return view;
+    }
+
+    private boolean matches(MarketQuery marketQuery, TeamId excludedTeamId, Player player) {
+
+        if (Objects.equals(excludedTeamId, player.getTeamId())) {
+            return false;
+        }
+        if ((marketQuery.getPlayerType() != null) && (marketQuery.getPlayerType() != player.getPlayerType())) {
+            return false;
+        }
+        if ((marketQuery.getCountry() != null)
+            && (marketQuery.getCountry().equals(player.getPlayerCountry()) == false)) {
+            return false;
+        }
+        if ((marketQuery.getMinAge() != null) && (player.getPlayerAge() < marketQuery.getMinAge())) {
+            return false;
+        }
+        if ((marketQuery.getMaxAge() != null) && (player.getPlayerAge() > marketQuery.getMaxAge())) {
+            return false;
+        }
+
+        return true;
+    }
+
+    public RestOutput<Market> retrieveMarket(MarketQuery marketQuery, TeamId excludedTeamId, int pageSize) {
+
+        MarketKey startKey;
+        MarketKey cursorKey;
+        List<MarketEntry> marketEntryList;
+        String cursor;
+        List<Team> teamList;
+        List<Player> playerList;
+        MarketTeam marketTeam;
+        MarketTeam nextMarketTeam;
+
+        if (Api.isNull(marketQuery, excludedTeamId)) {
+            return RestOutput.badRequest();
+        }
+
+        // Players in the market have a positive price
+        startKey = MarketKey.lowest(Objects.requireNonNullElse(marketQuery.getMinPrice(), 0L));
+
+        // Resume after the last player of the previous page
+        if (marketQuery.getCursor() != null) {
+            try {
+                cursorKey = MarketKey.with(marketQuery.getCursor());
+            } catch (IllegalArgumentException e) {
+                Api.error("Cursor is not valid to retrieveMarket. BAD REQUEST", marketQuery, this);
+                return RestOutput.badRequest();
+            }
+            if (cursorKey.compareTo(startKey) > 0) {
+                startKey = cursorKey;
+            }
+        }
+
+        // Collect one more player than the page to know if there is a next page
+        marketEntryList = new ArrayList<MarketEntry>(pageSize + 1);
+
+        for (MarketEntry marketEntry : view(marketQuery).tailMap(startKey, false).values()) {
+
+            if ((marketQuery.getMaxPrice() != null) && (marketEntry.marketKey().price() > marketQuery.getMaxPrice())) {
+                break;
+            }
+            if (matches(marketQuery, excludedTeamId, marketEntry.player()) == false) {
+                continue;
+            }
+
+            marketEntryList.add(marketEntry);
+            if (marketEntryList.size() > pageSize) {
+                break;
+            }
+        }
+
+        cursor = null;
+        if (marketEntryList.size() > pageSize) {
+            marketEntryList = marketEntryList.subList(0, pageSize);
+            cursor = marketEntryList.get(pageSize - 1).marketKey().cursor();
+        }
+
+        // Group the consecutive players of a same team, keeping the order by price
+        teamList = new ArrayList<Team>();
+        playerList = new ArrayList<Player>();
+        marketTeam = null;
+
+        for (MarketEntry marketEntry : marketEntryList) {
+
+            nextMarketTeam = _teamMap.get(marketEntry.player().getTeamId());
+            if (nextMarketTeam == null) {
+                // The team of this player is not published yet
+                continue;
+            }
+
+            if ((marketTeam != null) && (marketTeam.teamId().equals(nextMarketTeam.teamId()) == false)) {
+                teamList.add(team(marketTeam, playerList));
+                playerList = new ArrayList<Player>();
+            }
+            marketTeam = nextMarketTeam;
+
+            playerList.add(marketEntry.player());
+        }
+        if (marketTeam != null) {
+            teamList.add(team(marketTeam, playerList));
+        }
+
+        return RestOutput.ok(new Market(teamList.toArray(Team[]::new), cursor));
+    }
+
+    private static Team team(MarketTeam marketTeam, List<Player> playerList) {
+
+        return new Team(marketTeam.teamId(),
+                        marketTeam.name(),
+                        marketTeam.country(),
+                        marketTeam.balance(),
+                        playerList.toArray(Player[]::new));
+    }
+
+    @Override
+    public String toString() {
+        return "MarketIndex [_entryMap=" + _entryMap.size()
+               + ", _typeMap="
+               + _typeMap.size()
+               + ", _countryMap="
+               + _countryMap.size()
+               + ", _teamMap="
+               + _teamMap.size()
+               + "]";
+    }
+}
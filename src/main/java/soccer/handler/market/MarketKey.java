@@ -0,0 +1,94 @@
+package soccer.handler.market;
+
+import java.util.Objects;
+import java.util.UUID;
+
+import soccer.model.PlayerId;
+
+class MarketKey implements Comparable<MarketKey> {
+
+    private final Long     _price;
+
+    // Null for the lowest key of a price
+    private final PlayerId _playerId;
+
+    MarketKey(Long price, PlayerId playerId) {
+
+        _price = price;
+        _playerId = playerId;
+    }
+
+    Long price() {
+        return _price;
+    }
+
+    PlayerId playerId() {
+        return _playerId;
+    }
+
+    String cursor() {
+
+        // The market is sorted by price, then by player
+        return _price + "_" + _playerId.getUUID();
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(_price, _playerId);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+
+        if (this == object)
+            return true;
+        if (!(object instanceof MarketKey))
+            return false;
+        MarketKey that = (MarketKey) object;
+
+        return Objects.equals(this.price(), that.price()) && Objects.equals(this.playerId(), that.playerId());
+    }
+
+    @Override
+    public int compareTo(MarketKey marketKey) {
+
+        int comparison;
+
+        comparison = Long.compare(price(), marketKey.price());
+        if (comparison != 0) {
+            return comparison;
+        }
+
+        if (playerId() == null) {
+            return (marketKey.playerId() == null) ? 0 : -1;
+        } else if (marketKey.playerId() == null) {
+            return 1;
+        }
+
+        return playerId().compareTo(marketKey.playerId());
+    }
+
+    @Override
+    public String toString() {
+        return "MarketKey [_price=" + _price + ", _playerId=" + _playerId + "]";
+    }
+
+    static MarketKey lowest(Long price) {
+
+        return new MarketKey(price, null);
+    }
+
+    static MarketKey with(String cursor) throws IllegalArgumentException {
+
+        int separator;
+
+        separator = cursor.indexOf('_');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is not valid");
+        }
+
+        return new MarketKey(Long.valueOf(cursor.substring(0, separator)),
+                             new PlayerId(UUID.fromString(cursor.substring(separator + 1))));
+    }
+}
@@ -0,0 +1,47 @@
+package soccer.handler.market;
+
+import soccer.model.TeamId;
+
+class MarketTeam {
+
+    private final TeamId _teamId;
+    private final String _name;
+    private final String _country;
+    private final Long   _balance;
+
+    MarketTeam(TeamId teamId, String name, String country, Long balance) {
+
+        _teamId = teamId;
+        _name = name;
+        _country = country;
+        _balance = balance;
+    }
+
+    TeamId teamId() {
+        return _teamId;
+    }
+
+    String name() {
+        return _name;
+    }
+
+    String country() {
+        return _country;
+    }
+
+    Long balance() {
+        return _balance;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketTeam [_teamId=" + _teamId
+               + ", _name="
+               + _name
+               + ", _country="
+               + _country
+               + ", _balance="
+               + _balance
+               + "]";
+    }
+}
@@ -1,12 +1,13 @@
 package soccer.handler.player;
 
-import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
 import soccer.base.Result;
+import soccer.handler.market.MarketIndex;
 import soccer.model.Player;
 import soccer.model.PlayerId;
 import soccer.model.PlayerType;
@@ -17,95 +18,126 @@ import soccer.store.player.PlayerRecord;
 
 public class PlayerHandler implements Comparable<PlayerHandler> {
 
-    private final PlayerId   _playerId;
+    // A view of the fields of this player, held by the PlayerStorage of its CoreHandler
+    private final PlayerStorage _storage;
+    private final int           _slot;
 
-    private final PlayerType _type;
+    private PlayerHandler(PlayerStorage storage, int slot) {
 
-    private String           _firstName;
-    private String           _lastName;
-    private String           _country;
-    private Integer          _age;
+        _storage = storage;
+        _slot = slot;
+    }
 
-    private Long             _assetValue;
-    private Long             _transferValue;
+    private PlayerStorage storage() {
 
-    private PlayerHandler(PlayerId playerId,
-                          PlayerType type,
-                          String firstName,
-                          String lastName,
-                          String country,
-                          Integer age,
-                          Long assetValue,
-                          Long transferValue) {
+        return _storage;
+    }
 
-        _playerId = playerId;
+    public int slot() {
 
-        _type = type;
-        _firstName = firstName;
-        _lastName = lastName;
-        _country = country;
-        _age = age;
+        return _slot;
+    }
 
-        _assetValue = assetValue;
-        _transferValue = transferValue;
+    public static PlayerHandler at(PlayerStorage storage, int slot) {
 
+        return new PlayerHandler(storage, slot);
     }
 
     public PlayerId playerId() {
 
-        return _playerId;
+        return new PlayerId(new UUID(storage().playerIdMost(slot()), storage().playerIdLeast(slot())));
+    }
+
+    public boolean hasPlayerId(PlayerId playerId) {
+
+        UUID uuid;
+
+        uuid = playerId.getUUID();
+
+        return (uuid != null)
+               && (uuid.getMostSignificantBits() == storage().playerIdMost(slot()))
+               && (uuid.getLeastSignificantBits() == storage().playerIdLeast(slot()));
     }
 
     private PlayerType type() {
-        return _type;
+        return storage().type(slot());
     }
 
     private String getFirstName() {
-        return _firstName;
+        return storage().firstName(slot());
     }
 
     private void setFirstName(String firstName) {
-        _firstName = firstName;
+        storage().setFirstName(slot(), firstName);
     }
 
     private String getLastName() {
-        return _lastName;
+        return storage().lastName(slot());
     }
 
     private void setLastName(String lastName) {
-        _lastName = lastName;
+        storage().setLastName(slot(), lastName);
     }
 
     private String getCountry() {
-        return _country;
+        return storage().country(slot());
     }
 
     private void setCountry(String country) {
-        _country = country;
+        storage().setCountry(slot(), country);
+    }
+
+    private int getAge() {
+        return storage().age(slot());
     }
 
-    private Integer getAge() {
-        return _age;
+    private void setAge(int age) {
+        storage().setAge(slot(), age);
     }
 
-    private void setAge(Integer age) {
-        _age = age;
+    private long getAssetValue() {
+        return storage().assetValue(slot());
     }
 
-    private Long getAssetValue() {
-        return _assetValue;
+    private void setAssetValue(long assetValue) {
+        storage().setAssetValue(slot(), assetValue);
     }
 
-    private void setAssetValue(Long assetValue) {
-        _assetValue = assetValue;
+    private long getTransferValue() {
+        return storage().transferValue(slot());
     }
 
-    private Long getTransferValue() {
-        return _transferValue;
+    private void setTransferValue(long transferValue) {
+        storage().setTransferValue(slot(), transferValue);
     }
 
-    private void setTransferValue(Long transferValue) {
-        _transferValue = transferValue;
+    public void release() {
+
+        // This player is not referenced anymore
+        storage().release(slot());
+    }
+
+    private PlayerRecord playerRecord(String firstName,
+                                      String lastName,
+                                      String country,
+                                      long assetValue,
+                                      long transferValue,
+                                      TeamId teamId) {
+
+        return new PlayerRecord(playerId(),
+                                type(),
+                                firstName,
+                                lastName,
+                                country,
+                                getAge(),
+                                assetValue,
+                                transferValue,
+                                teamId);
+    }
+
+    public PlayerRecord playerRecord(TeamId teamId) {
+
+        return playerRecord(getFirstName(), getLastName(), getCountry(), getAssetValue(), getTransferValue(), teamId);
     }
 
     public RestOutput<Result> persist(TeamId teamId, StoreService storeService) {
@@ -117,17 +149,9 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
         }
 
         // Build the PlayerRecord
-        playerRecord = new PlayerRecord(playerId(),
-                                        type(),
-                                        getFirstName(),
-                                        getLastName(),
-                                        getCountry(),
-                                        getAge(),
-                                        getAssetValue(),
-                                        getTransferValue(),
-                                        teamId);
-
-        // Store or update the TeamRecord
+        playerRecord = playerRecord(teamId);
+
+        // Store or update the PlayerRecord
         return storeService.storePlayerRecord(playerRecord);
     }
 
@@ -141,21 +165,36 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
         return (getTransferValue() > Setup.PLAYER_NO_TRANSFER_VALUE);
     }
 
+    private Player player(TeamId teamId) {
+
+        return new Player(playerId(),
+                          type(),
+                          getFirstName(),
+                          getLastName(),
+                          getCountry(),
+                          getAge(),
+                          getAssetValue(),
+                          getTransferValue(),
+                          teamId);
+    }
+
     public RestOutput<Player> retrievePlayer(TeamId teamId) {
 
         if (Api.isNull(teamId)) {
             return RestOutput.badRequest();
         }
 
-        return RestOutput.ok(new Player(playerId(),
-                                        type(),
-                                        getFirstName(),
-                                        getLastName(),
-                                        getCountry(),
-                                        getAge(),
-                                        getAssetValue(),
-                                        getTransferValue(),
-                                        teamId));
+        return RestOutput.ok(player(teamId));
+    }
+
+    public void indexMarket(TeamId teamId, MarketIndex marketIndex) {
+
+        // Only players in the market are indexed
+        if (isInMarket()) {
+            marketIndex.offerPlayer(player(teamId));
+        } else {
+            marketIndex.removePlayer(playerId());
+        }
     }
 
     public RestOutput<UpdatePlayerOutcome> update(String firstName,
@@ -163,10 +202,11 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
                                                   String country,
                                                   Long transferValue,
                                                   TeamId teamId,
+                                                  MarketIndex marketIndex,
                                                   StoreService storeService) {
         RestOutput<Result> resultOutput;
 
-        if (Api.isNull(firstName, lastName, country, transferValue, teamId, storeService)) {
+        if (Api.isNull(firstName, lastName, country, transferValue, teamId, marketIndex, storeService)) {
             return RestOutput.badRequest();
         }
 
@@ -183,16 +223,13 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
                                                          "TransferValue " + transferValue + " is not valid"));
         }
 
-        setFirstName(firstName);
-        setLastName(lastName);
-        setCountry(country);
-        setTransferValue(transferValue);
-
-        // No one is eternal
-        setAge(getAge());
-
-        // Persist this updated team in the store
-        resultOutput = persist(teamId, storeService);
+        // Persist this updated player in the store, before it changes in memory
+        resultOutput = storeService.storePlayerRecord(playerRecord(firstName,
+                                                                   lastName,
+                                                                   country,
+                                                                   getAssetValue(),
+                                                                   transferValue,
+                                                                   teamId));
         if (RestOutput.isNOK(resultOutput)) {
             Api.error("persist to updatePlayer is NOT OK",
                       resultOutput,
@@ -205,14 +242,25 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
             return RestOutput.ok(new UpdatePlayerOutcome(playerId(), "Persist of player in store failed"));
         }
 
+        setFirstName(firstName);
+        setLastName(lastName);
+        setCountry(country);
+        setTransferValue(transferValue);
+
+        // No one is eternal
+        setAge(getAge());
+
+        // Enter, move within or leave the market
+        indexMarket(teamId, marketIndex);
+
         // Successful update of player
         return RestOutput.ok(new UpdatePlayerOutcome(playerId()));
     }
 
-    public RestOutput<Result> transfer() {
+    public PlayerRecord transferRecord(TeamId teamId) {
 
-        Long valueIncrease;
-        Long assetValue;
+        long valueIncrease;
+        long assetValue;
         int percentageIncrease;
 
         assetValue = getTransferValue();
@@ -222,11 +270,27 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
 
         assetValue += valueIncrease;
 
-        // Set the new asset value for this player
-        setAssetValue(assetValue);
+        // This player within its new team, and not on the market anymore
+        return playerRecord(getFirstName(),
+                            getLastName(),
+                            getCountry(),
+                            assetValue,
+                            Setup.PLAYER_NO_TRANSFER_VALUE,
+                            teamId);
+    }
+
+    public RestOutput<Result> transfer(PlayerRecord playerRecord, MarketIndex marketIndex) {
+
+        if (Api.isNull(playerRecord, marketIndex)) {
+            return RestOutput.badRequest();
+        }
+
+        // Set the new asset value for this player, as persisted
+        setAssetValue(playerRecord.assetValue());
 
         // Player is not on the market anymore
-        setTransferValue(Setup.PLAYER_NO_TRANSFER_VALUE);
+        setTransferValue(playerRecord.transferValue());
+        marketIndex.removePlayer(playerId());
 
         return RestOutput.OK;
     }
@@ -234,35 +298,49 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
     @Override
     public int compareTo(PlayerHandler playerHandler) {
 
-        return Objects.compare(playerId(), playerHandler.playerId(), PlayerId::compareTo);
+        int result;
+
+        // As the UUIDs of both players
+        result = Long.compare(storage().playerIdMost(slot()),
+                              playerHandler.storage().playerIdMost(playerHandler.slot()));
+        if (result != 0) {
+            return result;
+        }
+
+        return Long.compare(storage().playerIdLeast(slot()),
+                            playerHandler.storage().playerIdLeast(playerHandler.slot()));
     }
 
     @Override
     public String toString() {
-        return "PlayerHandler [_playerId=" + _playerId
-               + ", _type="
-               + _type
-               + ", _firstName="
-               + _firstName
-               + ", _lastName="
-               + _lastName
-               + ", _country="
-               + _country
-               + ", _age="
-               + _age
-               + ", _assetValue="
-               + _assetValue
-               + ", _transferValue="
-               + _transferValue
+        return "PlayerHandler [playerId=" + playerId()
+               + ", type="
+               + type()
+               + ", firstName="
+               + getFirstName()
+               + ", lastName="
+               + getLastName()
+               + ", country="
+               + getCountry()
+               + ", age="
+               + getAge()
+               + ", assetValue="
+               + getAssetValue()
+               + ", transferValue="
+               + getTransferValue()
+               + ", _slot="
+               + _slot
                + "]";
     }
 
-    public static RestOutput<PlayerHandler> with(Player player) {
+    public static RestOutput<PlayerHandler> with(Player player, PlayerStorage storage) {
 
         PlayerHandler playerHandler;
 
-        if (Api.isNull(player,
+        if (Api.isNull(storage,
+                       player,
                        player.getPlayerId(),
+                       player.getPlayerId().getUUID(),
                        player.getPlayerType(),
                        player.getPlayerFirstName(),
                        player.getPlayerLastName(),
@@ -275,14 +353,20 @@ public class PlayerHandler implements Comparable<PlayerHandler> {
 
         try {
 
-            playerHandler = new PlayerHandler(player.getPlayerId(),
-                                              player.getPlayerType(),
-                                              player.getPlayerFirstName(),
-                                              player.getPlayerLastName(),
-                                              player.getPlayerCountry(),
-                                              player.getPlayerAge(),
-                                              player.getPlayerAssetValue(),
-                                              player.getPlayerTransferValue());
+            playerHandler = new PlayerHandler(storage, storage.allocate());
+
+            storage.setPlayerId(playerHandler.slot(),
+                                player.getPlayerId().getUUID().getMostSignificantBits(),
+                                player.getPlayerId().getUUID().getLeastSignificantBits());
+
+            storage.setType(playerHandler.slot(), player.getPlayerType());
+            playerHandler.setFirstName(player.getPlayerFirstName());
+            playerHandler.setLastName(player.getPlayerLastName());
+            playerHandler.setCountry(player.getPlayerCountry());
+            playerHandler.setAge(player.getPlayerAge());
+
+            playerHandler.setAssetValue(player.getPlayerAssetValue());
+            playerHandler.setTransferValue(player.getPlayerTransferValue());
 
             return RestOutput.ok(playerHandler);
 
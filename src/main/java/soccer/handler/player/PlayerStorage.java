@@ -0,0 +1,282 @@
+package soccer.handler.player;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import soccer.Setup;
+import soccer.model.PlayerType;
+
+public class PlayerStorage {
+
+    // Fields of all players, one column per field, in pages of fixed size
+    private volatile PlayerPage[]                          _pageArray;
+
+    // Slots allocated so far, and slots released for reuse
+    private int                                            _slotCount;
+    private int[]                                          _freeSlotArray;
+    private int                                            _freeSlotCount;
+    private final ReentrantLock                            _lock;
+
+    // A single instance of each country shared by all players, dropped along with its last player
+    private final ConcurrentHashMap<String, SharedCountry> _countryMap;
+
+    private final static PlayerType[]                      PlayerTypeArray = PlayerType.values();
+
+    public PlayerStorage() {
+
+        _pageArray = new PlayerPage[0];
+
+        _slotCount = 0;
+        _freeSlotArray = new int[0];
+        _freeSlotCount = 0;
+        _lock = new ReentrantLock();
+
+        _countryMap = new ConcurrentHashMap<String, SharedCountry>();
+    }
+
+    private PlayerPage page(int slot) {
+
+        return _pageArray[slot >>> Setup.PLAYER_PAGE_SHIFT];
+    }
+
+    private static int index(int slot) {
+
+        return slot & ((1 << Setup.PLAYER_PAGE_SHIFT) - 1);
+    }
+
+    int allocate() {
+
+        int slot;
+        PlayerPage[] pageArray;
+
+        try {
+            _lock.lock();
+
+            if (_freeSlotCount > 0) {
+                return _freeSlotArray[--_freeSlotCount];
+            }
+
+            slot = _slotCount++;
+
+            // Pages are never moved, so that the writers of other slots are not lost while a page is added
+            if (index(slot) == 0) {
+                pageArray = Arrays.copyOf(_pageArray, _pageArray.length + 1);
+                pageArray[pageArray.length - 1] = new PlayerPage(1 << Setup.PLAYER_PAGE_SHIFT);
+                _pageArray = pageArray;
+            }
+
+            return slot;
+
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    void release(int slot) {
+
+        // Drop the names of this player before its slot is reused
+        setFirstName(slot, null);
+        setLastName(slot, null);
+        setCountry(slot, null);
+
+        try {
+            _lock.lock();
+
+            if (_freeSlotCount == _freeSlotArray.length) {
+                _freeSlotArray = Arrays.copyOf(_freeSlotArray, Math.max(16, _freeSlotCount * 2));
+            }
+            _freeSlotArray[_freeSlotCount++] = slot;
+
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    long playerIdMost(int slot) {
+
+        return page(slot)._playerIdMostArray[index(slot)];
+    }
+
+    long playerIdLeast(int slot) {
+
+        return page(slot)._playerIdLeastArray[index(slot)];
+    }
+
+    void setPlayerId(int slot, long most, long least) {
+
+        page(slot)._playerIdMostArray[index(slot)] = most;
+        page(slot)._playerIdLeastArray[index(slot)] = least;
+    }
+
+    PlayerType type(int slot) {
+
+        return PlayerTypeArray[page(slot)._typeArray[index(slot)]];
+    }
+
+    void setType(int slot, PlayerType type) {
+
+        page(slot)._typeArray[index(slot)] = (byte) type.ordinal();
+    }
+
+    String firstName(int slot) {
+
+        return page(slot)._firstNameArray[index(slot)];
+    }
+
+    void setFirstName(int slot, String firstName) {
+
+        page(slot)._firstNameArray[index(slot)] = firstName;
+    }
+
+    String lastName(int slot) {
+
+        return page(slot)._lastNameArray[index(slot)];
+    }
+
+    void setLastName(int slot, String lastName) {
+
+        page(slot)._lastNameArray[index(slot)] = lastName;
+    }
+
+    String country(int slot) {
+
+        return page(slot)._countryArray[index(slot)];
+    }
+
+    private String acquireCountry(String country) {
+
+        SharedCountry sharedCountry;
+
+        // The count is only changed within the compute of the map, under the lock of its entry
+        sharedCountry = _countryMap.compute(country, (c, shared) -> {
+            if (shared == null) {
+                return new SharedCountry(c);
+            }
+            shared._count++;
+            return shared;
+        });
+
+        return sharedCountry._country;
+    }
+
+    private void releaseCountry(String country) {
+
+        _countryMap.computeIfPresent(country, (c, shared) -> {
+            shared._count--;
+            return (shared._count == 0) ? null : shared;
+        });
+    }
+
+    void setCountry(int slot, String country) {
+
+        String previousCountry;
+
+        previousCountry = page(slot)._countryArray[index(slot)];
+
+        if (country != null) {
+            country = acquireCountry(country);
+        }
+
+        page(slot)._countryArray[index(slot)] = country;
+
+        if (previousCountry != null) {
+            releaseCountry(previousCountry);
+        }
+    }
+
+    int age(int slot) {
+
+        return page(slot)._ageArray[index(slot)];
+    }
+
+    void setAge(int slot, int age) {
+
+        page(slot)._ageArray[index(slot)] = age;
+    }
+
+    long assetValue(int slot) {
+
+        return page(slot)._assetValueArray[index(slot)];
+    }
+
+    void setAssetValue(int slot, long assetValue) {
+
+        page(slot)._assetValueArray[index(slot)] = assetValue;
+    }
+
+    long transferValue(int slot) {
+
+        return page(slot)._transferValueArray[index(slot)];
+    }
+
+    void setTransferValue(int slot, long transferValue) {
+
+        page(slot)._transferValueArray[index(slot)] = transferValue;
+    }
+
+    public int size() {
+
+        try {
+            _lock.lock();
+
+            return _slotCount - _freeSlotCount;
+
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerStorage [size=" + size()
+               + ", _pageArray="
+               + _pageArray.length
+               + ", _countryMap="
+               + _countryMap.size()
+               + "]";
+    }
+
+    private static class SharedCountry {
+
+        private final String _country;
+        private int          _count;
+
+        private SharedCountry(String country) {
+
+            _country = country;
+            _count = 1;
+        }
+    }
+
+    private static class PlayerPage {
+
+        // PlayerId as the two halves of its UUID
+        private final long[]   _playerIdMostArray;
+        private final long[]   _playerIdLeastArray;
+
+        private final byte[]   _typeArray;
+        private final String[] _firstNameArray;
+        private final String[] _lastNameArray;
+        private final String[] _countryArray;
+        private final int[]    _ageArray;
+
+        private final long[]   _assetValueArray;
+        private final long[]   _transferValueArray;
+
+        private PlayerPage(int pageSize) {
+
+            _playerIdMostArray = new long[pageSize];
+            _playerIdLeastArray = new long[pageSize];
+
+            _typeArray = new byte[pageSize];
+            _firstNameArray = new String[pageSize];
+            _lastNameArray = new String[pageSize];
+            _countryArray = new String[pageSize];
+            _ageArray = new int[pageSize];
+
+            _assetValueArray = new long[pageSize];
+            _transferValueArray = new long[pageSize];
+        }
+    }
+}
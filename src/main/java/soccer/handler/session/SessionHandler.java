@@ -1,8 +1,5 @@
 package soccer.handler.session;
 
-import java.time.Instant;
-import java.util.concurrent.atomic.AtomicReference;
-
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
@@ -11,15 +8,17 @@ import soccer.model.UserToken;
 
 public class SessionHandler {
 
-    private final UserToken                _userToken;
-    private final UserHandler              _userHandler;
-    private final AtomicReference<Instant> _instantReference;
+    private final UserToken   _userToken;
+    private final UserHandler _userHandler;
+
+    // Monotonic time of the last use of this session, in nanoseconds
+    private volatile long     _refreshNanos;
 
     private SessionHandler(UserToken userToken, UserHandler userHandler) {
 
         _userToken = userToken;
         _userHandler = userHandler;
-        _instantReference = new AtomicReference<Instant>(Instant.now());
+        _refreshNanos = System.nanoTime();
     }
 
     public UserToken userToken() {
@@ -32,20 +31,20 @@ public class SessionHandler {
         return _userHandler;
     }
 
-    public Instant instant() {
+    public long refreshNanos() {
 
-        return _instantReference.get();
+        return _refreshNanos;
     }
 
-    public void refresh() {
+    public void refresh(long nowNanos) {
 
-        _instantReference.set(Instant.now());
+        _refreshNanos = nowNanos;
     }
 
-    public boolean hasTimedOut() {
+    public boolean hasTimedOut(long nowNanos) {
 
-        // Session has not been refreshed recently
-        return instant().isBefore(Instant.now().minus(Setup.SESSION_TIME_OUT));
+        // Session has not been refreshed recently. Compared by difference, as nanoTime may overflow
+        return (nowNanos - _refreshNanos) > Setup.SESSION_TIME_OUT.toNanos();
     }
 
     @Override
@@ -53,8 +52,8 @@ public class SessionHandler {
         return "SessionHandler [_userToken=" + _userToken
                + ", _userHandler="
                + _userHandler
-               + ", _instantReference="
-               + _instantReference
+               + ", _refreshNanos="
+               + _refreshNanos
                + "]";
     }
 
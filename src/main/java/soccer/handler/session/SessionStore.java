@@ -0,0 +1,262 @@
+package soccer.handler.session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.handler.user.UserHandler;
+import soccer.model.UserToken;
+
+public class SessionStore {
+
+    private final ConcurrentHashMap<UserToken, SessionHandler>               _sessionHandlerMap;
+
+    // Sessions of each user, oldest first. Only accessed within compute of its user
+    private final ConcurrentHashMap<UserHandler, ArrayDeque<SessionHandler>> _userSessionMap;
+
+    // Timing wheel: each session is in the bucket of the tick when it may expire
+    // A session refreshed meanwhile is only moved when its bucket is reached, so a refresh is a single write
+    private final List<ConcurrentLinkedQueue<SessionHandler>>                _bucketList;
+    private final long                                                       _tickNanos;
+    private long                                                             _lastTick;
+
+    // Sessions kept alive while in use without requests, as by an event stream
+    private final Predicate<UserToken>                                       _keepAlivePredicate;
+    // Notified of each session removed
+    private final Consumer<UserToken>                                        _removeConsumer;
+
+    private final int                                                        _userSessionLimit;
+
+    private final AtomicLong                                                 _expireCount;
+    private final AtomicLong                                                 _evictCount;
+
+    public SessionStore(Predicate<UserToken> keepAlivePredicate, Consumer<UserToken> removeConsumer) {
+
+        int bucketCount;
+
+        _sessionHandlerMap = new ConcurrentHashMap<UserToken, SessionHandler>();
+        _userSessionMap = new ConcurrentHashMap<UserHandler, ArrayDeque<SessionHandler>>();
+
+        // One more bucket than the ticks of a time out, so that a deadline never wraps around the wheel
+        _tickNanos = Setup.SESSION_WHEEL_TICK.toNanos();
+        bucketCount = (int) (Setup.SESSION_TIME_OUT.toNanos() / _tickNanos) + 2;
+        _bucketList = new ArrayList<ConcurrentLinkedQueue<SessionHandler>>(bucketCount);
+        for (int index = 0; index < bucketCount; index++) {
+            _bucketList.add(new ConcurrentLinkedQueue<SessionHandler>());
+        }
+        _lastTick = tick(System.nanoTime());
+
+        _keepAlivePredicate = keepAlivePredicate;
+        _removeConsumer = removeConsumer;
+
+        _userSessionLimit = Api.integerProperty(Setup.SESSION_LIMIT_PER_USER_PROPERTY,
+                                                Setup.DEFAULT_SESSION_LIMIT_PER_USER);
+
+        _expireCount = new AtomicLong(0);
+        _evictCount = new AtomicLong(0);
+    }
+
+    private long tick(long nanos) {
+
+        return Math.floorDiv(nanos, _tickNanos);
+    }
+
+    private void schedule(SessionHandler sessionHandler) {
+
+        long deadlineTick;
+
+        // First tick after the session may have timed out
+        deadlineTick = tick(sessionHandler.refreshNanos() + Setup.SESSION_TIME_OUT.toNanos()) + 1;
+
+        _bucketList.get((int) Math.floorMod(deadlineTick, (long) _bucketList.size())).add(sessionHandler);
+    }
+
+    public int size() {
+
+        return _sessionHandlerMap.size();
+    }
+
+    public RestOutput<Result> add(SessionHandler sessionHandler) {
+
+        List<SessionHandler> evictedList;
+
+        if (Api.isNull(sessionHandler)) {
+            return RestOutput.badRequest();
+        }
+
+        if (_sessionHandlerMap.putIfAbsent(sessionHandler.userToken(), sessionHandler) != null) {
+            Api.error("SessionHandler is a duplicate. INTERNAL FAILURE", sessionHandler, this);
+            return RestOutput.internalFailure();
+        }
+
+        // Beyond the limit of sessions of this user, the oldest sessions are closed
+        evictedList = new ArrayList<SessionHandler>();
+        _userSessionMap.compute(sessionHandler.userHandler(), (userHandler, sessionDeque) -> {
+            if (sessionDeque == null) {
+                sessionDeque = new ArrayDeque<SessionHandler>();
+            }
+            sessionDeque.addLast(sessionHandler);
+            while (sessionDeque.size() > _userSessionLimit) {
+                evictedList.add(sessionDeque.pollFirst());
+            }
+            return sessionDeque;
+        });
+
+        for (SessionHandler evictedSessionHandler : evictedList) {
+            if (_sessionHandlerMap.remove(evictedSessionHandler.userToken(), evictedSessionHandler)) {
+                _evictCount.incrementAndGet();
+                _removeConsumer.accept(evictedSessionHandler.userToken());
+            }
+        }
+
+        schedule(sessionHandler);
+
+        return RestOutput.OK;
+    }
+
+    public void remove(UserToken userToken) {
+
+        SessionHandler sessionHandler;
+
+        if (Api.isNull(userToken)) {
+            return;
+        }
+
+        sessionHandler = _sessionHandlerMap.get(userToken);
+        if (sessionHandler != null) {
+            remove(sessionHandler);
+        }
+    }
+
+    private void remove(SessionHandler sessionHandler) {
+
+        if (_sessionHandlerMap.remove(sessionHandler.userToken(), sessionHandler) == false) {
+            return;
+        }
+
+        _userSessionMap.computeIfPresent(sessionHandler.userHandler(), (userHandler, sessionDeque) -> {
+            sessionDeque.remove(sessionHandler);
+            return (sessionDeque.isEmpty()) ? null : sessionDeque;
+        });
+
+        _removeConsumer.accept(sessionHandler.userToken());
+    }
+
+    public RestOutput<SessionHandler> find(UserToken userToken) {
+
+        SessionHandler sessionHandler;
+        long nowNanos;
+
+        if (Api.isNull(userToken)) {
+            return RestOutput.badRequest();
+        }
+
+        sessionHandler = _sessionHandlerMap.get(userToken);
+        if (sessionHandler == null) {
+            Api.error("This session does not exist anymore. FORBIDDEN", userToken, this);
+            return RestOutput.forbidden();
+        }
+
+        nowNanos = System.nanoTime();
+
+        if (sessionHandler.hasTimedOut(nowNanos)) {
+            Api.error("This session has timed out. FORBIDDEN", userToken, sessionHandler, this);
+            return RestOutput.forbidden();
+        }
+
+        // Refresh the session
+        sessionHandler.refresh(nowNanos);
+
+        return RestOutput.ok(sessionHandler);
+    }
+
+    private void expireBucket(ConcurrentLinkedQueue<SessionHandler> bucket, long nowNanos) {
+
+        SessionHandler sessionHandler;
+        int count;
+
+        // Only the sessions already in the bucket, as some are added back to it
+        count = bucket.size();
+        for (int index = 0; index < count; index++) {
+
+            sessionHandler = bucket.poll();
+            if (sessionHandler == null) {
+                return;
+            }
+
+            // Removed already, as evicted by a newer session of its user
+            if (_sessionHandlerMap.get(sessionHandler.userToken()) != sessionHandler) {
+                continue;
+            }
+
+            if (sessionHandler.hasTimedOut(nowNanos)) {
+                if (_keepAlivePredicate.test(sessionHandler.userToken()) == false) {
+                    _expireCount.incrementAndGet();
+                    remove(sessionHandler);
+                    continue;
+                }
+                sessionHandler.refresh(nowNanos);
+            }
+
+            // Refreshed since scheduled, so moved to the bucket of its new deadline
+            schedule(sessionHandler);
+        }
+    }
+
+    private void expireSessions() {
+
+        long nowNanos;
+        long currentTick;
+        long firstTick;
+
+        try {
+            nowNanos = System.nanoTime();
+            currentTick = tick(nowNanos);
+
+            // Each bucket reached since the last run, at most once around the wheel
+            firstTick = Math.max(_lastTick + 1, currentTick - _bucketList.size() + 1);
+            for (long tick = firstTick; tick <= currentTick; tick++) {
+                expireBucket(_bucketList.get((int) Math.floorMod(tick, (long) _bucketList.size())), nowNanos);
+            }
+            _lastTick = currentTick;
+
+        } catch (Throwable t) {
+            Api.error(t, "expireSessions failed", this);
+        }
+
+        // Reschedule the expiry on the next tick
+        CompletableFuture.runAsync(this::expireSessions,
+                                   CompletableFuture.delayedExecutor(Setup.SESSION_WHEEL_TICK.toMillis(),
+                                                                     TimeUnit.MILLISECONDS));
+    }
+
+    public void start() {
+
+        expireSessions();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStore [_sessionHandlerMap=" + _sessionHandlerMap.size()
+               + ", _userSessionMap="
+               + _userSessionMap.size()
+               + ", _userSessionLimit="
+               + _userSessionLimit
+               + ", _expireCount="
+               + _expireCount
+               + ", _evictCount="
+               + _evictCount
+               + "]";
+    }
+}
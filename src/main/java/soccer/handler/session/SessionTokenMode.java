@@ -0,0 +1,7 @@
+package soccer.handler.session;
+
+public enum SessionTokenMode {
+
+                              MEMORY,
+                              SIGNED
+}
@@ -0,0 +1,317 @@
+package soccer.handler.session;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.UserToken;
+import soccer.store.StoreService;
+import soccer.store.token.RevokedTokenRecord;
+
+public class TokenSigner {
+
+    private static final String                   Algorithm = "HmacSHA256";
+    private static final Base64.Encoder           Encoder   = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder           Decoder   = Base64.getUrlDecoder();
+    private static final SecureRandom             Random    = new SecureRandom();
+
+    // Mac instances are not thread safe
+    private final ThreadLocal<Mac>                _macThreadLocal;
+    private final SecretKeySpec                   _keySpec;
+
+    // Tokens revoked before their expiry by any node, by token id, with their expiry
+    private final ConcurrentHashMap<String, Long> _revokedMap;
+    private final StoreService                    _storeService;
+    private final AtomicBoolean                   _stopped;
+
+    private final AtomicLong                      _signCount;
+    private final AtomicLong                      _rejectCount;
+
+    private TokenSigner(byte[] key, StoreService storeService) {
+
+        _keySpec = new SecretKeySpec(key, Algorithm);
+        _macThreadLocal = ThreadLocal.withInitial(this::buildMac);
+
+        _revokedMap = new ConcurrentHashMap<String, Long>();
+        _storeService = storeService;
+        _stopped = new AtomicBoolean(false);
+
+        _signCount = new AtomicLong(0);
+        _rejectCount = new AtomicLong(0);
+    }
+
+    private StoreService storeService() {
+
+        return _storeService;
+    }
+
+    private Mac buildMac() {
+
+        Mac mac;
+
+        try {
+            mac = Mac.getInstance(Algorithm);
+            mac.init(_keySpec);
+            return mac;
+        } catch (Exception e) {
+            // HmacSHA256 is provided by every JVM
+            throw new IllegalStateException("Mac " + Algorithm + " can not be built", e);
+        }
+    }
+
+    private byte[] signature(String claims) {
+
+        return _macThreadLocal.get().doFinal(claims.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public RestOutput<UserToken> sign(String userId) {
+
+        byte[] tokenIdBytes;
+        String claims;
+
+        if (Api.isNull(userId)) {
+            return RestOutput.badRequest();
+        }
+
+        // Unique id of the token, to revoke it
+        tokenIdBytes = new byte[Setup.SESSION_TOKEN_ID_LENGTH];
+        Random.nextBytes(tokenIdBytes);
+
+        // <userId>.<expiry>.<tokenId>.<signature>, all URL safe
+        claims = Encoder.encodeToString(userId.getBytes(StandardCharsets.UTF_8))
+                 + "."
+                 + Long.toString(System.currentTimeMillis() + Setup.SESSION_TOKEN_TIME_OUT.toMillis())
+                 + "."
+                 + Encoder.encodeToString(tokenIdBytes);
+
+        _signCount.incrementAndGet();
+
+        return RestOutput.ok(new UserToken(claims + "." + Encoder.encodeToString(signature(claims))));
+    }
+
+    private RestOutput<Claims> claims(UserToken userToken) {
+
+        String token;
+        int signatureIndex;
+        String[] claimArray;
+        Claims claims;
+
+        if (Api.isNull(userToken) || Api.isNull(userToken.getToken())) {
+            return RestOutput.badRequest();
+        }
+        token = userToken.getToken();
+
+        try {
+            signatureIndex = token.lastIndexOf('.');
+            if (signatureIndex < 0) {
+                return RestOutput.forbidden();
+            }
+
+            // Constant time comparison, not to reveal the signature
+            if (MessageDigest.isEqual(signature(token.substring(0, signatureIndex)),
+                                      Decoder.decode(token.substring(signatureIndex + 1))) == false) {
+                return RestOutput.forbidden();
+            }
+
+            claimArray = token.substring(0, signatureIndex).split("\\.");
+            if (claimArray.length != 3) {
+                return RestOutput.forbidden();
+            }
+
+            claims = new Claims(new String(Decoder.decode(claimArray[0]), StandardCharsets.UTF_8),
+                                Long.parseLong(claimArray[1]),
+                                claimArray[2]);
+
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not a number, so not a token signed here
+            return RestOutput.forbidden();
+        }
+
+        return RestOutput.ok(claims);
+    }
+
+    public RestOutput<String> verify(UserToken userToken) {
+
+        RestOutput<Claims> claimsOutput;
+        Claims claims;
+
+        if (Api.isNull(userToken)) {
+            return RestOutput.badRequest();
+        }
+
+        claimsOutput = claims(userToken);
+        if (RestOutput.isNOK(claimsOutput)) {
+            _rejectCount.incrementAndGet();
+            Api.error("This token is not valid. FORBIDDEN", userToken, this);
+            return RestOutput.forbidden();
+        }
+        claims = claimsOutput.output();
+
+        if (claims.expiryMillis() < System.currentTimeMillis()) {
+            _rejectCount.incrementAndGet();
+            Api.error("This token has expired. FORBIDDEN", userToken, this);
+            return RestOutput.forbidden();
+        }
+
+        if (_revokedMap.containsKey(claims.tokenId())) {
+            _rejectCount.incrementAndGet();
+            Api.error("This token has been revoked. FORBIDDEN", userToken, this);
+            return RestOutput.forbidden();
+        }
+
+        return RestOutput.ok(claims.userId());
+    }
+
+    public RestOutput<Result> revoke(UserToken userToken) {
+
+        RestOutput<Claims> claimsOutput;
+        Claims claims;
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(userToken)) {
+            return RestOutput.badRequest();
+        }
+
+        // Only a token signed here may be revoked
+        claimsOutput = claims(userToken);
+        if (RestOutput.isNOK(claimsOutput)) {
+            Api.error("This token is not valid to revoke. FORBIDDEN", userToken, this);
+            return RestOutput.forbidden();
+        }
+        claims = claimsOutput.output();
+
+        // Stored for the other nodes, which reject it once they refresh their revoked tokens
+        resultOutput = storeService().storeRevokedTokenRecord(new RevokedTokenRecord(claims.tokenId(),
+                                                                                     claims.expiryMillis()));
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("storeRevokedTokenRecord to revoke is NOT OK", resultOutput, userToken, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        // Rejected right away by this node, until it would have expired anyway
+        _revokedMap.put(claims.tokenId(), claims.expiryMillis());
+
+        return RestOutput.OK;
+    }
+
+    private void offerRevoked(RevokedTokenRecord revokedTokenRecord) {
+
+        _revokedMap.put(revokedTokenRecord.tokenId(), revokedTokenRecord.expiryMillis());
+    }
+
+    private void refreshRevoked() {
+
+        long nowMillis;
+        RestOutput<Result> resultOutput;
+
+        if (_stopped.get()) {
+            return;
+        }
+
+        nowMillis = System.currentTimeMillis();
+
+        // Tokens revoked by all nodes. On failure, the revoked tokens known already remain rejected
+        resultOutput = storeService().loadRevokedTokenRecords(this::offerRevoked);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("loadRevokedTokenRecords to refreshRevoked is NOT OK", resultOutput, this);
+        }
+
+        // Expired tokens are rejected anyway
+        _revokedMap.values().removeIf(expiryMillis -> expiryMillis < nowMillis);
+
+        resultOutput = storeService().deleteRevokedTokenRecords(nowMillis);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("deleteRevokedTokenRecords to refreshRevoked is NOT OK", resultOutput, this);
+        }
+
+        // Reschedule the refresh later on
+        CompletableFuture.runAsync(this::refreshRevoked,
+                                   CompletableFuture.delayedExecutor(Setup.SESSION_TOKEN_REFRESH_PERIOD.toMillis(),
+                                                                     TimeUnit.MILLISECONDS));
+    }
+
+    public void start() {
+
+        // Tokens revoked before this node started are rejected from the first request
+        refreshRevoked();
+    }
+
+    public void stop() {
+
+        _stopped.set(true);
+    }
+
+    @Override
+    public String toString() {
+        return "TokenSigner [_revokedMap=" + _revokedMap.size()
+               + ", _signCount="
+               + _signCount
+               + ", _rejectCount="
+               + _rejectCount
+               + "]";
+    }
+
+    public static RestOutput<TokenSigner> with(String keyText, StoreService storeService) {
+
+        byte[] key;
+
+        if (Api.isNull(storeService)) {
+            return RestOutput.badRequest();
+        }
+
+        // Without a key shared by all nodes, tokens are only valid on this node until it restarts
+        if (keyText == null) {
+            Api.info("Property " + Setup.SESSION_TOKEN_KEY_PROPERTY + " is not defined. Random key used");
+            key = new byte[Setup.SESSION_TOKEN_KEY_LENGTH];
+            Random.nextBytes(key);
+            return RestOutput.ok(new TokenSigner(key, storeService));
+        }
+
+        key = keyText.getBytes(StandardCharsets.UTF_8);
+        if (key.length < Setup.SESSION_TOKEN_KEY_LENGTH) {
+            Api.error("Property " + Setup.SESSION_TOKEN_KEY_PROPERTY + " is too short. BAD REQUEST", key.length);
+            return RestOutput.badRequest();
+        }
+
+        return RestOutput.ok(new TokenSigner(key, storeService));
+    }
+
+    private static class Claims {
+
+        private final String _userId;
+        private final long   _expiryMillis;
+        private final String _tokenId;
+
+        private Claims(String userId, long expiryMillis, String tokenId) {
+
+            _userId = userId;
+            _expiryMillis = expiryMillis;
+            _tokenId = tokenId;
+        }
+
+        private String userId() {
+            return _userId;
+        }
+
+        private long expiryMillis() {
+            return _expiryMillis;
+        }
+
+        private String tokenId() {
+            return _tokenId;
+        }
+    }
+}
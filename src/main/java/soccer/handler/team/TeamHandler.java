@@ -1,19 +1,25 @@
 package soccer.handler.team;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
 import soccer.base.Result;
+import soccer.handler.market.MarketIndex;
 import soccer.handler.player.PlayerHandler;
+import soccer.handler.player.PlayerStorage;
 import soccer.model.Player;
 import soccer.model.PlayerId;
 import soccer.model.PlayerType;
@@ -22,23 +28,37 @@ import soccer.model.TeamId;
 import soccer.model.outcome.TransferPlayerOutcome;
 import soccer.model.outcome.UpdatePlayerOutcome;
 import soccer.model.outcome.UpdateTeamOutcome;
+import soccer.store.StoreBatch;
 import soccer.store.StoreService;
+import soccer.store.player.PlayerRecord;
 import soccer.store.team.TeamRecord;
 
 public class TeamHandler implements Comparable<TeamHandler> {
 
-    private final TeamId                           _teamId;
+    private final TeamId               _teamId;
 
-    private String                                 _name;
-    private String                                 _country;
-    private Long                                   _balance;
+    private String                     _name;
+    private String                     _country;
+    private Long                       _balance;
 
-    private final HashMap<PlayerId, PlayerHandler> _playerHandlerMap;
-    private final ReentrantLock                    _lock;
+    // Slots of the players of this team in the PlayerStorage
+    private final PlayerStorage        _playerStorage;
+    private int[]                      _playerSlotArray;
+    private int                        _playerCount;
 
-    private final static AtomicInteger             IndexGenerator = new AtomicInteger(0);
+    private final ReentrantLock        _lock;
 
-    private TeamHandler(TeamId teamId, String name, String country, Long balance) {
+    // Published after each mutation, under the lock
+    private volatile TeamSnapshot      _teamSnapshot;
+
+    private final static AtomicInteger IndexGenerator = new AtomicInteger(0);
+
+    // Contention on the locks of several teams
+    private final static AtomicLong    LockCount      = new AtomicLong(0);
+    private final static AtomicLong    RetryCount     = new AtomicLong(0);
+    private final static AtomicLong    FailureCount   = new AtomicLong(0);
+
+    private TeamHandler(TeamId teamId, String name, String country, Long balance, PlayerStorage playerStorage) {
 
         _teamId = teamId;
 
@@ -46,10 +66,14 @@ public class TeamHandler implements Comparable<TeamHandler> {
         _country = country;
         _balance = balance;
 
-        _playerHandlerMap = new HashMap<PlayerId, PlayerHandler>();
+        _playerStorage = playerStorage;
+        _playerSlotArray = new int[0];
+        _playerCount = 0;
 
         // All players within a team are managed within this lock
         _lock = new ReentrantLock();
+
+        _teamSnapshot = null;
     }
 
     private void lock() {
@@ -62,6 +86,81 @@ public class TeamHandler implements Comparable<TeamHandler> {
         _lock.unlock();
     }
 
+    private boolean tryLock(long timeOutMillis) throws InterruptedException {
+
+        return _lock.tryLock(timeOutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static RestOutput<Result> lockInOrder(TeamHandler teamHandler1, TeamHandler teamHandler2) {
+
+        TeamHandler firstTeamHandler;
+        TeamHandler secondTeamHandler;
+        long backoffMillis;
+
+        if (Api.isNull(teamHandler1, teamHandler2)) {
+            return RestOutput.badRequest();
+        }
+
+        // All teams are locked in the order of their TeamId, so that two transfers never wait on each other
+        if (teamHandler1.compareTo(teamHandler2) <= 0) {
+            firstTeamHandler = teamHandler1;
+            secondTeamHandler = teamHandler2;
+        } else {
+            firstTeamHandler = teamHandler2;
+            secondTeamHandler = teamHandler1;
+        }
+
+        LockCount.incrementAndGet();
+
+        try {
+            for (int attempt = 1; attempt <= Setup.TEAM_LOCK_ATTEMPT_COUNT; attempt++) {
+
+                if (firstTeamHandler.tryLock(Setup.TEAM_LOCK_TIME_OUT.toMillis())) {
+                    if (secondTeamHandler.tryLock(Setup.TEAM_LOCK_TIME_OUT.toMillis())) {
+                        return RestOutput.OK;
+                    }
+                    firstTeamHandler.unlock();
+                }
+
+                RetryCount.incrementAndGet();
+
+                // Back off for a random delay to let the other operation complete
+                backoffMillis = Setup.TEAM_LOCK_BACKOFF.toMillis() * attempt;
+                Thread.sleep(backoffMillis + ThreadLocalRandom.current().nextLong(backoffMillis + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Api.error(e, "lockInOrder interrupted. NOT AVAILABLE", teamHandler1, teamHandler2);
+            return RestOutput.notAvailable();
+        }
+
+        FailureCount.incrementAndGet();
+
+        Api.error("lockInOrder failed. NOT AVAILABLE", teamHandler1, teamHandler2);
+        return RestOutput.notAvailable();
+    }
+
+    private static void unlockBoth(TeamHandler teamHandler1, TeamHandler teamHandler2) {
+
+        teamHandler2.unlock();
+        teamHandler1.unlock();
+    }
+
+    public static long lockCount() {
+
+        return LockCount.get();
+    }
+
+    public static long lockRetryCount() {
+
+        return RetryCount.get();
+    }
+
+    public static long lockFailureCount() {
+
+        return FailureCount.get();
+    }
+
     public TeamId teamId() {
 
         return _teamId;
@@ -97,9 +196,30 @@ public class TeamHandler implements Comparable<TeamHandler> {
         _balance -= value;
     }
 
-    private HashMap<PlayerId, PlayerHandler> playerHandlerMap() {
+    private PlayerStorage playerStorage() {
+
+        return _playerStorage;
+    }
+
+    private Stream<PlayerHandler> playerHandlers() {
+
+        return Arrays.stream(_playerSlotArray, 0, _playerCount)
+                     .mapToObj(slot -> PlayerHandler.at(playerStorage(), slot));
+    }
+
+    private PlayerHandler findPlayerUnderLock(PlayerId playerId) {
 
-        return _playerHandlerMap;
+        PlayerHandler playerHandler;
+
+        // A team has few players, compared in place
+        for (int index = 0; index < _playerCount; index++) {
+            playerHandler = PlayerHandler.at(playerStorage(), _playerSlotArray[index]);
+            if (playerHandler.hasPlayerId(playerId)) {
+                return playerHandler;
+            }
+        }
+
+        return null;
     }
 
     private RestOutput<Result> linkPlayerUnderLock(PlayerHandler playerHandler) {
@@ -108,36 +228,118 @@ public class TeamHandler implements Comparable<TeamHandler> {
             return RestOutput.badRequest();
         }
 
-        // Link this player into this team
-        if (playerHandlerMap().putIfAbsent(playerHandler.playerId(), playerHandler) != null) {
+        if (findPlayerUnderLock(playerHandler.playerId()) != null) {
             Api.error("Player already present in team to link. INTERNAL FAILURE", playerHandler, this);
             return RestOutput.internalFailure();
         }
 
+        // Link this player into this team
+        if (_playerCount == _playerSlotArray.length) {
+            _playerSlotArray = Arrays.copyOf(_playerSlotArray, Math.max(8, _playerCount * 2));
+        }
+        _playerSlotArray[_playerCount++] = playerHandler.slot();
+
         Api.info("Player " + playerHandler + " linked", this);
         return RestOutput.OK;
     }
 
+    private RestOutput<Result> linkNewPlayerUnderLock(PlayerHandler playerHandler) {
+
+        RestOutput<Result> resultOutput;
+
+        // A new player not linked is released from the PlayerStorage
+        resultOutput = linkPlayerUnderLock(playerHandler);
+        if (RestOutput.isNOK(resultOutput) && (playerHandler != null)) {
+            playerHandler.release();
+        }
+
+        return resultOutput;
+    }
+
     private RestOutput<Result> unlinkPlayerUnderLock(PlayerHandler playerHandler) {
 
         if (Api.isNull(playerHandler)) {
             return RestOutput.badRequest();
         }
 
-        // Unlink this player from this team
-        if (playerHandlerMap().remove(playerHandler.playerId(), playerHandler) == false) {
-            Api.error("Player not present in team to unlink. INTERNAL FAILURE", playerHandler, this);
-            return RestOutput.internalFailure();
+        // Unlink this player from this team, the last player taking its place
+        for (int index = 0; index < _playerCount; index++) {
+            if (_playerSlotArray[index] == playerHandler.slot()) {
+                _playerSlotArray[index] = _playerSlotArray[--_playerCount];
+
+                Api.info("Player " + playerHandler + " unlinked", this);
+                return RestOutput.OK;
+            }
         }
 
-        Api.info("Player " + playerHandler + " unlinked", this);
+        Api.error("Player not present in team to unlink. INTERNAL FAILURE", playerHandler, this);
+        return RestOutput.internalFailure();
+    }
 
-        return RestOutput.OK;
+    private TeamSnapshot teamSnapshot() {
+
+        return _teamSnapshot;
+    }
+
+    private void snapshotUnderLock() {
+
+        Player[] playerArray;
+        long version;
+
+        // Sorted all players, once for all readers until the next mutation
+        playerArray = playerHandlers().sorted()
+                                      .map(ph -> ph.retrievePlayer(teamId()))
+                                      .map(RestOutput::stream)
+                                      .filter(Objects::nonNull)
+                                      .toArray(Player[]::new);
+
+        version = (teamSnapshot() == null) ? 1 : teamSnapshot().version() + 1;
+
+        _teamSnapshot = new TeamSnapshot(version,
+                                         new Team(teamId(), getName(), getCountry(), getBalance(), playerArray));
+    }
+
+    private void publishUnderLock(MarketIndex marketIndex) {
+
+        // Present the current name and balance of this team in the market
+        marketIndex.publishTeam(teamId(), getName(), getCountry(), getBalance());
+    }
+
+    public RestOutput<Result> indexMarket(MarketIndex marketIndex) {
+
+        if (Api.isNull(marketIndex)) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            lock();
+
+            publishUnderLock(marketIndex);
+
+            // Index the players already in the market, as restored from the store
+            playerHandlers().forEach(ph -> ph.indexMarket(teamId(), marketIndex));
+
+            return RestOutput.OK;
+
+        } finally {
+            unlock();
+        }
+    }
+
+    private TeamRecord teamRecord(String userId, String name, String country, Long balance) {
+
+        return new TeamRecord(userId, teamId(), name, country, balance);
+    }
+
+    private TeamRecord teamRecord(String userId) {
+
+        return teamRecord(userId, getName(), getCountry(), getBalance());
     }
 
     public RestOutput<Result> persist(Boolean persistPlayers, String userId, StoreService storeService) {
 
         TeamRecord teamRecord;
+        List<PlayerRecord> playerRecordList;
         RestOutput<Result> resultOutput;
 
         if (Api.isNull(persistPlayers, userId, storeService)) {
@@ -148,26 +350,27 @@ public class TeamHandler implements Comparable<TeamHandler> {
             lock();
 
             // Build the TeamRecord
-            teamRecord = new TeamRecord(userId, teamId(), getName(), getCountry(), getBalance());
+            teamRecord = teamRecord(userId);
 
-            // Store or update the TeamRecord
-            resultOutput = storeService.storeTeamRecord(teamRecord);
-            if (RestOutput.isNOK(resultOutput)) {
-                Api.error("storeTeamRecord is NOT OK", resultOutput, teamRecord, userId, this);
-                return RestOutput.of(resultOutput);
-            }
+            if (persistPlayers == false) {
 
-            if (persistPlayers) {
+                // Store or update the TeamRecord
+                resultOutput = storeService.storeTeamRecord(teamRecord);
+                if (RestOutput.isNOK(resultOutput)) {
+                    Api.error("storeTeamRecord is NOT OK", resultOutput, teamRecord, userId, this);
+                    return RestOutput.of(resultOutput);
+                }
+
+                return RestOutput.OK;
+            }
 
-                for (PlayerHandler playerHandler : playerHandlerMap().values()) {
+            playerRecordList = playerHandlers().map(ph -> ph.playerRecord(teamId())).collect(Collectors.toList());
 
-                    // Persist each player
-                    resultOutput = playerHandler.persist(teamId(), storeService);
-                    if (RestOutput.isNOK(resultOutput)) {
-                        Api.error("persist of player is NOT OK", resultOutput, playerHandler, teamRecord, userId, this);
-                        return RestOutput.of(resultOutput);
-                    }
-                }
+            // Store the team and all its players within a single transaction
+            resultOutput = storeService.storeBatch(new StoreBatch(List.of(teamRecord), playerRecordList));
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("storeBatch of team and players is NOT OK", resultOutput, teamRecord, userId, this);
+                return RestOutput.of(resultOutput);
             }
 
             return RestOutput.OK;
@@ -177,10 +380,13 @@ public class TeamHandler implements Comparable<TeamHandler> {
         }
     }
 
-    public RestOutput<Team> retrieveTeam(Optional<TeamId> teamIdOptional) {
+    public long version() {
 
-        Player[] playerArray;
-        Team team;
+        // Changes after each mutation of this team or of its players
+        return teamSnapshot().version();
+    }
+
+    public RestOutput<Team> retrieveTeam(Optional<TeamId> teamIdOptional) {
 
         if (Api.isNull(teamIdOptional)) {
             return RestOutput.badRequest();
@@ -193,21 +399,17 @@ public class TeamHandler implements Comparable<TeamHandler> {
             }
         }
 
-        try {
-            lock();
+        // The last published snapshot, read without any lock
+        return RestOutput.ok(teamSnapshot().team());
+    }
 
-            // Sorted all players
-            playerArray = playerHandlerMap().values()
-                                            .stream()
-                                            .sorted()
-                                            .map(ph -> ph.retrievePlayer(teamId()))
-                                            .map(RestOutput::stream)
-                                            .filter(Objects::nonNull)
-                                            .toArray(Player[]::new);
+    public RestOutput<Team> captureTeam() {
 
-            team = new Team(teamId(), getName(), getCountry(), getBalance(), playerArray);
+        // Waits for a mutation in progress, which may be in the store already while not yet published
+        try {
+            lock();
 
-            return RestOutput.ok(team);
+            return RestOutput.ok(teamSnapshot().team());
 
         } finally {
             unlock();
@@ -218,10 +420,11 @@ public class TeamHandler implements Comparable<TeamHandler> {
                                                     String name,
                                                     String country,
                                                     String userId,
+                                                    MarketIndex marketIndex,
                                                     StoreService storeService) {
         RestOutput<Result> resultOutput;
 
-        if (Api.isNull(teamId, name, country, userId, storeService)) {
+        if (Api.isNull(teamId, name, country, userId, marketIndex, storeService)) {
             return RestOutput.badRequest();
         }
 
@@ -234,16 +437,19 @@ public class TeamHandler implements Comparable<TeamHandler> {
         try {
             lock();
 
-            setName(name);
-            setCountry(country);
-
-            // Persist this updated team in the store
-            resultOutput = persist(Boolean.FALSE, userId, storeService);
+            // Persist this updated team in the store, before it changes in memory
+            resultOutput = storeService.storeTeamRecord(teamRecord(userId, name, country, getBalance()));
             if (RestOutput.isNOK(resultOutput)) {
-                Api.error("persist to updateTeam is NOT OK", resultOutput, teamId, name, country, userId, this);
+                Api.error("storeTeamRecord to updateTeam is NOT OK", resultOutput, teamId, name, country, userId, this);
                 return RestOutput.ok(new UpdateTeamOutcome(teamId, "Persist of team in store failed"));
             }
 
+            setName(name);
+            setCountry(country);
+
+            snapshotUnderLock();
+            publishUnderLock(marketIndex);
+
             // Successful update of team
             return RestOutput.ok(new UpdateTeamOutcome(teamId()));
 
@@ -257,56 +463,37 @@ public class TeamHandler implements Comparable<TeamHandler> {
                                                         String lastName,
                                                         String country,
                                                         Long transferValue,
+                                                        MarketIndex marketIndex,
                                                         StoreService storeService) {
 
         PlayerHandler playerHandler;
+        RestOutput<UpdatePlayerOutcome> updatePlayerOutcomeOutput;
 
-        if (Api.isNull(playerId, firstName, lastName, country, transferValue, storeService)) {
+        if (Api.isNull(playerId, firstName, lastName, country, transferValue, marketIndex, storeService)) {
             return RestOutput.badRequest();
         }
 
         try {
             lock();
 
-            playerHandler = playerHandlerMap().get(playerId);
+            playerHandler = findPlayerUnderLock(playerId);
             if (playerHandler == null) {
                 Api.error("Player does not exist in this team.", playerId, firstName, lastName, country, this);
                 return RestOutput.ok(new UpdatePlayerOutcome(playerId, "Player does not exist"));
             }
 
-            return playerHandler.update(firstName, lastName, country, transferValue, teamId(), storeService);
-
-        } finally {
-            unlock();
-        }
-    }
-
-    public RestOutput<Optional<Team>> retrieveMarket() {
-
-        Player[] playerArray;
-        Team team;
-
-        try {
-            lock();
-
-            // Return a team of players available for transfer
-            // (With a strictly positive Transfer Value)
-            playerArray = playerHandlerMap().values()
-                                            .stream()
-                                            .filter(PlayerHandler::isInMarket)
-                                            .map(ph -> ph.retrievePlayer(teamId()))
-                                            .map(RestOutput::stream)
-                                            .filter(Objects::nonNull)
-                                            .toArray(Player[]::new);
-
-            if (playerArray.length == 0) {
-                // No Player in the market available for transfer
-                return RestOutput.ok(Optional.empty());
-            }
+            updatePlayerOutcomeOutput = playerHandler.update(firstName,
+                                                             lastName,
+                                                             country,
+                                                             transferValue,
+                                                             teamId(),
+                                                             marketIndex,
+                                                             storeService);
 
-            team = new Team(teamId(), getName(), getCountry(), getBalance(), playerArray);
+            // The player changes once persisted, and stays as it was otherwise
+            snapshotUnderLock();
 
-            return RestOutput.ok(Optional.of(team));
+            return updatePlayerOutcomeOutput;
 
         } finally {
             unlock();
@@ -317,133 +504,144 @@ public class TeamHandler implements Comparable<TeamHandler> {
                                                             TeamHandler fromTeamHandler,
                                                             String toUserId,
                                                             PlayerId playerId,
+                                                            MarketIndex marketIndex,
                                                             StoreService storeService) {
 
         PlayerHandler playerHandler;
         Long marketPrice;
         RestOutput<Result> resultOutput;
+        TeamRecord fromTeamRecord;
+        TeamRecord toTeamRecord;
+        PlayerRecord playerRecord;
+        StoreBatch storeBatch;
 
-        if (Api.isNull(fromUserId, fromTeamHandler, toUserId, playerId, storeService)) {
+        if (Api.isNull(fromUserId, fromTeamHandler, toUserId, playerId, marketIndex, storeService)) {
             return RestOutput.badRequest();
         }
 
-        try {
-            lock();
+        // Both records of the transfer would belong to the same team
+        if (fromTeamHandler == this) {
+            Api.error("Team to transfer from is this team. BAD REQUEST", fromUserId, playerId, this);
+            return RestOutput.badRequest();
+        }
 
-            try {
-                fromTeamHandler.lock();
+        // Lock both teams to avoid double spend
+        resultOutput = lockInOrder(this, fromTeamHandler);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("lockInOrder to transferPlayer is NOT OK", resultOutput, fromTeamHandler, playerId, this);
+            return RestOutput.of(resultOutput);
+        }
 
-                // Lock both teams to avoid double spend
-                // There is no roll-back mechanism defined without more context
+        try {
+            // Nothing changes in memory until the transfer is in the store, so a failure needs no roll-back
 
-                // 1. Locate the player to transfer
-                playerHandler = fromTeamHandler.playerHandlerMap().get(playerId);
-                if (playerHandler == null) {
-                    Api.error("Player to transfer does not exist in this team", fromTeamHandler, playerId, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Player to transfer does not exist in this team"));
-                }
+            // 1. Locate the player to transfer
+            playerHandler = fromTeamHandler.findPlayerUnderLock(playerId);
+            if (playerHandler == null) {
+                Api.error("Player to transfer does not exist in this team", fromTeamHandler, playerId, this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Player to transfer does not exist in this team"));
+            }
 
-                // 2. Check player is in market
-                if (playerHandler.isInMarket() == false) {
-                    Api.error("Player is not in the market for transfer", fromTeamHandler, playerId, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Player is not in the market for transfer"));
+            // 2. Check player is in market
+            if (playerHandler.isInMarket() == false) {
+                Api.error("Player is not in the market for transfer", fromTeamHandler, playerId, this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Player is not in the market for transfer"));
 
-                }
+            }
 
-                // 3. Check balance of buying team
-                marketPrice = playerHandler.marketPrice();
-                if (getBalance() < marketPrice) {
-                    Api.error("Balance is not enough to transfer this player", fromTeamHandler, playerId, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Balance is not enough to transfer this player"));
-                }
+            // 3. Check balance of buying team
+            marketPrice = playerHandler.marketPrice();
+            if (getBalance() < marketPrice) {
+                Api.error("Balance is not enough to transfer this player", fromTeamHandler, playerId, this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Balance is not enough to transfer this player"));
+            }
 
-                // 4. Update the balances and update the player
-                fromTeamHandler.incrementBalance(marketPrice);
-                decrementBalance(marketPrice);
+            // 4. Persist both teams and the transferred player within a single transaction
+            playerRecord = playerHandler.transferRecord(teamId());
+            fromTeamRecord = fromTeamHandler.teamRecord(fromUserId,
+                                                        fromTeamHandler.getName(),
+                                                        fromTeamHandler.getCountry(),
+                                                        fromTeamHandler.getBalance() + marketPrice);
+            toTeamRecord = teamRecord(toUserId, getName(), getCountry(), getBalance() - marketPrice);
 
-                resultOutput = playerHandler.transfer();
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("Failure to transfer the player", fromTeamHandler, playerId, playerHandler, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Failure to transfer the player"));
-                }
+            storeBatch = new StoreBatch(List.of(fromTeamRecord, toTeamRecord), List.of(playerRecord));
 
-                // 5. Remove player from old team
-                resultOutput = fromTeamHandler.unlinkPlayerUnderLock(playerHandler);
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("Failure to unlink the player from its old team",
-                              fromTeamHandler,
-                              playerId,
-                              playerHandler,
-                              this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Failure to remove the player from its old team"));
-                }
+            resultOutput = storeService.storeBatch(storeBatch);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("storeBatch to transferPlayer is NOT OK",
+                          resultOutput,
+                          fromUserId,
+                          fromTeamHandler,
+                          toUserId,
+                          playerId,
+                          this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Persist of transfer in store failed"));
+            }
 
-                // 6. Add player to new team
-                resultOutput = linkPlayerUnderLock(playerHandler);
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("Failure to link the player to its new team",
-                              fromTeamHandler,
-                              playerId,
-                              playerHandler,
-                              this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Failure to remove the player from its old team"));
-                }
+            // 5. Update the balances and update the player
+            fromTeamHandler.incrementBalance(marketPrice);
+            decrementBalance(marketPrice);
 
-                // 7. Persist the from team
-                resultOutput = fromTeamHandler.persist(Boolean.FALSE, fromUserId, storeService);
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("persist of fromTeam to transferPlayer is NOT OK",
-                              resultOutput,
-                              fromUserId,
-                              fromTeamHandler,
-                              playerId,
-                              this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Persist of from team in store failed"));
-                }
+            fromTeamHandler.publishUnderLock(marketIndex);
+            publishUnderLock(marketIndex);
 
-                // 8. Persist the to team
-                resultOutput = persist(Boolean.FALSE, toUserId, storeService);
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("persist of toTeam to transferPlayer is NOT OK", resultOutput, toUserId, playerId, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Persist of to team in store failed"));
-                }
+            // The player leaves the market
+            resultOutput = playerHandler.transfer(playerRecord, marketIndex);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Failure to transfer the player", fromTeamHandler, playerId, playerHandler, this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Failure to transfer the player"));
+            }
 
-                // 9. Persist the updated player
-                resultOutput = playerHandler.persist(teamId(), storeService);
-                if (RestOutput.isNOK(resultOutput)) {
-                    Api.error("persist of player to transferPlayer is NOT OK", resultOutput, playerId, this);
-                    return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
-                                                                   playerId,
-                                                                   "Persist of player in store failed"));
-                }
+            // 6. Remove player from old team
+            resultOutput = fromTeamHandler.unlinkPlayerUnderLock(playerHandler);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Failure to unlink the player from its old team",
+                          fromTeamHandler,
+                          playerId,
+                          playerHandler,
+                          this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Failure to remove the player from its old team"));
+            }
 
-                Api.info("Player transfered from team " + fromTeamHandler.teamId() + " to team " + teamId());
+            // 7. Add player to new team
+            resultOutput = linkPlayerUnderLock(playerHandler);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Failure to link the player to its new team",
+                          fromTeamHandler,
+                          playerId,
+                          playerHandler,
+                          this);
+                return RestOutput.ok(new TransferPlayerOutcome(fromTeamHandler.teamId(),
+                                                               playerId,
+                                                               "Failure to remove the player from its old team"));
+            }
 
-                // Transfer successful
-                return RestOutput.ok(new TransferPlayerOutcome(teamId(), playerId));
+            // Notify the transfer, now done in memory
+            marketIndex.transferPlayer(fromTeamHandler.teamId(), teamId(), playerId);
 
-            } finally {
-                fromTeamHandler.unlock();
-            }
+            Api.info("Player transfered from team " + fromTeamHandler.teamId() + " to team " + teamId());
+
+            // Transfer successful
+            return RestOutput.ok(new TransferPlayerOutcome(teamId(), playerId));
 
         } finally {
-            unlock();
+            // Both teams may have changed, even when the transfer failed midway
+            fromTeamHandler.snapshotUnderLock();
+            snapshotUnderLock();
+
+            unlockBoth(this, fromTeamHandler);
         }
     }
 
@@ -465,12 +663,14 @@ public class TeamHandler implements Comparable<TeamHandler> {
                + "]";
     }
 
-    public static RestOutput<TeamHandler> with(Team team) {
+    public static RestOutput<TeamHandler> with(Team team, PlayerStorage playerStorage) {
 
         TeamHandler teamHandler;
         Optional<RestOutput<Result>> resultOutputOptional;
 
-        if (Api.isNull(team.getTeamId(),
+        if (Api.isNull(team,
+                       playerStorage,
+                       team.getTeamId(),
                        team.getTeamName(),
                        team.getTeamCountry(),
                        team.getTeamBalance(),
@@ -483,21 +683,26 @@ public class TeamHandler implements Comparable<TeamHandler> {
             teamHandler = new TeamHandler(team.getTeamId(),
                                           team.getTeamName(),
                                           team.getTeamCountry(),
-                                          team.getTeamBalance());
+                                          team.getTeamBalance(),
+                                          playerStorage);
 
             // Link all players in the teamHandler
             resultOutputOptional = Arrays.stream(team.getPlayerArray())
-                                         .map(PlayerHandler::with)
+                                         .map(player -> PlayerHandler.with(player, playerStorage))
                                          .map(RestOutput::stream)
-                                         .map(teamHandler::linkPlayerUnderLock)
+                                         .map(teamHandler::linkNewPlayerUnderLock)
                                          .filter(ro -> ro != RestOutput.OK)
                                          .findAny();
 
             if (resultOutputOptional.isPresent()) {
                 Api.error("Link Players failed. BAD REQUEST", team);
+                teamHandler.playerHandlers().forEach(PlayerHandler::release);
                 return RestOutput.badRequest();
             }
 
+            // Not shared yet, so no lock is needed
+            teamHandler.snapshotUnderLock();
+
             return RestOutput.ok(teamHandler);
 
         } catch (Throwable t) {
@@ -0,0 +1,30 @@
+package soccer.handler.team;
+
+import soccer.model.Team;
+
+class TeamSnapshot {
+
+    private final long _version;
+
+    // Shared by all readers. Never modified once published
+    private final Team _team;
+
+    TeamSnapshot(long version, Team team) {
+
+        _version = version;
+        _team = team;
+    }
+
+    long version() {
+        return _version;
+    }
+
+    Team team() {
+        return _team;
+    }
+
+    @Override
+    public String toString() {
+        return "TeamSnapshot [_version=" + _version + ", _team=" + _team + "]";
+    }
+}
@@ -1,13 +1,14 @@
 package soccer.handler.user;
 
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
 import soccer.base.Result;
+import soccer.handler.market.MarketIndex;
+import soccer.handler.player.PlayerStorage;
 import soccer.handler.team.TeamHandler;
 import soccer.model.PlayerId;
 import soccer.model.Team;
@@ -48,6 +49,11 @@ public class UserHandler {
         return Objects.equals(userPassword(), userPassword);
     }
 
+    public UserRecord userRecord() {
+
+        return new UserRecord(userId(), userPassword());
+    }
+
     public RestOutput<Result> persist(StoreService storeService) {
 
         UserRecord userRecord;
@@ -57,7 +63,7 @@ public class UserHandler {
         }
 
         // Build the UserRecord
-        userRecord = new UserRecord(userId(), userPassword());
+        userRecord = userRecord();
 
         // Store or update the UserRecord
         return storeService.storeUserRecord(userRecord);
@@ -92,24 +98,9 @@ public class UserHandler {
         return (accessTeamHandler() == null);
     }
 
-    public boolean hasTeam(TeamId teamId) {
-
-        TeamHandler teamHandler;
-
-        teamHandler = accessTeamHandler();
-        if (teamHandler == null) {
-            return false;
-        }
-
-        return Objects.equals(teamId, teamHandler.teamId());
-    }
-
-    public RestOutput<Team> retrieveTeam(Optional<TeamId> teamIdOptional) {
-
-        return accessTeamHandler().retrieveTeam(teamIdOptional);
-    }
-
-    public RestOutput<TeamHandler> createTeam(Team team, AtomicReference<String> errorReference) {
+    public RestOutput<TeamHandler> createTeam(Team team,
+                                              PlayerStorage playerStorage,
+                                              AtomicReference<String> errorReference) {
 
         RestOutput<TeamHandler> teamHandlerOutput;
         TeamHandler teamHandler;
@@ -126,7 +117,7 @@ public class UserHandler {
         }
 
         // Generate a new team for this new user
-        teamHandlerOutput = TeamHandler.with(team);
+        teamHandlerOutput = TeamHandler.with(team, playerStorage);
         if (RestOutput.isNOK(teamHandlerOutput)) {
             Api.error("TeamHandler is NOT OK", teamHandlerOutput, team, this);
             return RestOutput.of(teamHandlerOutput);
@@ -146,9 +137,10 @@ public class UserHandler {
     public RestOutput<UpdateTeamOutcome> updateTeam(TeamId teamId,
                                                     String name,
                                                     String country,
+                                                    MarketIndex marketIndex,
                                                     StoreService storeService) {
 
-        return accessTeamHandler().updateTeam(teamId, name, country, userId(), storeService);
+        return accessTeamHandler().updateTeam(teamId, name, country, userId(), marketIndex, storeService);
     }
 
     public RestOutput<UpdatePlayerOutcome> updatePlayer(PlayerId playerId,
@@ -156,16 +148,16 @@ public class UserHandler {
                                                         String lastName,
                                                         String country,
                                                         Long transferValue,
+                                                        MarketIndex marketIndex,
                                                         StoreService storeService) {
 
-        return accessTeamHandler().updatePlayer(playerId, firstName, lastName, country, transferValue, storeService);
-    }
-
-    public RestOutput<Optional<Team>> retrieveMarket() {
-
-        // Return a team of players available for transfer
-
-        return accessTeamHandler().retrieveMarket();
+        return accessTeamHandler().updatePlayer(playerId,
+                                                firstName,
+                                                lastName,
+                                                country,
+                                                transferValue,
+                                                marketIndex,
+                                                storeService);
     }
 
     @Override
@@ -0,0 +1,61 @@
+package soccer.http;
+
+public class Asset {
+
+    // URL of the asset, relative to the UI path
+    private final String _url;
+    private final String _contentType;
+
+    private final byte[] _content;
+
+    // Null when compression does not reduce the content
+    private final byte[] _gzip;
+
+    // Hash of the content
+    private final String _tag;
+
+    public Asset(String url, String contentType, byte[] content, byte[] gzip, String tag) {
+
+        _url = url;
+        _contentType = contentType;
+
+        _content = content;
+        _gzip = gzip;
+
+        _tag = tag;
+    }
+
+    public String url() {
+        return _url;
+    }
+
+    public String contentType() {
+        return _contentType;
+    }
+
+    public byte[] content() {
+        return _content;
+    }
+
+    public byte[] gzip() {
+        return _gzip;
+    }
+
+    public String tag() {
+        return _tag;
+    }
+
+    @Override
+    public String toString() {
+        return "Asset [_url=" + _url
+               + ", _contentType="
+               + _contentType
+               + ", _content="
+               + _content.length
+               + ", _gzip="
+               + ((_gzip == null) ? null : _gzip.length)
+               + ", _tag="
+               + _tag
+               + "]";
+    }
+}
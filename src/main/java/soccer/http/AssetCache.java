@@ -0,0 +1,184 @@
+package soccer.http;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+
+public class AssetCache {
+
+    private final List<Path>                       _assetPathList;
+    private final List<Path>                       _pagePathList;
+
+    // Assets by versioned name, as dashboard.<hash>.js. Never modified once versioned
+    private final ConcurrentHashMap<String, Asset> _assetMap;
+
+    // Pages by path, referencing the versioned assets
+    private final ConcurrentHashMap<Path, Asset>   _pageMap;
+
+    public AssetCache(List<Path> assetPathList, List<Path> pagePathList) {
+
+        _assetPathList = assetPathList;
+        _pagePathList = pagePathList;
+
+        _assetMap = new ConcurrentHashMap<String, Asset>();
+        _pageMap = new ConcurrentHashMap<Path, Asset>();
+    }
+
+    public Optional<Asset> asset(String versionedName) {
+
+        if (Api.isNull(versionedName)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(_assetMap.get(versionedName));
+    }
+
+    public Optional<Asset> page(Path pagePath) {
+
+        if (Api.isNull(pagePath)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(_pageMap.get(pagePath));
+    }
+
+    public RestOutput<Result> load() {
+
+        Map<String, String> urlMap;
+        RestOutput<byte[]> contentOutput;
+        RestOutput<Asset> assetOutput;
+        String name;
+        String versionedName;
+        String html;
+
+        // Url of each versioned asset, by its name in the pages
+        urlMap = new LinkedHashMap<String, String>();
+
+        for (Path assetPath : _assetPathList) {
+
+            contentOutput = Api.loadResource(assetPath);
+            if (RestOutput.isNOK(contentOutput)) {
+                Api.error("loadResource of asset is NOT OK", contentOutput, assetPath, this);
+                return RestOutput.of(contentOutput);
+            }
+
+            assetOutput = asset(assetPath, contentOutput.output(), true);
+            if (RestOutput.isNOK(assetOutput)) {
+                Api.error("Asset is NOT OK", assetOutput, assetPath, this);
+                return RestOutput.of(assetOutput);
+            }
+
+            name = assetPath.getFileName().toString();
+            versionedName = versionedName(name, assetOutput.output().tag());
+
+            _assetMap.put(versionedName, assetOutput.output());
+            urlMap.put(name, assetOutput.output().url());
+        }
+
+        for (Path pagePath : _pagePathList) {
+
+            contentOutput = Api.loadResource(pagePath);
+            if (RestOutput.isNOK(contentOutput)) {
+                Api.error("loadResource of page is NOT OK", contentOutput, pagePath, this);
+                return RestOutput.of(contentOutput);
+            }
+
+            // Reference the versioned assets, which are then cached by the browsers until the next change
+            html = new String(contentOutput.output(), StandardCharsets.UTF_8);
+            for (Map.Entry<String, String> urlEntry : urlMap.entrySet()) {
+                html = html.replace("\"" + urlEntry.getKey() + "\"", "\"" + urlEntry.getValue() + "\"");
+            }
+
+            assetOutput = asset(pagePath, html.getBytes(StandardCharsets.UTF_8), false);
+            if (RestOutput.isNOK(assetOutput)) {
+                Api.error("Asset of page is NOT OK", assetOutput, pagePath, this);
+                return RestOutput.of(assetOutput);
+            }
+
+            _pageMap.put(pagePath, assetOutput.output());
+        }
+
+        Api.info("Assets loaded", this);
+
+        return RestOutput.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "AssetCache [_assetMap=" + _assetMap.keySet() + ", _pageMap=" + _pageMap.keySet() + "]";
+    }
+
+    private static RestOutput<Asset> asset(Path path, byte[] content, boolean versioned) {
+
+        RestOutput<String> hashOutput;
+        RestOutput<byte[]> gzipOutput;
+        String name;
+        String hash;
+        String url;
+        byte[] gzip;
+
+        hashOutput = Api.hash(content);
+        if (RestOutput.isNOK(hashOutput)) {
+            Api.error("hash of asset is NOT OK", hashOutput, path);
+            return RestOutput.of(hashOutput);
+        }
+        hash = hashOutput.output().substring(0, Setup.ASSET_HASH_LENGTH);
+
+        name = path.getFileName().toString();
+
+        url = name;
+        if (versioned) {
+            url = Setup.ASSET_FOLDER + "/" + versionedName(name, hash);
+        }
+
+        // Compressed once, and kept only if smaller
+        gzipOutput = Api.gzip(content);
+        if (RestOutput.isNOK(gzipOutput)) {
+            Api.error("gzip of asset is NOT OK", gzipOutput, path);
+            return RestOutput.of(gzipOutput);
+        }
+        gzip = (gzipOutput.output().length < content.length) ? gzipOutput.output() : null;
+
+        return RestOutput.ok(new Asset(url, contentType(name), content, gzip, hash));
+    }
+
+    private static String versionedName(String name, String hash) {
+
+        int extensionIndex;
+
+        // The hash goes before the extension, as dashboard.<hash>.js
+        extensionIndex = name.lastIndexOf('.');
+        if (extensionIndex < 0) {
+            return name + "." + hash;
+        }
+
+        return name.substring(0, extensionIndex) + "." + hash + name.substring(extensionIndex);
+    }
+
+    private static String contentType(String name) {
+
+        if (name.endsWith(".html")) {
+            return Setup.HTML_MEDIA_TYPE;
+        }
+        if (name.endsWith(".css")) {
+            return Setup.CSS_MEDIA_TYPE;
+        }
+        if (name.endsWith(".js")) {
+            return Setup.JAVASCRIPT_MEDIA_TYPE;
+        }
+        if (name.endsWith(".ico")) {
+            return Setup.ICON_MEDIA_TYPE;
+        }
+
+        return Setup.BINARY_MEDIA_TYPE;
+    }
+}
@@ -1,13 +1,86 @@
 package soccer.http;
 
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import soccer.Setup;
+import soccer.base.Api;
 
 public class HttpServer extends Server {
 
     public HttpServer() {
-        super(new QueuedThreadPool(Setup.HTTP_THREAD_COUNT, Setup.HTTP_THREAD_COUNT));
+        super(buildThreadPool());
+    }
+
+    public ServerConnector buildConnector() {
+
+        int acceptors;
+        int selectors;
+        HttpConfiguration httpConfiguration;
+        ServerConnector connector;
+        HTTP2CServerConnectionFactory http2cConnectionFactory;
+
+        acceptors = Api.integerProperty(Setup.HTTP_ACCEPTORS_PROPERTY, Setup.DEFAULT_HTTP_ACCEPTORS);
+        selectors = Api.integerProperty(Setup.HTTP_SELECTORS_PROPERTY, Setup.DEFAULT_HTTP_SELECTORS);
+
+        httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setOutputBufferSize(Api.integerProperty(Setup.HTTP_OUTPUT_BUFFER_SIZE_PROPERTY,
+                                                                  Setup.DEFAULT_HTTP_OUTPUT_BUFFER_SIZE));
+        httpConfiguration.setSendServerVersion(false);
+
+        // Negative counts of acceptors and selectors let Jetty size them from the number of cores
+        connector = new ServerConnector(this, acceptors, selectors, new HttpConnectionFactory(httpConfiguration));
+
+        connector.setIdleTimeout(Api.durationProperty(Setup.HTTP_IDLE_TIME_OUT_PROPERTY,
+                                                      Setup.DEFAULT_HTTP_IDLE_TIME_OUT)
+                                    .toMillis());
+        connector.setAcceptQueueSize(Api.integerProperty(Setup.HTTP_ACCEPT_QUEUE_SIZE_PROPERTY,
+                                                         Setup.DEFAULT_HTTP_ACCEPT_QUEUE_SIZE));
+
+        // Optional HTTP/2 cleartext on the same port, to multiplex the calls of a client over one connection
+        // Clients either upgrade from HTTP/1.1 or start with HTTP/2 directly
+        if (Boolean.getBoolean(Setup.HTTP_H2C_PROPERTY)) {
+            Api.info("Property " + Setup.HTTP_H2C_PROPERTY + " = true");
+            http2cConnectionFactory = new HTTP2CServerConnectionFactory(httpConfiguration);
+            http2cConnectionFactory.setMaxConcurrentStreams(Api.integerProperty(Setup.HTTP_MAX_STREAMS_PROPERTY,
+                                                                                Setup.DEFAULT_HTTP_MAX_STREAMS));
+            connector.addConnectionFactory(http2cConnectionFactory);
+        }
+
+        return connector;
+    }
+
+    private static QueuedThreadPool buildThreadPool() {
+
+        int minThreads;
+        int maxThreads;
+        QueuedThreadPool threadPool;
+
+        minThreads = Api.integerProperty(Setup.HTTP_MIN_THREADS_PROPERTY, Setup.DEFAULT_HTTP_MIN_THREADS);
+        maxThreads = Api.integerProperty(Setup.HTTP_MAX_THREADS_PROPERTY, Setup.DEFAULT_HTTP_MAX_THREADS);
+        if (maxThreads < minThreads) {
+            Api.error("Max threads of HTTP server is lower than min threads. Min threads used", maxThreads, minThreads);
+            maxThreads = minThreads;
+        }
+
+        threadPool = new QueuedThreadPool(maxThreads, minThreads);
+        threadPool.setName("http");
+
+        // Blocking work of the requests may run on virtual threads, when the JVM supports them
+        if (Boolean.getBoolean(Setup.HTTP_VIRTUAL_THREADS_PROPERTY)) {
+            if (VirtualThreads.areSupported()) {
+                Api.info("Property " + Setup.HTTP_VIRTUAL_THREADS_PROPERTY + " = true");
+                threadPool.setUseVirtualThreads(true);
+            } else {
+                Api.error("Virtual threads are not supported by this JVM. Platform threads used", Runtime.version());
+            }
+        }
+
+        return threadPool;
     }
 }
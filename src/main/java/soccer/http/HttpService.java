@@ -16,6 +16,7 @@ import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.DefaultHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.resource.ResourceCollection;
@@ -98,7 +99,8 @@ public class HttpService {
             // Setup Server with pool of Threads
             _httpServer = new HttpServer();
 
-            ServerConnector connector = new ServerConnector(_httpServer);
+            // Connector tuned from the properties
+            ServerConnector connector = _httpServer.buildConnector();
 
             if (webPathOptional().isPresent()) {
                 if (webPortOptional().isPresent()) {
@@ -210,7 +212,17 @@ public class HttpService {
             handlerList.addHandler(restContextHandler);
             handlerList.addHandler(defaultHandler);
 
-            _httpServer.setHandler(handlerList);
+            // --------------------------
+            // Gzip Handler
+            // --------------------------
+            // Compress the responses not compressed already, except the event streams which are never buffered
+            GzipHandler gzipHandler = new GzipHandler();
+            gzipHandler.setMinGzipSize(Api.integerProperty(Setup.HTTP_GZIP_MIN_SIZE_PROPERTY,
+                                                           Setup.DEFAULT_HTTP_GZIP_MIN_SIZE));
+            gzipHandler.addExcludedMimeTypes(Setup.EVENT_STREAM_MEDIA_TYPE);
+            gzipHandler.setHandler(handlerList);
+
+            _httpServer.setHandler(gzipHandler);
 
             // Extra options
             _httpServer.setDumpAfterStart(false);
@@ -309,4 +321,77 @@ public class HttpService {
 
         return Optional.ofNullable(httpRequest.getHeader(Setup.USER_TOKEN)).map(UserToken::new);
     }
+
+    public static Optional<String> searchIfNoneMatch(HttpServletRequest httpRequest) {
+
+        if (Api.isNull(httpRequest)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(httpRequest.getHeader(Setup.IF_NONE_MATCH_ATTRIBUTE));
+    }
+
+    public static boolean matchesEntityTag(String ifNoneMatch, String tag) {
+
+        String entityTag;
+
+        if ((tag == null) || (ifNoneMatch == null)) {
+            return false;
+        }
+
+        // A list of entity tags, possibly weak, or any. Each encoding of a same version matches
+        for (String value : ifNoneMatch.split(",")) {
+
+            entityTag = value.trim();
+            if (entityTag.equals("*")) {
+                return true;
+            }
+            if (entityTag.startsWith("W/")) {
+                entityTag = entityTag.substring(2);
+            }
+            if ((entityTag.length() >= 2) && entityTag.startsWith("\"") && entityTag.endsWith("\"")) {
+                entityTag = entityTag.substring(1, entityTag.length() - 1);
+            }
+            if (entityTag.endsWith(Setup.GZIP_TAG_SUFFIX)) {
+                entityTag = entityTag.substring(0, entityTag.length() - Setup.GZIP_TAG_SUFFIX.length());
+            }
+            if (entityTag.equals(tag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static boolean acceptsGzip(HttpServletRequest httpRequest) {
+
+        String acceptEncoding;
+        String[] parameterArray;
+        String coding;
+
+        if (Api.isNull(httpRequest)) {
+            return false;
+        }
+
+        acceptEncoding = httpRequest.getHeader(Setup.ACCEPT_ENCODING_ATTRIBUTE);
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        // A list of codings, each with an optional weight. A weight of 0 refuses the coding
+        for (String value : acceptEncoding.split(",")) {
+
+            parameterArray = value.split(";");
+            coding = parameterArray[0].trim();
+            if ((coding.equalsIgnoreCase(Setup.GZIP_ENCODING) == false) && (coding.equals("*") == false)) {
+                continue;
+            }
+            if ((parameterArray.length > 1) && parameterArray[1].trim().matches("q=0(\\.0*)?")) {
+                return false;
+            }
+            return true;
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,55 @@
+package soccer.http.servlet;
+
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestCode;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.handler.core.CoreHandler;
+import soccer.http.Asset;
+
+@SuppressWarnings("serial")
+public class AssetServlet extends HtmlServlet {
+
+    public AssetServlet(CoreHandler coreHandler) {
+        super("/" + Setup.ASSET_FOLDER + "/*", coreHandler);
+    }
+
+    @Override
+    protected void get(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
+
+        String versionedName;
+        Optional<Asset> assetOptional;
+        Asset asset;
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(httpRequest, httpResponse)) {
+            Api.error("get attributes for AssetServlet are null", httpRequest, httpResponse, this);
+            return;
+        }
+
+        // Versioned name of the asset, as dashboard.<hash>.js
+        versionedName = Optional.ofNullable(httpRequest.getPathInfo()).orElse("").replaceFirst("^/", "");
+
+        assetOptional = coreHandler().assetCache().asset(versionedName);
+        if (assetOptional.isEmpty()) {
+            Api.error("Asset is not found. NOT FOUND", versionedName, this);
+            commitErrorCode(RestCode.NOT_FOUND, httpResponse);
+            return;
+        }
+        asset = assetOptional.get();
+
+        // Cached by the browser until the page references another version
+        resultOutput = commit(asset, Setup.ASSET_CACHE_CONTROL, httpRequest, httpResponse);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("commit failed. INTERNAL FAILURE", resultOutput, asset, this);
+            commitErrorCode(RestCode.INTERNAL_FAILURE, httpResponse);
+            return;
+        }
+    }
+}
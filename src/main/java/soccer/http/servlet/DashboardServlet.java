@@ -1,18 +1,17 @@
 package soccer.http.servlet;
 
-import java.util.List;
+import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jetty.http.HttpStatus;
-
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestCode;
 import soccer.base.RestOutput;
 import soccer.base.Result;
 import soccer.handler.core.CoreHandler;
+import soccer.http.Asset;
 
 @SuppressWarnings("serial")
 public class DashboardServlet extends HtmlServlet {
@@ -24,8 +23,8 @@ public class DashboardServlet extends HtmlServlet {
     @Override
     protected void get(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
 
-        RestOutput<List<String>> htmlPageOutput;
-        List<String> htmlPage;
+        Optional<Asset> htmlPageOptional;
+        Asset htmlPage;
         RestOutput<Result> resultOutput;
 
         if (Api.isNull(httpRequest, httpResponse)) {
@@ -33,23 +32,21 @@ public class DashboardServlet extends HtmlServlet {
             return;
         }
 
-        // Build the HTML Page
-        htmlPageOutput = Api.loadHtmlPage(Setup.DASHBOARD_PAGE);
-        if (RestOutput.isNOK(htmlPageOutput)) {
-            Api.error("loadHtmlPage for get DashboardServlet is NOT OK", htmlPageOutput, this);
-            commitErrorCode(htmlPageOutput.restCode(), httpResponse);
+        // Find the HTML Page, loaded at startup
+        htmlPageOptional = coreHandler().assetCache().page(Setup.DASHBOARD_PAGE);
+        if (htmlPageOptional.isEmpty()) {
+            Api.error("Dashboard Page is not loaded. NOT FOUND", this);
+            commitErrorCode(RestCode.NOT_FOUND, httpResponse);
             return;
         }
-        htmlPage = htmlPageOutput.output();
+        htmlPage = htmlPageOptional.get();
 
         // Commit the response
-        resultOutput = commit(htmlPage, httpResponse);
+        resultOutput = commit(htmlPage, Setup.PAGE_CACHE_CONTROL, httpRequest, httpResponse);
         if (RestOutput.isNOK(resultOutput)) {
             Api.error("commit failed. INTERNAL FAILURE", resultOutput, htmlPage, this);
             commitErrorCode(RestCode.INTERNAL_FAILURE, httpResponse);
             return;
         }
-
-        httpResponse.setStatus(HttpStatus.OK_200);
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,6 @@
 package soccer.http.servlet;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -11,11 +9,14 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.HttpStatus;
 
+import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestCode;
 import soccer.base.RestOutput;
 import soccer.base.Result;
 import soccer.handler.core.CoreHandler;
+import soccer.http.Asset;
+import soccer.http.HttpService;
 
 @SuppressWarnings("serial")
 public abstract class HtmlServlet extends HttpServlet {
@@ -40,28 +41,48 @@ public abstract class HtmlServlet extends HttpServlet {
         return _coreHandler;
     }
 
-    protected RestOutput<Result> commit(List<String> htmlPage, HttpServletResponse httpResponse) {
+    protected RestOutput<Result> commit(Asset asset,
+                                        String cacheControl,
+                                        HttpServletRequest httpRequest,
+                                        HttpServletResponse httpResponse) {
 
-        PrintWriter printWriter;
+        boolean gzip;
+        String tag;
+        byte[] content;
 
-        if (Api.isNull(htmlPage, httpResponse)) {
+        if (Api.isNull(asset, cacheControl, httpRequest, httpResponse)) {
             return RestOutput.badRequest();
         }
 
+        // Compressed once when the asset was loaded
+        gzip = (asset.gzip() != null) && HttpService.acceptsGzip(httpRequest);
+        tag = (gzip) ? asset.tag() + Setup.GZIP_TAG_SUFFIX : asset.tag();
+
         try {
-            printWriter = httpResponse.getWriter();
-            for (String line : htmlPage) {
-                printWriter.println(line);
+            httpResponse.setHeader(Setup.CACHE_CONTROL_ATTRIBUTE, cacheControl);
+            httpResponse.setHeader(Setup.VARY_ATTRIBUTE, Setup.ACCEPT_ENCODING_ATTRIBUTE);
+            httpResponse.setHeader(Setup.ETAG_ATTRIBUTE, "\"" + tag + "\"");
+
+            // Nothing to send if the client already has this version
+            if (HttpService.matchesEntityTag(httpRequest.getHeader(Setup.IF_NONE_MATCH_ATTRIBUTE), asset.tag())) {
+                httpResponse.setStatus(HttpStatus.NOT_MODIFIED_304);
+                return RestOutput.OK;
             }
 
-            httpResponse.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
-            httpResponse.setHeader("Pragma", "no-cache");
-            httpResponse.setDateHeader("Expires", 0);
+            content = (gzip) ? asset.gzip() : asset.content();
+
+            httpResponse.setStatus(HttpStatus.OK_200);
+            httpResponse.setContentType(asset.contentType());
+            if (gzip) {
+                httpResponse.setHeader(Setup.CONTENT_ENCODING_ATTRIBUTE, Setup.GZIP_ENCODING);
+            }
+            httpResponse.setContentLength(content.length);
+            httpResponse.getOutputStream().write(content);
 
             return RestOutput.OK;
 
         } catch (Throwable t) {
-            Api.error(t, "Failure to commit HTML Page. INTERNAL FAILURE", httpResponse, this);
+            Api.error(t, "Failure to commit asset. INTERNAL FAILURE", asset, httpResponse, this);
             return RestOutput.internalFailure();
         }
     }
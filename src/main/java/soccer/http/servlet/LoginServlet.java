@@ -1,18 +1,17 @@
 package soccer.http.servlet;
 
-import java.util.List;
+import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jetty.http.HttpStatus;
-
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestCode;
 import soccer.base.RestOutput;
 import soccer.base.Result;
 import soccer.handler.core.CoreHandler;
+import soccer.http.Asset;
 
 @SuppressWarnings("serial")
 public class LoginServlet extends HtmlServlet {
@@ -25,31 +24,29 @@ public class LoginServlet extends HtmlServlet {
     protected void get(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
 
         RestOutput<Result> resultOutput;
-        RestOutput<List<String>> loginPageOutput;
-        List<String> loginPage;
+        Optional<Asset> loginPageOptional;
+        Asset loginPage;
 
         if (Api.isNull(httpRequest, httpResponse)) {
             Api.error("get attributes for LoginServlet are null", httpRequest, httpResponse, this);
             return;
         }
 
-        // Load the Login Page
-        loginPageOutput = Api.loadHtmlPage(Setup.LOGIN_PAGE);
-        if (RestOutput.isNOK(loginPageOutput)) {
-            Api.error("loadHtmlPage for get LoginServlet is NOT OK", loginPageOutput, this);
-            commitErrorCode(loginPageOutput.restCode(), httpResponse);
+        // Find the Login Page, loaded at startup
+        loginPageOptional = coreHandler().assetCache().page(Setup.LOGIN_PAGE);
+        if (loginPageOptional.isEmpty()) {
+            Api.error("Login Page is not loaded. NOT FOUND", this);
+            commitErrorCode(RestCode.NOT_FOUND, httpResponse);
             return;
         }
-        loginPage = loginPageOutput.output();
+        loginPage = loginPageOptional.get();
 
         // Return the Login Page
-        resultOutput = commit(loginPage, httpResponse);
+        resultOutput = commit(loginPage, Setup.PAGE_CACHE_CONTROL, httpRequest, httpResponse);
         if (RestOutput.isNOK(resultOutput)) {
             Api.error("commit failed. INTERNAL FAILURE", resultOutput, loginPage, this);
             commitErrorCode(RestCode.INTERNAL_FAILURE, httpResponse);
             return;
         }
-
-        httpResponse.setStatus(HttpStatus.OK_200);
     }
 }
@@ -4,12 +4,16 @@ public class Market {
 
     private Team[] _teamArray;
 
+    // Cursor of the next page. Null for the last page
+    private String _cursor;
+
     public Market() {
     }
 
-    public Market(Team[] teamArray) {
+    public Market(Team[] teamArray, String cursor) {
 
         setTeamArray(teamArray);
+        setCursor(cursor);
     }
 
     public Team[] getTeamArray() {
@@ -20,9 +24,17 @@ public class Market {
         _teamArray = teamArray;
     }
 
+    public String getCursor() {
+        return _cursor;
+    }
+
+    public void setCursor(String cursor) {
+        _cursor = cursor;
+    }
+
     @Override
     public String toString() {
-        return "Market [_teamArray=" + _teamArray + "]";
+        return "Market [_teamArray=" + _teamArray + ", _cursor=" + _cursor + "]";
     }
 
 }
@@ -0,0 +1,122 @@
+package soccer.model;
+
+public class MarketQuery {
+
+    private String     _cursor;
+    private Integer    _pageSize;
+
+    private PlayerType _playerType;
+    private String     _country;
+    private Long       _minPrice;
+    private Long       _maxPrice;
+    private Integer    _minAge;
+    private Integer    _maxAge;
+
+    public MarketQuery() {
+    }
+
+    public MarketQuery(String cursor,
+                       Integer pageSize,
+                       PlayerType playerType,
+                       String country,
+                       Long minPrice,
+                       Long maxPrice,
+                       Integer minAge,
+                       Integer maxAge) {
+
+        setCursor(cursor);
+        setPageSize(pageSize);
+
+        setPlayerType(playerType);
+        setCountry(country);
+        setMinPrice(minPrice);
+        setMaxPrice(maxPrice);
+        setMinAge(minAge);
+        setMaxAge(maxAge);
+    }
+
+    public String getCursor() {
+        return _cursor;
+    }
+
+    public void setCursor(String cursor) {
+        _cursor = cursor;
+    }
+
+    public Integer getPageSize() {
+        return _pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        _pageSize = pageSize;
+    }
+
+    public PlayerType getPlayerType() {
+        return _playerType;
+    }
+
+    public void setPlayerType(PlayerType playerType) {
+        _playerType = playerType;
+    }
+
+    public String getCountry() {
+        return _country;
+    }
+
+    public void setCountry(String country) {
+        _country = country;
+    }
+
+    public Long getMinPrice() {
+        return _minPrice;
+    }
+
+    public void setMinPrice(Long minPrice) {
+        _minPrice = minPrice;
+    }
+
+    public Long getMaxPrice() {
+        return _maxPrice;
+    }
+
+    public void setMaxPrice(Long maxPrice) {
+        _maxPrice = maxPrice;
+    }
+
+    public Integer getMinAge() {
+        return _minAge;
+    }
+
+    public void setMinAge(Integer minAge) {
+        _minAge = minAge;
+    }
+
+    public Integer getMaxAge() {
+        return _maxAge;
+    }
+
+    public void setMaxAge(Integer maxAge) {
+        _maxAge = maxAge;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketQuery [_cursor=" + _cursor
+               + ", _pageSize="
+               + _pageSize
+               + ", _playerType="
+               + _playerType
+               + ", _country="
+               + _country
+               + ", _minPrice="
+               + _minPrice
+               + ", _maxPrice="
+               + _maxPrice
+               + ", _minAge="
+               + _minAge
+               + ", _maxAge="
+               + _maxAge
+               + "]";
+    }
+
+}
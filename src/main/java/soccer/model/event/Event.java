@@ -0,0 +1,127 @@
+package soccer.model.event;
+
+import soccer.model.Player;
+import soccer.model.PlayerId;
+import soccer.model.TeamId;
+
+public class Event {
+
+    private EventType _eventType;
+
+    private TeamId    _teamId;
+    private PlayerId  _playerId;
+
+    // Player as listed in the market
+    private Player    _player;
+
+    // Team selling a transferred player
+    private TeamId    _fromTeamId;
+
+    private Long      _teamBalance;
+
+    public Event() {
+    }
+
+    public Event(EventType eventType,
+                 TeamId teamId,
+                 PlayerId playerId,
+                 Player player,
+                 TeamId fromTeamId,
+                 Long teamBalance) {
+
+        setEventType(eventType);
+
+        setTeamId(teamId);
+        setPlayerId(playerId);
+
+        setPlayer(player);
+
+        setFromTeamId(fromTeamId);
+
+        setTeamBalance(teamBalance);
+    }
+
+    public EventType getEventType() {
+        return _eventType;
+    }
+
+    public void setEventType(EventType eventType) {
+        _eventType = eventType;
+    }
+
+    public TeamId getTeamId() {
+        return _teamId;
+    }
+
+    public void setTeamId(TeamId teamId) {
+        _teamId = teamId;
+    }
+
+    public PlayerId getPlayerId() {
+        return _playerId;
+    }
+
+    public void setPlayerId(PlayerId playerId) {
+        _playerId = playerId;
+    }
+
+    public Player getPlayer() {
+        return _player;
+    }
+
+    public void setPlayer(Player player) {
+        _player = player;
+    }
+
+    public TeamId getFromTeamId() {
+        return _fromTeamId;
+    }
+
+    public void setFromTeamId(TeamId fromTeamId) {
+        _fromTeamId = fromTeamId;
+    }
+
+    public Long getTeamBalance() {
+        return _teamBalance;
+    }
+
+    public void setTeamBalance(Long teamBalance) {
+        _teamBalance = teamBalance;
+    }
+
+    @Override
+    public String toString() {
+        return "Event [_eventType=" + _eventType
+               + ", _teamId="
+               + _teamId
+               + ", _playerId="
+               + _playerId
+               + ", _player="
+               + _player
+               + ", _fromTeamId="
+               + _fromTeamId
+               + ", _teamBalance="
+               + _teamBalance
+               + "]";
+    }
+
+    public static Event listed(Player player) {
+
+        return new Event(EventType.PLAYER_LISTED, player.getTeamId(), player.getPlayerId(), player, null, null);
+    }
+
+    public static Event delisted(TeamId teamId, PlayerId playerId) {
+
+        return new Event(EventType.PLAYER_DELISTED, teamId, playerId, null, null, null);
+    }
+
+    public static Event transferred(TeamId fromTeamId, TeamId toTeamId, PlayerId playerId) {
+
+        return new Event(EventType.PLAYER_TRANSFERRED, toTeamId, playerId, null, fromTeamId, null);
+    }
+
+    public static Event balanceChanged(TeamId teamId, Long teamBalance) {
+
+        return new Event(EventType.BALANCE_CHANGED, teamId, null, null, null, teamBalance);
+    }
+}
@@ -0,0 +1,9 @@
+package soccer.model.event;
+
+public enum EventType {
+
+                       PLAYER_LISTED,
+                       PLAYER_DELISTED,
+                       PLAYER_TRANSFERRED,
+                       BALANCE_CHANGED
+}
@@ -0,0 +1,179 @@
+package soccer.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.UserToken;
+import soccer.model.event.Event;
+import soccer.model.event.EventType;
+
+public class EventHub {
+
+    // A single subscription per session
+    private final ConcurrentHashMap<UserToken, EventSubscriber> _subscriberMap;
+
+    private final AtomicLong                                    _eventId;
+    private final AtomicLong                                    _dropCount;
+
+    // Shared by all subscribers to send their events
+    private final ExecutorService                               _executorService;
+
+    public EventHub() {
+
+        _subscriberMap = new ConcurrentHashMap<UserToken, EventSubscriber>();
+
+        _eventId = new AtomicLong(0);
+        _dropCount = new AtomicLong(0);
+
+        _executorService = Api.executorService("event");
+    }
+
+    public long dropCount() {
+
+        return _dropCount.get();
+    }
+
+    public boolean isSubscribed(UserToken userToken) {
+
+        return _subscriberMap.containsKey(userToken);
+    }
+
+    private void drop(EventSubscriber eventSubscriber) {
+
+        if (_subscriberMap.remove(eventSubscriber.userToken(), eventSubscriber)) {
+            _dropCount.incrementAndGet();
+            Api.info("Subscriber dropped", eventSubscriber, this);
+        }
+
+        eventSubscriber.close();
+    }
+
+    public RestOutput<Result> subscribe(UserToken userToken,
+                                        List<EventType> eventTypeList,
+                                        SseEventSink sseEventSink,
+                                        Sse sse) {
+
+        Set<EventType> eventTypeSet;
+        EventSubscriber previousSubscriber;
+
+        if (Api.isNull(userToken, eventTypeList, sseEventSink, sse)) {
+            return RestOutput.badRequest();
+        }
+
+        // All events unless some are selected
+        if (eventTypeList.isEmpty()) {
+            eventTypeSet = EnumSet.allOf(EventType.class);
+        } else {
+            eventTypeSet = EnumSet.copyOf(eventTypeList);
+        }
+
+        // A new subscription of this session replaces the previous one
+        previousSubscriber = _subscriberMap.put(userToken,
+                                                new EventSubscriber(userToken,
+                                                                    eventTypeSet,
+                                                                    sseEventSink,
+                                                                    sse,
+                                                                    Setup.EVENT_BUFFER_SIZE,
+                                                                    _executorService));
+        if (previousSubscriber != null) {
+            previousSubscriber.close();
+        }
+
+        return RestOutput.OK;
+    }
+
+    public void publish(Event event) {
+
+        RestOutput<Payload> payloadOutput;
+        String json;
+        long eventId;
+
+        if (Api.isNull(event) || Api.isNull(event.getEventType()) || _subscriberMap.isEmpty()) {
+            return;
+        }
+
+        // Serialized once for all subscribers
+        payloadOutput = Payload.of(event);
+        if (RestOutput.isNOK(payloadOutput)) {
+            Api.error("Payload of event is NOT OK", payloadOutput, event, this);
+            return;
+        }
+        json = new String(payloadOutput.output().json(), StandardCharsets.UTF_8);
+
+        eventId = _eventId.incrementAndGet();
+
+        for (EventSubscriber eventSubscriber : _subscriberMap.values()) {
+
+            if (eventSubscriber.accepts(event.getEventType()) == false) {
+                continue;
+            }
+
+            // Only queued, so a slow client never blocks the publisher. It is dropped once its queue is full
+            if (eventSubscriber.offer(eventId, event.getEventType(), json) == false) {
+                drop(eventSubscriber);
+            }
+        }
+    }
+
+    public void heartbeat(Predicate<UserToken> sessionPredicate) {
+
+        if (Api.isNull(sessionPredicate)) {
+            return;
+        }
+
+        for (EventSubscriber eventSubscriber : _subscriberMap.values()) {
+
+            // A stream outliving its session is closed along with the streams closed by their client
+            if ((sessionPredicate.test(eventSubscriber.userToken()) == false)
+                || (eventSubscriber.heartbeat() == false)) {
+                drop(eventSubscriber);
+            }
+        }
+    }
+
+    public void unsubscribe(UserToken userToken) {
+
+        EventSubscriber eventSubscriber;
+
+        if (Api.isNull(userToken)) {
+            return;
+        }
+
+        // Close the subscription of a session which is gone
+        eventSubscriber = _subscriberMap.remove(userToken);
+        if (eventSubscriber != null) {
+            eventSubscriber.close();
+        }
+    }
+
+    public void stop() {
+
+        _subscriberMap.values().forEach(EventSubscriber::close);
+        _subscriberMap.clear();
+
+        _executorService.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "EventHub [_subscriberMap=" + _subscriberMap.size()
+               + ", _eventId="
+               + _eventId
+               + ", _dropCount="
+               + _dropCount
+               + "]";
+    }
+}
@@ -0,0 +1,162 @@
+package soccer.rest;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import soccer.base.Api;
+import soccer.model.UserToken;
+import soccer.model.event.EventType;
+
+class EventSubscriber {
+
+    private final UserToken                            _userToken;
+    private final Set<EventType>                       _eventTypeSet;
+
+    private final SseEventSink                         _sseEventSink;
+    private final Sse                                  _sse;
+
+    // Events not sent yet. A client which lets it fill up is too slow and is dropped
+    private final ArrayBlockingQueue<OutboundSseEvent> _eventQueue;
+    private final AtomicBoolean                        _sending;
+
+    // Sends the events, so that a slow client never blocks the thread which publishes them
+    private final ExecutorService                      _executorService;
+
+    EventSubscriber(UserToken userToken,
+                    Set<EventType> eventTypeSet,
+                    SseEventSink sseEventSink,
+                    Sse sse,
+                    int capacity,
+                    ExecutorService executorService) {
+
+        _userToken = userToken;
+        _eventTypeSet = eventTypeSet;
+
+        _sseEventSink = sseEventSink;
+        _sse = sse;
+
+        _eventQueue = new ArrayBlockingQueue<OutboundSseEvent>(capacity);
+        _sending = new AtomicBoolean(false);
+
+        _executorService = executorService;
+    }
+
+    UserToken userToken() {
+        return _userToken;
+    }
+
+    boolean accepts(EventType eventType) {
+
+        return _eventTypeSet.contains(eventType);
+    }
+
+    boolean isClosed() {
+
+        return _sseEventSink.isClosed();
+    }
+
+    boolean offer(long eventId, EventType eventType, String json) {
+
+        if (isClosed()) {
+            return false;
+        }
+
+        if (_eventQueue.offer(_sse.newEventBuilder()
+                                  .id(Long.toString(eventId))
+                                  .name(eventType.name())
+                                  .data(json)
+                                  .build()) == false) {
+            return false;
+        }
+
+        schedule();
+        return true;
+    }
+
+    boolean heartbeat() {
+
+        if (isClosed()) {
+            return false;
+        }
+
+        // A comment is ignored by the client but detects a closed connection
+        if (_eventQueue.offer(_sse.newEventBuilder().comment("heartbeat").build()) == false) {
+            return false;
+        }
+
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+
+        // A single drain in flight, so that events are sent in order
+        if (_sending.compareAndSet(false, true) == false) {
+            return;
+        }
+
+        try {
+            _executorService.execute(this::sendNext);
+        } catch (RejectedExecutionException e) {
+            // Hub stopped, so this subscriber is closed
+            _sending.set(false);
+        }
+    }
+
+    private void sendNext() {
+
+        OutboundSseEvent outboundSseEvent;
+
+        outboundSseEvent = _eventQueue.poll();
+        if (outboundSseEvent == null) {
+            _sending.set(false);
+
+            // Send any event offered meanwhile
+            if (_eventQueue.isEmpty() == false) {
+                schedule();
+            }
+            return;
+        }
+
+        // Next event sent by the executor as well, whichever thread completes this one
+        _sseEventSink.send(outboundSseEvent).whenCompleteAsync((result, throwable) -> {
+
+            if (throwable != null) {
+                _sending.set(false);
+                Api.error(throwable, "Send of event failed. Subscriber closed", this);
+                close();
+                return;
+            }
+
+            sendNext();
+        }, _executorService);
+    }
+
+    void close() {
+
+        _eventQueue.clear();
+
+        try {
+            _sseEventSink.close();
+        } catch (Throwable t) {
+            Api.error(t, "Close of event sink failed", this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EventSubscriber [_userToken=" + _userToken
+               + ", _eventTypeSet="
+               + _eventTypeSet
+               + ", _eventQueue="
+               + _eventQueue.size()
+               + "]";
+    }
+}
@@ -0,0 +1,129 @@
+package soccer.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.http.HttpService;
+
+public class Payload {
+
+    private static final ObjectMapper JsonMapper = objectMapper();
+
+    // Serialized JSON, sent as is. Never modified
+    private final byte[]              _json;
+
+    // Entity tag of this version of the payload, if any
+    private final String              _tag;
+
+    // Compressed JSON, computed once on the first request accepting it
+    private volatile byte[]           _gzip;
+
+    private Payload(byte[] json, String tag, byte[] gzip) {
+
+        _json = json;
+        _tag = tag;
+        _gzip = gzip;
+    }
+
+    public byte[] json() {
+
+        return _json;
+    }
+
+    public int length() {
+
+        return _json.length;
+    }
+
+    public String tag() {
+
+        return _tag;
+    }
+
+    public String gzipTag() {
+
+        if (_tag == null) {
+            return null;
+        }
+
+        // Each encoding of the payload has its own entity tag
+        return _tag + Setup.GZIP_TAG_SUFFIX;
+    }
+
+    public Payload tagged(String tag) {
+
+        return new Payload(_json, tag, _gzip);
+    }
+
+    public byte[] gzip() {
+
+        byte[] gzip;
+        RestOutput<byte[]> gzipOutput;
+
+        gzip = _gzip;
+        if (gzip != null) {
+            return gzip;
+        }
+
+        // Concurrent requests may compress the same payload, with the same result
+        gzipOutput = Api.gzip(_json);
+        if (RestOutput.isNOK(gzipOutput)) {
+            Api.error("gzip of payload is NOT OK", gzipOutput, this);
+            return null;
+        }
+
+        gzip = gzipOutput.output();
+        _gzip = gzip;
+
+        return gzip;
+    }
+
+    public boolean matches(String ifNoneMatch) {
+
+        return HttpService.matchesEntityTag(ifNoneMatch, _tag);
+    }
+
+    @Override
+    public String toString() {
+        byte[] gzip = _gzip;
+
+        return "Payload [_json=" + _json.length
+               + ", _tag="
+               + _tag
+               + ", _gzip="
+               + ((gzip == null) ? null : gzip.length)
+               + "]";
+    }
+
+    private static ObjectMapper objectMapper() {
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.getTypeFactory().clearCache();
+
+        objectMapper.setSerializationInclusion(Include.NON_NULL);
+
+        return objectMapper;
+    }
+
+    public static RestOutput<Payload> of(Object output) {
+
+        if (Api.isNull(output)) {
+            return RestOutput.badRequest();
+        }
+
+        if (Payload.class.isInstance(output)) {
+            return RestOutput.ok(Payload.class.cast(output));
+        }
+
+        try {
+            return RestOutput.ok(new Payload(JsonMapper.writeValueAsBytes(output), null, null));
+
+        } catch (Throwable t) {
+            Api.error(t, "Payload failed. INTERNAL FAILURE", output);
+            return RestOutput.internalFailure();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package soccer.rest;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import soccer.base.Api;
+import soccer.base.RestOutput;
+
+public class PayloadCache<T_Key> {
+
+    private final String                                        _name;
+    private final int                                           _capacity;
+
+    // Versions restart with the server, so entity tags also depend on its start
+    private final String                                        _epoch;
+
+    private final ConcurrentHashMap<T_Key, PayloadCache.Cached> _cachedMap;
+
+    private final AtomicLong                                    _hitCount;
+    private final AtomicLong                                    _missCount;
+
+    public PayloadCache(String name, int capacity) {
+
+        _name = name;
+        _capacity = capacity;
+
+        _epoch = Long.toHexString(System.currentTimeMillis());
+
+        _cachedMap = new ConcurrentHashMap<T_Key, PayloadCache.Cached>();
+
+        _hitCount = new AtomicLong(0);
+        _missCount = new AtomicLong(0);
+    }
+
+    public long hitCount() {
+
+        return _hitCount.get();
+    }
+
+    public long missCount() {
+
+        return _missCount.get();
+    }
+
+    public RestOutput<Payload> payload(T_Key key, long version, Supplier<RestOutput<?>> outputSupplier) {
+
+        Cached cached;
+        RestOutput<?> output;
+        RestOutput<Payload> payloadOutput;
+        Iterator<T_Key> keyIterator;
+        Payload payload;
+
+        if (Api.isNull(key, outputSupplier)) {
+            return RestOutput.badRequest();
+        }
+
+        // The version must be read before the output, so that a payload is never older than its version
+        cached = _cachedMap.get(key);
+        if ((cached != null) && (cached.version() == version)) {
+            _hitCount.incrementAndGet();
+            return RestOutput.ok(cached.payload());
+        }
+
+        _missCount.incrementAndGet();
+
+        output = outputSupplier.get();
+        if (RestOutput.isNOK(output)) {
+            return RestOutput.of(output);
+        }
+
+        payloadOutput = Payload.of(output.output());
+        if (RestOutput.isNOK(payloadOutput)) {
+            Api.error("Payload to cache is NOT OK", payloadOutput, key, version, this);
+            return RestOutput.of(payloadOutput);
+        }
+
+        // Strong entity tag of this key at this version
+        payload = payloadOutput.output()
+                               .tagged(_name + "-"
+                                       + _epoch
+                                       + "-"
+                                       + Integer.toHexString(key.hashCode())
+                                       + "-"
+                                       + Long.toHexString(version));
+
+        // Make room by evicting any other key
+        if (_cachedMap.size() >= _capacity) {
+            keyIterator = _cachedMap.keySet().iterator();
+            if (keyIterator.hasNext()) {
+                _cachedMap.remove(keyIterator.next());
+            }
+        }
+
+        _cachedMap.put(key, new Cached(version, payload));
+
+        return RestOutput.ok(payload);
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadCache [_name=" + _name
+               + ", _capacity="
+               + _capacity
+               + ", _cachedMap="
+               + _cachedMap.size()
+               + ", _hitCount="
+               + _hitCount
+               + ", _missCount="
+               + _missCount
+               + "]";
+    }
+
+    private static class Cached {
+
+        private final long    _version;
+        private final Payload _payload;
+
+        private Cached(long version, Payload payload) {
+
+            _version = version;
+            _payload = payload;
+        }
+
+        private long version() {
+            return _version;
+        }
+
+        private Payload payload() {
+            return _payload;
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package soccer.rest;
 
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -16,14 +14,12 @@ import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.io.EofException;
 import org.glassfish.jersey.server.internal.process.MappableException;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestCode;
@@ -32,20 +28,35 @@ import soccer.base.Result;
 
 public class RestCall<T> implements ConnectionCallback, TimeoutHandler, CompletionCallback {
 
-    private static final ExecutorService                           Executor     = Api.executorService("rest");
+    private static final RestExecutor                              Executor     = RestExecutor.with("rest");
 
-    private static final ObjectMapper                              JsonMapper   = objectMapper();
     private static final CacheControl                              CacheControl = buildNoCache();
 
+    // Payloads smaller than this are not worth compressing
+    private static final int                                       GzipMinSize  = buildGzipMinSize();
+
     private final AsyncResponse                                    _asyncResponse;
     private final Function<AtomicReference<Cookie>, RestOutput<T>> _method;
 
-    private RestCall(AsyncResponse asyncResponse, Function<AtomicReference<Cookie>, RestOutput<T>> method) {
+    // Entity tags already held by the client
+    private final Optional<String>                                 _ifNoneMatchOptional;
+
+    // Compressed payloads accepted by the client
+    private final boolean                                          _gzipAccepted;
+
+    private RestCall(AsyncResponse asyncResponse,
+                     Function<AtomicReference<Cookie>, RestOutput<T>> method,
+                     Optional<String> ifNoneMatchOptional,
+                     boolean gzipAccepted) {
 
         _asyncResponse = asyncResponse;
 
         _method = method;
 
+        _ifNoneMatchOptional = ifNoneMatchOptional;
+
+        _gzipAccepted = gzipAccepted;
+
         _asyncResponse.setTimeout(Setup.REST_CALL_TIME_OUT.toMillis(), TimeUnit.MILLISECONDS);
         _asyncResponse.setTimeoutHandler(this);
         _asyncResponse.register(this);
@@ -61,6 +72,16 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
         return _method;
     }
 
+    private Optional<String> ifNoneMatchOptional() {
+
+        return _ifNoneMatchOptional;
+    }
+
+    private boolean gzipAccepted() {
+
+        return _gzipAccepted;
+    }
+
     private RestOutput<Result> resume(RestCode restCode, Response response) {
 
         if (Api.isNull(restCode, response)) {
@@ -145,6 +166,9 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
         AtomicReference<Cookie> cookieReference;
         RestOutput<T> restOutput;
         T output;
+        RestOutput<Payload> payloadOutput;
+        Payload payload;
+        boolean gzip;
 
         try {
 
@@ -190,8 +214,27 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
                 return;
             }
 
+            // Serialize the output, unless it is already serialized
+            payloadOutput = Payload.of(output);
+            if (RestOutput.isNOK(payloadOutput)) {
+                Api.error("Payload of RestCall is NOT OK", payloadOutput, this);
+                resume(RestCode.INTERNAL_FAILURE, internalFailureResponse());
+                return;
+            }
+
+            payload = payloadOutput.output();
+
+            // Compress large payloads for the clients accepting it. Cached payloads are compressed once
+            gzip = gzipAccepted() && (payload.length() >= GzipMinSize) && (payload.gzip() != null);
+
+            // Resume without the JSON payload if the client already has this version
+            if (payload.matches(ifNoneMatchOptional().orElse(null))) {
+                resume(RestCode.OK, notModifiedResponse(payload, gzip));
+                return;
+            }
+
             // Resume with a JSON payload
-            resume(RestCode.OK, okResponse(Optional.ofNullable(cookieReference.get()), output));
+            resume(RestCode.OK, okResponse(Optional.ofNullable(cookieReference.get()), payload, gzip));
 
         } catch (Throwable t) {
             Api.error(t, "RestCall execute failed. INTERNAL FAILURE", this);
@@ -201,7 +244,13 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
 
     protected void run() {
 
-        CompletableFuture.runAsync(this::execute, Executor);
+        RestOutput<Result> resultOutput;
+
+        resultOutput = Executor.execute(this::execute);
+        if (RestOutput.isNOK(resultOutput)) {
+            // Shed the load rather than queueing requests without bound
+            resume(resultOutput.restCode(), notAvailableResponse());
+        }
     }
 
     @Override
@@ -217,14 +266,9 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
         return cacheControl;
     }
 
-    private static ObjectMapper objectMapper() {
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.getTypeFactory().clearCache();
+    private static int buildGzipMinSize() {
 
-        objectMapper.setSerializationInclusion(Include.NON_NULL);
-
-        return objectMapper;
+        return Api.integerProperty(Setup.HTTP_GZIP_MIN_SIZE_PROPERTY, Setup.DEFAULT_HTTP_GZIP_MIN_SIZE);
     }
 
     private static Response buildRestErrorResponse(int statusCode) {
@@ -257,32 +301,49 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
         return Response.status(HttpStatus.OK_200).cacheControl(CacheControl).cookie(newCookie).build();
     }
 
-    private static <T> Response okResponse(Optional<Cookie> cookieOptional, T output) throws Exception {
+    private static Response okResponse(Optional<Cookie> cookieOptional, Payload payload, boolean gzip) {
 
         Cookie cookie;
         NewCookie newCookie;
+        ResponseBuilder responseBuilder;
+
+        byte[] jsonPayload = (gzip) ? payload.gzip() : payload.json();
+        String tag = (gzip) ? payload.gzipTag() : payload.tag();
 
-        // Serialize the output of this JSON payload
-        byte[] jsonPayload = JsonMapper.writeValueAsBytes(output);
+        responseBuilder = Response.status(HttpStatus.OK_200)
+                                  .cacheControl(CacheControl)
+                                  .entity(jsonPayload)
+                                  .header(Setup.CONTENT_LENGTH_ATTRIBUTE,
+                                          Integer.valueOf(jsonPayload.length).toString())
+                                  .header(Setup.VARY_ATTRIBUTE, Setup.ACCEPT_ENCODING_ATTRIBUTE);
+
+        if (gzip) {
+            // Already compressed, so not compressed again by the server
+            responseBuilder.header(Setup.CONTENT_ENCODING_ATTRIBUTE, Setup.GZIP_ENCODING);
+        }
+
+        if (tag != null) {
+            // Let the client revalidate this version later on
+            responseBuilder.tag(tag);
+        }
 
         if (cookieOptional.isEmpty()) {
             // No cookie to set in response
-
-            return Response.status(HttpStatus.OK_200)
-                           .cacheControl(CacheControl)
-                           .entity(jsonPayload)
-                           .header(Setup.CONTENT_LENGTH_ATTRIBUTE, Integer.valueOf(jsonPayload.length).toString())
-                           .build();
+            return responseBuilder.build();
         }
 
         cookie = cookieOptional.get();
         newCookie = new NewCookie(cookie);
 
-        return Response.status(HttpStatus.OK_200)
+        return responseBuilder.cookie(newCookie).build();
+    }
+
+    private static Response notModifiedResponse(Payload payload, boolean gzip) {
+
+        return Response.status(HttpStatus.NOT_MODIFIED_304)
                        .cacheControl(CacheControl)
-                       .entity(jsonPayload)
-                       .header(Setup.CONTENT_LENGTH_ATTRIBUTE, Integer.valueOf(jsonPayload.length).toString())
-                       .cookie(newCookie)
+                       .header(Setup.VARY_ATTRIBUTE, Setup.ACCEPT_ENCODING_ATTRIBUTE)
+                       .tag((gzip) ? payload.gzipTag() : payload.tag())
                        .build();
     }
 
@@ -316,15 +377,28 @@ public class RestCall<T> implements ConnectionCallback, TimeoutHandler, Completi
         return buildRestErrorResponse(HttpStatus.SERVICE_UNAVAILABLE_503);
     }
 
+    public static RestExecutor executor() {
+
+        return Executor;
+    }
+
     public static <T> void run(AsyncResponse asyncResponse, Function<AtomicReference<Cookie>, RestOutput<T>> method) {
 
+        run(asyncResponse, Optional.empty(), false, method);
+    }
+
+    public static <T> void run(AsyncResponse asyncResponse,
+                               Optional<String> ifNoneMatchOptional,
+                               boolean gzipAccepted,
+                               Function<AtomicReference<Cookie>, RestOutput<T>> method) {
+
         RestCall<T> restCall;
 
-        if (Api.isNull(asyncResponse, method)) {
+        if (Api.isNull(asyncResponse, ifNoneMatchOptional, method)) {
             return;
         }
 
-        restCall = new RestCall<T>(asyncResponse, method);
+        restCall = new RestCall<T>(asyncResponse, method, ifNoneMatchOptional, gzipAccepted);
 
         restCall.run();
 
@@ -0,0 +1,195 @@
+package soccer.rest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.BaseThreadFactory;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+
+public class RestExecutor {
+
+    private final RestExecutorMode _mode;
+    private final ExecutorService  _executorService;
+
+    // Requests accepted but not started yet
+    private final AtomicInteger    _queueDepth;
+    private final AtomicInteger    _maxQueueDepth;
+    private final AtomicInteger    _activeCount;
+
+    private final AtomicLong       _executeCount;
+    private final AtomicLong       _rejectCount;
+    private final AtomicLong       _waitNanos;
+    private final AtomicLong       _executionNanos;
+    private final AtomicLong       _maxExecutionNanos;
+
+    private RestExecutor(RestExecutorMode mode, ExecutorService executorService) {
+
+        _mode = mode;
+        _executorService = executorService;
+
+        _queueDepth = new AtomicInteger(0);
+        _maxQueueDepth = new AtomicInteger(0);
+        _activeCount = new AtomicInteger(0);
+
+        _executeCount = new AtomicLong(0);
+        _rejectCount = new AtomicLong(0);
+        _waitNanos = new AtomicLong(0);
+        _executionNanos = new AtomicLong(0);
+        _maxExecutionNanos = new AtomicLong(0);
+    }
+
+    public RestExecutorMode mode() {
+
+        return _mode;
+    }
+
+    public int queueDepth() {
+
+        return _queueDepth.get();
+    }
+
+    public long rejectCount() {
+
+        return _rejectCount.get();
+    }
+
+    RestOutput<Result> execute(Runnable runnable) {
+
+        long submitNanos;
+        int queueDepth;
+
+        if (Api.isNull(runnable)) {
+            return RestOutput.badRequest();
+        }
+
+        submitNanos = System.nanoTime();
+
+        queueDepth = _queueDepth.incrementAndGet();
+        _maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
+
+        try {
+            _executorService.execute(() -> measure(runnable, submitNanos));
+        } catch (RejectedExecutionException e) {
+            _queueDepth.decrementAndGet();
+            _rejectCount.incrementAndGet();
+            Api.error("RestExecutor is saturated. NOT AVAILABLE", this);
+            return RestOutput.notAvailable();
+        }
+
+        return RestOutput.OK;
+    }
+
+    private void measure(Runnable runnable, long submitNanos) {
+
+        long startNanos;
+        long executionNanos;
+
+        startNanos = System.nanoTime();
+
+        _queueDepth.decrementAndGet();
+        _activeCount.incrementAndGet();
+        _waitNanos.addAndGet(startNanos - submitNanos);
+
+        try {
+            runnable.run();
+        } finally {
+            executionNanos = System.nanoTime() - startNanos;
+
+            _activeCount.decrementAndGet();
+            _executeCount.incrementAndGet();
+            _executionNanos.addAndGet(executionNanos);
+            _maxExecutionNanos.accumulateAndGet(executionNanos, Math::max);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        long executeCount = Math.max(1, _executeCount.get());
+
+        return "RestExecutor [_mode=" + _mode
+               + ", _queueDepth="
+               + _queueDepth
+               + ", _maxQueueDepth="
+               + _maxQueueDepth
+               + ", _activeCount="
+               + _activeCount
+               + ", _executeCount="
+               + _executeCount
+               + ", _rejectCount="
+               + _rejectCount
+               + ", averageWait="
+               + TimeUnit.NANOSECONDS.toMicros(_waitNanos.get() / executeCount)
+               + "us, averageExecution="
+               + TimeUnit.NANOSECONDS.toMicros(_executionNanos.get() / executeCount)
+               + "us, maxExecution="
+               + TimeUnit.NANOSECONDS.toMillis(_maxExecutionNanos.get())
+               + "ms]";
+    }
+
+    private static ExecutorService boundedExecutorService(String poolName) {
+
+        int poolSize;
+        int queueDepth;
+        ThreadPoolExecutor threadPoolExecutor;
+
+        poolSize = Api.integerProperty(Setup.REST_POOL_SIZE_PROPERTY, Setup.DEFAULT_REST_POOL_SIZE);
+        queueDepth = Api.integerProperty(Setup.REST_QUEUE_DEPTH_PROPERTY, Setup.DEFAULT_REST_QUEUE_DEPTH);
+
+        // Requests beyond the pool and its queue are rejected rather than piling up threads
+        threadPoolExecutor = new ThreadPoolExecutor(poolSize,
+                                                    poolSize,
+                                                    Setup.REST_POOL_IDLE_TIME_OUT.toMillis(),
+                                                    TimeUnit.MILLISECONDS,
+                                                    new LinkedBlockingQueue<Runnable>(queueDepth),
+                                                    new BaseThreadFactory(poolName),
+                                                    new ThreadPoolExecutor.AbortPolicy());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+        return threadPoolExecutor;
+    }
+
+    private static ExecutorService virtualExecutorService() {
+
+        // Virtual threads are only available from Java 21, looked up so that the build still targets Java 15
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static RestExecutor with(String poolName) {
+
+        RestExecutorMode mode;
+        ExecutorService executorService;
+
+        mode = Api.enumProperty(Setup.REST_EXECUTOR_MODE_PROPERTY,
+                                RestExecutorMode.class,
+                                Setup.DEFAULT_REST_EXECUTOR_MODE);
+
+        if (mode == RestExecutorMode.VIRTUAL) {
+            executorService = virtualExecutorService();
+            if (executorService != null) {
+                return new RestExecutor(mode, executorService);
+            }
+            Api.error("Virtual threads are not supported by this JVM. BOUNDED mode used", Runtime.version());
+            mode = RestExecutorMode.BOUNDED;
+        }
+
+        if (mode == RestExecutorMode.BOUNDED) {
+            return new RestExecutor(mode, boundedExecutorService(poolName));
+        }
+
+        return new RestExecutor(mode, Api.executorService(poolName));
+    }
+}
@@ -0,0 +1,8 @@
+package soccer.rest;
+
+public enum RestExecutorMode {
+
+                              CACHED,
+                              BOUNDED,
+                              VIRTUAL
+}
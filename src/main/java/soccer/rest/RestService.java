@@ -1,5 +1,6 @@
 package soccer.rest;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,23 +12,32 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 
+import org.eclipse.jetty.http.HttpStatus;
 import org.glassfish.jersey.server.ResourceConfig;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
+import soccer.base.Result;
 import soccer.handler.core.CoreHandler;
 import soccer.http.HttpService;
+import soccer.model.MarketQuery;
 import soccer.model.Player;
 import soccer.model.PlayerId;
+import soccer.model.PlayerType;
 import soccer.model.Team;
 import soccer.model.TeamId;
 import soccer.model.User;
 import soccer.model.UserToken;
+import soccer.model.event.EventType;
 
 @Path("/")
 public class RestService extends ResourceConfig {
@@ -82,6 +92,29 @@ public class RestService extends ResourceConfig {
         });
     }
 
+    @POST
+    @Path("/logout")
+    @Produces(Setup.JSON_MEDIA_TYPE)
+    public void logout(@Context HttpServletRequest httpRequest, @Suspended final AsyncResponse asyncResponse) {
+
+        RestCall.run(asyncResponse, (cookieReference) -> {
+
+            Optional<UserToken> userTokenOptional;
+            UserToken userToken;
+
+            // Search the UserToken from the Request
+            userTokenOptional = HttpService.searchUserToken(httpRequest);
+            if (userTokenOptional.isEmpty()) {
+                Api.error("UserToken is not defined to logout. FORBIDDEN");
+                return RestOutput.forbidden();
+            }
+            userToken = userTokenOptional.get();
+
+            // Close the session of this user
+            return coreHandler().logoutUser(userToken);
+        });
+    }
+
     @POST
     @Path("/user")
     @Consumes(Setup.JSON_MEDIA_TYPE)
@@ -112,7 +145,10 @@ public class RestService extends ResourceConfig {
     @Produces(Setup.JSON_MEDIA_TYPE)
     public void getTeam(@Context HttpServletRequest httpRequest, @Suspended final AsyncResponse asyncResponse) {
 
-        RestCall.run(asyncResponse, (cookieReference) -> {
+        RestCall.run(asyncResponse,
+                     HttpService.searchIfNoneMatch(httpRequest),
+                     HttpService.acceptsGzip(httpRequest),
+                     (cookieReference) -> {
 
             Optional<UserToken> userTokenOptional;
             UserToken userToken;
@@ -137,7 +173,10 @@ public class RestService extends ResourceConfig {
                         @PathParam("teamId") String teamId,
                         @Suspended final AsyncResponse asyncResponse) {
 
-        RestCall.run(asyncResponse, (cookieReference) -> {
+        RestCall.run(asyncResponse,
+                     HttpService.searchIfNoneMatch(httpRequest),
+                     HttpService.acceptsGzip(httpRequest),
+                     (cookieReference) -> {
 
             Optional<UserToken> userTokenOptional;
             UserToken userToken;
@@ -212,12 +251,25 @@ public class RestService extends ResourceConfig {
     @GET
     @Path("/market")
     @Produces(Setup.JSON_MEDIA_TYPE)
-    public void getMarket(@Context HttpServletRequest httpRequest, @Suspended final AsyncResponse asyncResponse) {
-
-        RestCall.run(asyncResponse, (cookieReference) -> {
+    public void getMarket(@Context HttpServletRequest httpRequest,
+                          @QueryParam("cursor") String cursor,
+                          @QueryParam("pageSize") Integer pageSize,
+                          @QueryParam("playerType") PlayerType playerType,
+                          @QueryParam("country") String country,
+                          @QueryParam("minPrice") Long minPrice,
+                          @QueryParam("maxPrice") Long maxPrice,
+                          @QueryParam("minAge") Integer minAge,
+                          @QueryParam("maxAge") Integer maxAge,
+                          @Suspended final AsyncResponse asyncResponse) {
+
+        RestCall.run(asyncResponse,
+                     HttpService.searchIfNoneMatch(httpRequest),
+                     HttpService.acceptsGzip(httpRequest),
+                     (cookieReference) -> {
 
             Optional<UserToken> userTokenOptional;
             UserToken userToken;
+            MarketQuery marketQuery;
 
             // Search the UserToken from the Request
             userTokenOptional = HttpService.searchUserToken(httpRequest);
@@ -227,11 +279,48 @@ public class RestService extends ResourceConfig {
             }
             userToken = userTokenOptional.get();
 
-            // Get the market for this user
-            return coreHandler().retrieveMarket(userToken);
+            marketQuery = new MarketQuery(cursor, pageSize, playerType, country, minPrice, maxPrice, minAge, maxAge);
+
+            // Get a page of the market for this user
+            return coreHandler().retrieveMarket(userToken, marketQuery);
         });
     }
 
+    @GET
+    @Path("/events")
+    @Produces(Setup.EVENT_STREAM_MEDIA_TYPE)
+    public void streamEvents(@Context HttpServletRequest httpRequest,
+                             @QueryParam("userToken") String userToken,
+                             @QueryParam("eventType") List<EventType> eventTypeList,
+                             @Context SseEventSink sseEventSink,
+                             @Context Sse sse) {
+
+        Optional<UserToken> userTokenOptional;
+        RestOutput<Result> resultOutput;
+
+        // Search the UserToken from the Request. An EventSource can only send it as a query parameter
+        userTokenOptional = HttpService.searchUserToken(httpRequest)
+                                       .or(() -> Optional.ofNullable(userToken).map(UserToken::new));
+        if (userTokenOptional.isEmpty()) {
+            Api.error("UserToken is not defined to streamEvents. FORBIDDEN");
+            throw new WebApplicationException(HttpStatus.FORBIDDEN_403);
+        }
+
+        // Keep the stream open to push the events of this session
+        resultOutput = coreHandler().subscribeEvents(userTokenOptional.get(), eventTypeList, sseEventSink, sse);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("subscribeEvents is NOT OK", resultOutput, this);
+            switch (resultOutput.restCode()) {
+            case BAD_REQUEST:
+                throw new WebApplicationException(HttpStatus.BAD_REQUEST_400);
+            case FORBIDDEN:
+                throw new WebApplicationException(HttpStatus.FORBIDDEN_403);
+            default:
+                throw new WebApplicationException(HttpStatus.INTERNAL_SERVER_ERROR_500);
+            }
+        }
+    }
+
     @POST
     @Path("/transfer")
     @Consumes(Setup.JSON_MEDIA_TYPE)
@@ -1,13 +1,14 @@
 package soccer.store;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
+import java.sql.Types;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import soccer.base.Api;
@@ -16,24 +17,41 @@ import soccer.base.Result;
 
 public abstract class Collection<T_Record> {
 
-    private final String       _name;
-    private final String[]     _fieldArray;
-    private final StoreService _storeService;
+    // Version of the schema of each collection
+    private static final String STORE_VERSION   = "store_version";
+
+    // Sequence shared by all collections, stamped on each row as it is written
+    static final String         CHANGE_SEQUENCE = "store_change_sequence";
+    private static final String CHANGE_FIELD    = "change_sequence";
+
+    private final String        _name;
+    private final String[]      _fieldArray;
+    private final StoreService  _storeService;
+
+    private volatile String     _storeSQL;
 
     public Collection(String name, String[] fieldArray, StoreService storeService) {
 
         _name = name;
         _fieldArray = fieldArray;
         _storeService = storeService;
+
+        _storeSQL = null;
     }
 
     protected abstract String[] primaryFields();
 
-    protected abstract Map<String, String> updateFields(T_Record record);
+    protected abstract String[] updateFields();
 
     protected abstract T_Record to(ResultSet resultSet) throws SQLException;
 
-    protected abstract String[] from(T_Record record);
+    protected abstract Object[] from(T_Record record);
+
+    // Ordered schema upgrades. Each one must be idempotent as it also runs on a new table
+    protected List<String> migrations() {
+
+        return List.of();
+    }
 
     protected String name() {
 
@@ -65,16 +83,68 @@ public abstract class Collection<T_Record> {
         return entryId + " text NOT NULL";
     }
 
+    protected String uuidEntry(String entryId) {
+
+        return entryId + " uuid NOT NULL";
+    }
+
+    protected String integerEntry(String entryId) {
+
+        return entryId + " integer NOT NULL";
+    }
+
+    protected String bigintEntry(String entryId) {
+
+        return entryId + " bigint NOT NULL";
+    }
+
+    protected String enumEntry(String entryId, String typeId) {
+
+        return entryId + " " + typeId + " NOT NULL";
+    }
+
+    protected String alterTypeEntry(String entryId, String typeId) {
+
+        // Going through text converts from the original text column as well as from the new type itself
+        return "ALTER COLUMN " + entryId + " TYPE " + typeId + " USING " + entryId + "::text::" + typeId;
+    }
+
     protected String primaryKeyEntry(String... entryArray) {
 
         return "PRIMARY KEY (" + joinComma(entryArray) + ")";
     }
 
+    protected String changeSequenceMigration() {
+
+        // Rows already present get a value of the sequence as the column is added
+        return join("CREATE SEQUENCE IF NOT EXISTS ",
+                    CHANGE_SEQUENCE,
+                    "; ALTER TABLE ",
+                    name(),
+                    " ADD COLUMN IF NOT EXISTS ",
+                    CHANGE_FIELD,
+                    " bigint NOT NULL DEFAULT nextval('",
+                    CHANGE_SEQUENCE,
+                    "'); CREATE INDEX IF NOT EXISTS ",
+                    name(),
+                    "_",
+                    CHANGE_FIELD,
+                    " ON ",
+                    name(),
+                    " (",
+                    CHANGE_FIELD,
+                    ");");
+    }
+
+    protected String placeholders(int count) {
+
+        return joinComma(Stream.generate(() -> "?").limit(count).toArray(String[]::new));
+    }
+
     protected Connection connection() throws SQLException {
 
-        return DriverManager.getConnection(storeService().databaseUrl(),
-                                           storeService().storeUser(),
-                                           storeService().storePassword());
+        // Borrow a connection from the pool shared by all collections
+        return storeService().connection();
     }
 
     private RestOutput<Boolean> probeRelation(String relationId) {
@@ -128,9 +198,102 @@ public abstract class Collection<T_Record> {
         }
     }
 
+    protected RestOutput<Result> createEnum(String typeId, Enum<?>[] valueArray) {
+
+        String updateSQL;
+
+        if (Api.isNull(typeId, valueArray)) {
+            return RestOutput.badRequest();
+        }
+
+        // There is no CREATE TYPE IF NOT EXISTS for an enum
+        updateSQL = join("DO $$ BEGIN CREATE TYPE ",
+                         typeId,
+                         " AS ENUM (",
+                         joinComma(Stream.of(valueArray).map(value -> "'" + value.name() + "'").toArray(String[]::new)),
+                         "); EXCEPTION WHEN duplicate_object THEN NULL; END $$;");
+
+        try (Connection connection = connection()) {
+            try (Statement statement = connection.createStatement()) {
+
+                statement.executeUpdate(updateSQL);
+
+                return RestOutput.OK;
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to createEnum. INTERNAL FAILURE", updateSQL, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    private RestOutput<Result> migrate() {
+
+        List<String> migrationList;
+        String createSQL;
+        String selectSQL;
+        String updateSQL;
+        int version;
+
+        migrationList = migrations();
+
+        createSQL = join("CREATE TABLE IF NOT EXISTS ",
+                         STORE_VERSION,
+                         " (collection text NOT NULL, version integer NOT NULL, PRIMARY KEY (collection));");
+        selectSQL = join("SELECT version FROM ", STORE_VERSION, " WHERE collection = ?;");
+        updateSQL = join("INSERT INTO ",
+                         STORE_VERSION,
+                         " (collection, version) VALUES (?, ?)",
+                         " ON CONFLICT (collection) DO UPDATE SET version = EXCLUDED.version;");
+
+        try (Connection connection = connection()) {
+            try (Statement statement = connection.createStatement()) {
+
+                statement.executeUpdate(createSQL);
+
+                // Read the version of this collection. None yet for a table created before versioning
+                try (PreparedStatement preparedStatement = connection.prepareStatement(selectSQL)) {
+                    preparedStatement.setString(1, name());
+
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        version = resultSet.next() ? resultSet.getInt(1) : 0;
+                    }
+                }
+
+                if (version >= migrationList.size()) {
+                    return RestOutput.OK;
+                }
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(updateSQL)) {
+
+                    // Apply each migration along with its version within its own transaction
+                    connection.setAutoCommit(false);
+
+                    for (; version < migrationList.size(); version++) {
+
+                        Api.info("Migration " + (version + 1) + " of " + name(), migrationList.get(version));
+
+                        statement.executeUpdate(migrationList.get(version));
+
+                        preparedStatement.setString(1, name());
+                        preparedStatement.setInt(2, version + 1);
+                        preparedStatement.executeUpdate();
+
+                        connection.commit();
+                    }
+                }
+
+                return RestOutput.OK;
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to migrate. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+    }
+
     protected RestOutput<Result> init(String... entryArray) {
 
         RestOutput<Boolean> probeOutput;
+        RestOutput<Result> resultOutput;
 
         if (Api.isNullArray(entryArray)) {
             return RestOutput.badRequest();
@@ -141,91 +304,238 @@ public abstract class Collection<T_Record> {
             Api.error("probeRelation to init is NOT OK", probeOutput, this);
             return RestOutput.of(probeOutput);
         }
-        if (probeOutput.output()) {
-            return RestOutput.OK;
+
+        if (probeOutput.output() == false) {
+
+            // Create the table as it does not exist yet
+            resultOutput = createTable(entryArray);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("createTable to init is NOT OK", resultOutput, this);
+                return RestOutput.of(resultOutput);
+            }
         }
 
-        // Create the table as it does not exist yet
-        return createTable(entryArray);
+        // Upgrade the table to the latest schema
+        return migrate();
     }
 
-    protected RestOutput<Result> storeRecord(T_Record record) {
+    private String storeSQL() {
 
-        String[] valueArray;
-        String updateSQL;
-        Map<String, String> updateRecordMap;
+        String[] updateFieldArray;
 
-        if (Api.isNull(record)) {
-            return RestOutput.badRequest();
+        // The statement only depends on the fields of the collection, so it is built once
+        if (_storeSQL != null) {
+            return _storeSQL;
         }
 
-        valueArray = from(record);
-        if (valueArray == null) {
-            Api.error("storeRecord failed. INTERNAL FAILURE", record, this);
-            return RestOutput.internalFailure();
-        }
-
-        // Add single quote for each text value
-        valueArray = Stream.of(valueArray).map(value -> "'" + value + "'").toArray(String[]::new);
-
-        updateRecordMap = updateFields(record);
-        if (updateRecordMap.isEmpty()) {
+        updateFieldArray = updateFields();
+        if (updateFieldArray.length == 0) {
 
             // INSERT only of the record
-            updateSQL = join("INSERT INTO ",
+            _storeSQL = join("INSERT INTO ",
                              name(),
                              "(",
                              joinComma(fieldArray()),
                              ") VALUES (",
-                             joinComma(valueArray),
+                             placeholders(fieldArray().length),
                              ");");
 
         } else {
 
-            // INSERT or UPDATE of the record
-            updateSQL = join("INSERT INTO ",
+            // INSERT or UPDATE of the record with the values proposed for insertion
+            // An updated row takes the next change sequence, as an inserted one does by default
+            _storeSQL = join("INSERT INTO ",
                              name(),
                              "(",
                              joinComma(fieldArray()),
                              ") VALUES (",
-                             joinComma(valueArray),
+                             placeholders(fieldArray().length),
                              ") ON CONFLICT (",
                              joinComma(primaryFields()),
                              ") DO UPDATE SET ",
-                             joinComma(updateRecordMap.entrySet()
-                                                      .stream()
-                                                      .map(entry -> entry.getKey() + "='" + entry.getValue() + "'")
-                                                      .toArray(String[]::new)),
-                             ";");
+                             joinComma(Stream.of(updateFieldArray)
+                                             .map(field -> field + "=EXCLUDED." + field)
+                                             .toArray(String[]::new)),
+                             ",",
+                             CHANGE_FIELD,
+                             "=nextval('",
+                             CHANGE_SEQUENCE,
+                             "');");
+        }
+
+        return _storeSQL;
+    }
+
+    protected void bind(PreparedStatement preparedStatement, Object[] valueArray) throws SQLException {
+
+        Object value;
+
+        // Bind each value with the type of its column
+        for (int index = 0; index < valueArray.length; index++) {
+
+            value = valueArray[index];
+
+            if (UUID.class.isInstance(value)) {
+                preparedStatement.setObject(index + 1, value);
+            } else if (Integer.class.isInstance(value)) {
+                preparedStatement.setInt(index + 1, Integer.class.cast(value));
+            } else if (Long.class.isInstance(value)) {
+                preparedStatement.setLong(index + 1, Long.class.cast(value));
+            } else if (Enum.class.isInstance(value)) {
+                // Sent untyped, so that the server casts it to the enum of the column
+                preparedStatement.setObject(index + 1, Enum.class.cast(value).name(), Types.OTHER);
+            } else {
+                preparedStatement.setString(index + 1, String.valueOf(value));
+            }
+        }
+    }
+
+    private Object[] values(T_Record record) {
+
+        Object[] valueArray;
+
+        valueArray = from(record);
+        if (valueArray == null) {
+            return null;
+        }
+
+        if (valueArray.length != fieldArray().length) {
+            Api.error("Values do not match the fields of the collection", record, this);
+            return null;
+        }
+
+        return valueArray;
+    }
+
+    protected RestOutput<Result> storeRecord(T_Record record) {
+
+        Object[] valueArray;
+
+        if (Api.isNull(record)) {
+            return RestOutput.badRequest();
+        }
+
+        valueArray = values(record);
+        if (valueArray == null) {
+            Api.error("storeRecord failed. INTERNAL FAILURE", record, this);
+            return RestOutput.internalFailure();
         }
 
+        // The driver keeps the statement prepared on the pooled connection across calls
         try (Connection connection = connection()) {
-            try (Statement statement = connection.createStatement()) {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(storeSQL())) {
 
-                statement.executeUpdate(updateSQL);
+                bind(preparedStatement, valueArray);
+
+                preparedStatement.executeUpdate();
 
                 return RestOutput.OK;
             }
         } catch (Throwable t) {
-            Api.error(t, "Failure to storeRecord. INTERNAL FAILURE", updateSQL, this);
+            Api.error(t, "Failure to storeRecord. INTERNAL FAILURE", storeSQL(), record, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    protected final RestOutput<Result> writeRecords(Connection connection, List<T_Record> recordList) throws SQLException {
+
+        Object[] valueArray;
+
+        if (Api.isNull(connection, recordList)) {
+            return RestOutput.badRequest();
+        }
+
+        if (recordList.isEmpty()) {
+            return RestOutput.OK;
+        }
+
+        // Send all records in one batch. The transaction is left to the caller
+        try (PreparedStatement preparedStatement = connection.prepareStatement(storeSQL())) {
+
+            for (T_Record record : recordList) {
+
+                valueArray = values(record);
+                if (valueArray == null) {
+                    Api.error("writeRecords failed. INTERNAL FAILURE", record, this);
+                    return RestOutput.internalFailure();
+                }
+
+                bind(preparedStatement, valueArray);
+                preparedStatement.addBatch();
+            }
+
+            preparedStatement.executeBatch();
+
+            return RestOutput.OK;
+        }
+    }
+
+    protected RestOutput<Result> storeRecords(List<T_Record> recordList) {
+
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(recordList)) {
+            return RestOutput.badRequest();
+        }
+
+        // A transaction left open on failure is rolled back when the connection returns to the pool
+        try (Connection connection = connection()) {
+
+            // Write all records within a single transaction
+            connection.setAutoCommit(false);
+
+            resultOutput = writeRecords(connection, recordList);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("writeRecords to storeRecords is NOT OK", resultOutput, recordList.size(), this);
+                return RestOutput.of(resultOutput);
+            }
+
+            connection.commit();
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to storeRecords. INTERNAL FAILURE", storeSQL(), recordList.size(), this);
             return RestOutput.internalFailure();
         }
     }
 
-    protected RestOutput<List<T_Record>> loadRecords() {
+    protected RestOutput<Result> loadRecords(String orderField, Consumer<T_Record> recordConsumer) {
+
+        // All rows were changed after the sequence started
+        return loadRecords(orderField, 0L, recordConsumer);
+    }
+
+    protected RestOutput<Result> loadRecords(String orderField,
+                                             long changeSequence,
+                                             Consumer<T_Record> recordConsumer) {
 
-        List<T_Record> recordList;
         T_Record record;
         String querySQL;
 
-        recordList = new ArrayList<T_Record>();
+        if (Api.isNull(recordConsumer)) {
+            return RestOutput.badRequest();
+        }
 
-        querySQL = join("SELECT * FROM ", name(), ";");
+        // Columns are read by position, so the change sequence added last is ignored by each collection
+        if (orderField == null) {
+            querySQL = join("SELECT * FROM ", name(), " WHERE ", CHANGE_FIELD, " > ?;");
+        } else {
+            querySQL = join("SELECT * FROM ", name(), " WHERE ", CHANGE_FIELD, " > ? ORDER BY ", orderField, ";");
+        }
 
         // Execute the Query
         try (Connection connection = connection()) {
-            try (Statement statement = connection.createStatement()) {
-                try (ResultSet resultSet = statement.executeQuery(querySQL)) {
+
+            // The driver only fetches rows through a cursor within a transaction
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement preparedStatement = connection.prepareStatement(querySQL)) {
+
+                preparedStatement.setFetchSize(storeService().fetchSize());
+                preparedStatement.setLong(1, changeSequence);
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
 
                     while (resultSet.next()) {
 
@@ -235,10 +545,12 @@ public abstract class Collection<T_Record> {
                             Api.error("loadRecords failed. INTERNAL FAILURE", record, this);
                             return RestOutput.internalFailure();
                         }
-                        recordList.add(record);
+
+                        // Hand over each record as soon as it is read
+                        recordConsumer.accept(record);
                     }
 
-                    return RestOutput.ok(recordList);
+                    return RestOutput.OK;
                 }
             }
         } catch (Throwable t) {
@@ -0,0 +1,119 @@
+package soccer.store;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ConnectionLease implements InvocationHandler {
+
+    // SQL States of class 08 report a connection exception
+    private static final String    CONNECTION_EXCEPTION_CLASS = "08";
+
+    private final ConnectionPool   _connectionPool;
+    private final PooledConnection _pooledConnection;
+    private final Thread           _thread;
+    private final long             _borrowNanos;
+    private final AtomicBoolean    _released;
+    private final AtomicBoolean    _leakReported;
+    private final Connection       _proxy;
+
+    ConnectionLease(ConnectionPool connectionPool, PooledConnection pooledConnection) {
+
+        _connectionPool = connectionPool;
+        _pooledConnection = pooledConnection;
+        _thread = Thread.currentThread();
+        _borrowNanos = System.nanoTime();
+        _released = new AtomicBoolean(false);
+        _leakReported = new AtomicBoolean(false);
+
+        // The caller only sees a proxy which returns the connection to the pool on close()
+        _proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                     new Class<?>[] { Connection.class },
+                                                     this);
+    }
+
+    PooledConnection pooledConnection() {
+
+        return _pooledConnection;
+    }
+
+    Connection proxy() {
+
+        return _proxy;
+    }
+
+    Thread thread() {
+
+        return _thread;
+    }
+
+    long heldNanos() {
+
+        return System.nanoTime() - _borrowNanos;
+    }
+
+    boolean reportLeak() {
+
+        // Report a leak only once per lease
+        return _leakReported.compareAndSet(false, true);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+        switch (method.getName()) {
+        case "close":
+            if (_released.compareAndSet(false, true)) {
+                _connectionPool.release(this);
+            }
+            return null;
+        case "isClosed":
+            if (_released.get()) {
+                return Boolean.TRUE;
+            }
+            break;
+        case "equals":
+            return (proxy == args[0]);
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "toString":
+            return toString();
+        default:
+            break;
+        }
+
+        if (_released.get()) {
+            throw new SQLException("Connection already returned to the pool");
+        }
+
+        try {
+            return method.invoke(_pooledConnection.connection(), args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (SQLException.class.isInstance(cause)) {
+                String sqlState = SQLException.class.cast(cause).getSQLState();
+                if ((sqlState != null) && sqlState.startsWith(CONNECTION_EXCEPTION_CLASS)) {
+                    // Do not give this connection back to anyone else
+                    _pooledConnection.markBroken();
+                }
+            }
+            throw cause;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionLease [_pooledConnection=" + _pooledConnection
+               + ", _thread="
+               + _thread.getName()
+               + ", _borrowNanos="
+               + _borrowNanos
+               + ", _released="
+               + _released
+               + "]";
+    }
+}
@@ -0,0 +1,358 @@
+package soccer.store;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+
+public class ConnectionPool {
+
+    private final String                                _databaseUrl;
+    private final String                                _storeUser;
+    private final String                                _storePassword;
+    private final int                                   _maxSize;
+
+    private final Semaphore                             _permits;
+    private final LinkedBlockingDeque<PooledConnection> _idleDeque;
+    private final Set<ConnectionLease>                  _leaseSet;
+    private final AtomicBoolean                         _closed;
+
+    private final AtomicLong                            _borrowCount;
+    private final AtomicLong                            _waitNanos;
+    private final AtomicLong                            _maxWaitNanos;
+    private final AtomicLong                            _timeoutCount;
+    private final AtomicLong                            _createCount;
+    private final AtomicLong                            _evictCount;
+    private final AtomicLong                            _leakCount;
+
+    public ConnectionPool(String databaseUrl, String storeUser, String storePassword, int maxSize) {
+
+        _databaseUrl = databaseUrl;
+        _storeUser = storeUser;
+        _storePassword = storePassword;
+        _maxSize = maxSize;
+
+        // Connections are only opened when borrowed, so the permits bound the size of the pool
+        _permits = new Semaphore(maxSize, true);
+        _idleDeque = new LinkedBlockingDeque<PooledConnection>();
+        _leaseSet = ConcurrentHashMap.newKeySet();
+        _closed = new AtomicBoolean(false);
+
+        _borrowCount = new AtomicLong(0);
+        _waitNanos = new AtomicLong(0);
+        _maxWaitNanos = new AtomicLong(0);
+        _timeoutCount = new AtomicLong(0);
+        _createCount = new AtomicLong(0);
+        _evictCount = new AtomicLong(0);
+        _leakCount = new AtomicLong(0);
+    }
+
+    public int maxSize() {
+
+        return _maxSize;
+    }
+
+    public int activeCount() {
+
+        return _leaseSet.size();
+    }
+
+    public int idleCount() {
+
+        return _idleDeque.size();
+    }
+
+    public int waitingCount() {
+
+        return _permits.getQueueLength();
+    }
+
+    public long borrowCount() {
+
+        return _borrowCount.get();
+    }
+
+    public long averageWaitMicros() {
+
+        long borrowCount = borrowCount();
+        if (borrowCount == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(_waitNanos.get() / borrowCount);
+    }
+
+    public long maxWaitMicros() {
+
+        return TimeUnit.NANOSECONDS.toMicros(_maxWaitNanos.get());
+    }
+
+    public long timeoutCount() {
+
+        return _timeoutCount.get();
+    }
+
+    public long createCount() {
+
+        return _createCount.get();
+    }
+
+    public long evictCount() {
+
+        return _evictCount.get();
+    }
+
+    public long leakCount() {
+
+        return _leakCount.get();
+    }
+
+    private boolean isClosed() {
+
+        return _closed.get();
+    }
+
+    private void recordWait(long waitNanos) {
+
+        _borrowCount.incrementAndGet();
+        _waitNanos.addAndGet(waitNanos);
+        _maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private PooledConnection create() throws SQLException {
+
+        Connection connection;
+
+        connection = DriverManager.getConnection(_databaseUrl, _storeUser, _storePassword);
+
+        _createCount.incrementAndGet();
+
+        return new PooledConnection(connection);
+    }
+
+    private PooledConnection acquire() throws SQLException {
+
+        PooledConnection pooledConnection;
+
+        // Reuse the most recently used connection first to keep the others eligible for eviction
+        while ((pooledConnection = _idleDeque.pollFirst()) != null) {
+
+            if (pooledConnection.validate(Setup.STORE_POOL_PING_WINDOW, Setup.STORE_POOL_PING_TIME_OUT)) {
+                return pooledConnection;
+            }
+
+            Api.error("Idle connection is not valid anymore. Connection discarded", pooledConnection, this);
+            pooledConnection.close();
+            _evictCount.incrementAndGet();
+        }
+
+        return create();
+    }
+
+    public Connection borrow() throws SQLException {
+
+        long startNanos;
+        PooledConnection pooledConnection;
+        ConnectionLease connectionLease;
+
+        if (isClosed()) {
+            throw new SQLException("ConnectionPool is closed");
+        }
+
+        startNanos = System.nanoTime();
+
+        try {
+            if (_permits.tryAcquire(Setup.STORE_POOL_WAIT_TIME_OUT.toNanos(), TimeUnit.NANOSECONDS) == false) {
+                _timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("No connection available after " + Setup.STORE_POOL_WAIT_TIME_OUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            pooledConnection = acquire();
+        } catch (SQLException | RuntimeException e) {
+            _permits.release();
+            throw e;
+        }
+
+        recordWait(System.nanoTime() - startNanos);
+
+        connectionLease = new ConnectionLease(this, pooledConnection);
+        _leaseSet.add(connectionLease);
+
+        return connectionLease.proxy();
+    }
+
+    void release(ConnectionLease connectionLease) {
+
+        PooledConnection pooledConnection;
+        Connection connection;
+
+        _leaseSet.remove(connectionLease);
+
+        pooledConnection = connectionLease.pooledConnection();
+        connection = pooledConnection.connection();
+
+        try {
+            if (isClosed() || pooledConnection.isBroken() || connection.isClosed()) {
+                pooledConnection.close();
+                return;
+            }
+
+            // Never hand over a pending transaction to the next borrower
+            if (connection.getAutoCommit() == false) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            pooledConnection.touch();
+            _idleDeque.offerFirst(pooledConnection);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to release connection. Connection discarded", connectionLease, this);
+            pooledConnection.close();
+        } finally {
+            _permits.release();
+        }
+    }
+
+    private void evictIdleConnections() {
+
+        for (PooledConnection pooledConnection : _idleDeque) {
+
+            if (pooledConnection.idleNanos() < Setup.STORE_POOL_IDLE_TIME_OUT.toNanos()) {
+                continue;
+            }
+
+            // The connection may have been borrowed in the meantime
+            if (_idleDeque.remove(pooledConnection)) {
+                pooledConnection.close();
+                _evictCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void detectLeaks() {
+
+        Throwable stackTrace;
+
+        for (ConnectionLease connectionLease : _leaseSet) {
+
+            if (connectionLease.heldNanos() < Setup.STORE_POOL_LEAK_TIME_OUT.toNanos()) {
+                continue;
+            }
+
+            if (connectionLease.reportLeak() == false) {
+                continue;
+            }
+
+            _leakCount.incrementAndGet();
+
+            // Report where the holding thread is right now
+            stackTrace = new Throwable("Connection held by " + connectionLease.thread().getName());
+            stackTrace.setStackTrace(connectionLease.thread().getStackTrace());
+
+            Api.error(stackTrace,
+                      "Connection held for more than " + Setup.STORE_POOL_LEAK_TIME_OUT + ". Possible leak",
+                      connectionLease,
+                      this);
+        }
+    }
+
+    private void monitor() {
+
+        if (isClosed()) {
+            return;
+        }
+
+        evictIdleConnections();
+        detectLeaks();
+
+        // Reschedule the monitoring later on
+        CompletableFuture.runAsync(this::monitor,
+                                   CompletableFuture.delayedExecutor(Setup.STORE_POOL_MONITOR_PERIOD.toMillis(),
+                                                                     TimeUnit.MILLISECONDS));
+    }
+
+    public RestOutput<Result> start() {
+
+        if (isClosed()) {
+            Api.error("ConnectionPool is closed. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+
+        // Without any permit, every borrow would wait until its time out
+        if (maxSize() <= 0) {
+            Api.error("Size of ConnectionPool is not positive. BAD REQUEST", maxSize(), this);
+            return RestOutput.badRequest();
+        }
+
+        // Monitor periodically the idle and borrowed connections
+        monitor();
+
+        return RestOutput.OK;
+    }
+
+    public RestOutput<Result> close() {
+
+        PooledConnection pooledConnection;
+
+        if (_closed.compareAndSet(false, true) == false) {
+            return RestOutput.OK;
+        }
+
+        // Borrowed connections are closed as soon as they get released
+        while ((pooledConnection = _idleDeque.pollFirst()) != null) {
+            pooledConnection.close();
+        }
+
+        if (activeCount() > 0) {
+            Api.error("ConnectionPool closed with borrowed connections", activeCount(), this);
+        }
+
+        return RestOutput.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool [_databaseUrl=" + _databaseUrl
+               + ", _maxSize="
+               + _maxSize
+               + ", active="
+               + activeCount()
+               + ", idle="
+               + idleCount()
+               + ", waiting="
+               + waitingCount()
+               + ", borrowCount="
+               + borrowCount()
+               + ", averageWaitMicros="
+               + averageWaitMicros()
+               + ", maxWaitMicros="
+               + maxWaitMicros()
+               + ", timeoutCount="
+               + timeoutCount()
+               + ", createCount="
+               + createCount()
+               + ", evictCount="
+               + evictCount()
+               + ", leakCount="
+               + leakCount()
+               + "]";
+    }
+}
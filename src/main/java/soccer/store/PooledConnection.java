@@ -0,0 +1,89 @@
+package soccer.store;
+
+import java.sql.Connection;
+import java.time.Duration;
+
+import soccer.base.Api;
+
+class PooledConnection {
+
+    private final Connection _connection;
+    private final long       _createNanos;
+
+    private volatile long    _lastUsedNanos;
+    private volatile boolean _broken;
+
+    PooledConnection(Connection connection) {
+
+        _connection = connection;
+        _createNanos = System.nanoTime();
+
+        _lastUsedNanos = _createNanos;
+        _broken = false;
+    }
+
+    Connection connection() {
+
+        return _connection;
+    }
+
+    void touch() {
+
+        _lastUsedNanos = System.nanoTime();
+    }
+
+    long idleNanos() {
+
+        return System.nanoTime() - _lastUsedNanos;
+    }
+
+    boolean isBroken() {
+
+        return _broken;
+    }
+
+    void markBroken() {
+
+        _broken = true;
+    }
+
+    boolean validate(Duration pingWindow, Duration pingTimeOut) {
+
+        if (isBroken()) {
+            return false;
+        }
+
+        // Skip the round trip if this connection has been used very recently
+        if (idleNanos() < pingWindow.toNanos()) {
+            return true;
+        }
+
+        try {
+            return _connection.isValid((int) Math.max(1, pingTimeOut.toSeconds()));
+        } catch (Throwable t) {
+            Api.error(t, "Failure to validate connection", this);
+            return false;
+        }
+    }
+
+    void close() {
+
+        try {
+            _connection.close();
+        } catch (Throwable t) {
+            Api.error(t, "Failure to close connection", this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledConnection [_connection=" + _connection
+               + ", _createNanos="
+               + _createNanos
+               + ", _lastUsedNanos="
+               + _lastUsedNanos
+               + ", _broken="
+               + _broken
+               + "]";
+    }
+}
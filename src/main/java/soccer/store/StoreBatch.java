@@ -0,0 +1,34 @@
+package soccer.store;
+
+import java.util.List;
+
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+
+public class StoreBatch {
+
+    private final List<TeamRecord>   _teamRecordList;
+    private final List<PlayerRecord> _playerRecordList;
+
+    public StoreBatch(List<TeamRecord> teamRecordList, List<PlayerRecord> playerRecordList) {
+
+        _teamRecordList = teamRecordList;
+        _playerRecordList = playerRecordList;
+    }
+
+    public List<TeamRecord> teamRecordList() {
+        return _teamRecordList;
+    }
+
+    public List<PlayerRecord> playerRecordList() {
+        return _playerRecordList;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreBatch [_teamRecordList=" + _teamRecordList.size()
+               + ", _playerRecordList="
+               + _playerRecordList.size()
+               + "]";
+    }
+}
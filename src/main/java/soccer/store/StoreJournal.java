@@ -0,0 +1,638 @@
+package soccer.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+
+class StoreJournal {
+
+    private final static String                     SEGMENT_PREFIX  = "journal-";
+    private final static String                     SEGMENT_SUFFIX  = ".log";
+    private final static int                        ENTRY_HEADER    = 2 * Integer.BYTES;
+
+    private final static PlayerType[]               PlayerTypeArray = PlayerType.values();
+
+    // Folder of the segments, the last one being appended
+    private final Path                              _folder;
+    private volatile FileChannel                    _fileChannel;
+    private volatile long                           _segmentIndex;
+
+    // Entries waiting for the next group commit
+    private final LinkedBlockingQueue<JournalEntry> _pendingQueue;
+    private final ExecutorService                   _executorService;
+    private final AtomicBoolean                     _stopped;
+
+    // Held by each append until its records are handed over, and exclusively to switch segments
+    private final ReentrantReadWriteLock            _segmentLock;
+
+    // Held while a group of entries is written to the current segment, and to replace this segment
+    private final ReentrantLock                     _channelLock;
+
+    private final AtomicLong                        _appendCount;
+    private final AtomicLong                        _commitCount;
+    private final AtomicLong                        _replayCount;
+    private final AtomicLong                        _failureCount;
+
+    StoreJournal(Path folder) {
+
+        _folder = folder;
+        _fileChannel = null;
+        _segmentIndex = 0;
+
+        _pendingQueue = new LinkedBlockingQueue<JournalEntry>();
+        _executorService = Api.executorService("journal");
+        _stopped = new AtomicBoolean(false);
+
+        _segmentLock = new ReentrantReadWriteLock();
+        _channelLock = new ReentrantLock();
+
+        _appendCount = new AtomicLong(0);
+        _commitCount = new AtomicLong(0);
+        _replayCount = new AtomicLong(0);
+        _failureCount = new AtomicLong(0);
+    }
+
+    private Path segmentPath(long segmentIndex) {
+
+        return _folder.resolve(SEGMENT_PREFIX + String.format("%016d", segmentIndex) + SEGMENT_SUFFIX);
+    }
+
+    private List<Path> segments() throws IOException {
+
+        // Segments are named so that their order is the order of their names
+        try (Stream<Path> pathStream = Files.list(_folder)) {
+            return pathStream.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                             .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                             .sorted()
+                             .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentIndex(Path path) {
+
+        String name;
+
+        name = path.getFileName().toString();
+
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void openSegment(long segmentIndex) throws IOException {
+
+        _fileChannel = FileChannel.open(segmentPath(segmentIndex),
+                                        StandardOpenOption.CREATE_NEW,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.APPEND);
+        _segmentIndex = segmentIndex;
+    }
+
+    private RestOutput<Result> replaySegment(Path path, Function<StoreBatch, RestOutput<Result>> replayFunction) {
+
+        ByteBuffer byteBuffer;
+        int length;
+        int checksum;
+        byte[] byteArray;
+        CRC32 crc32;
+        RestOutput<Result> resultOutput;
+
+        try {
+            byteBuffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (Throwable t) {
+            Api.error(t, "Failure to read journal segment. INTERNAL FAILURE", path, this);
+            return RestOutput.internalFailure();
+        }
+
+        while (byteBuffer.remaining() >= ENTRY_HEADER) {
+
+            length = byteBuffer.getInt();
+            checksum = byteBuffer.getInt();
+
+            // An entry torn by a crash was never acknowledged, so the replay ends there
+            if ((length < 0) || (length > byteBuffer.remaining())) {
+                Api.error("Journal entry is incomplete. Replay ends", path, byteBuffer.position(), this);
+                return RestOutput.OK;
+            }
+
+            byteArray = new byte[length];
+            byteBuffer.get(byteArray);
+
+            crc32 = new CRC32();
+            crc32.update(byteArray);
+            if ((int) crc32.getValue() != checksum) {
+                Api.error("Journal entry is damaged. Replay ends", path, byteBuffer.position(), this);
+                return RestOutput.OK;
+            }
+
+            try {
+                resultOutput = replayFunction.apply(decode(byteArray));
+            } catch (Throwable t) {
+                Api.error(t, "Failure to decode journal entry. INTERNAL FAILURE", path, this);
+                return RestOutput.internalFailure();
+            }
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Replay of journal entry is NOT OK", resultOutput, path, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            _replayCount.incrementAndGet();
+        }
+
+        return RestOutput.OK;
+    }
+
+    RestOutput<Result> start(Function<StoreBatch, RestOutput<Result>> replayFunction) {
+
+        List<Path> segmentList;
+        RestOutput<Result> resultOutput;
+        long segmentIndex;
+
+        try {
+            Files.createDirectories(_folder);
+            segmentList = segments();
+        } catch (Throwable t) {
+            Api.error(t, "Failure to list journal segments. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+
+        // Write again into the store all updates journaled before a crash, in their order
+        segmentIndex = 0;
+        for (Path path : segmentList) {
+
+            resultOutput = replaySegment(path, replayFunction);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("replaySegment is NOT OK", resultOutput, path, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            segmentIndex = segmentIndex(path);
+        }
+
+        try {
+            // All replayed updates are in the store by now
+            for (Path path : segmentList) {
+                Files.delete(path);
+            }
+
+            openSegment(segmentIndex + 1);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to open journal segment. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+
+        if (_replayCount.get() > 0) {
+            Api.info("Journal replayed " + _replayCount.get() + " entries", this);
+        }
+
+        // A single thread commits the entries of all appends, with one sync per group
+        _executorService.execute(this::commitLoop);
+
+        return RestOutput.OK;
+    }
+
+    private void commitLoop() {
+
+        List<JournalEntry> journalEntryList;
+        JournalEntry journalEntry;
+        ByteBuffer[] bufferArray;
+        FileChannel fileChannel;
+        long position;
+        RestOutput<Result> resultOutput;
+
+        journalEntryList = new ArrayList<JournalEntry>(Setup.STORE_JOURNAL_BATCH_SIZE);
+
+        while (_stopped.get() == false) {
+
+            try {
+                journalEntry = _pendingQueue.poll(Setup.STORE_JOURNAL_POLL_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (journalEntry == null) {
+                continue;
+            }
+
+            // All entries appended meanwhile share the same sync
+            journalEntryList.add(journalEntry);
+            _pendingQueue.drainTo(journalEntryList, Setup.STORE_JOURNAL_BATCH_SIZE - 1);
+
+            // Entries cancelled by their append are never written, as their records are not handed over
+            journalEntryList.removeIf(pendingEntry -> pendingEntry.claim() == false);
+            if (journalEntryList.isEmpty()) {
+                continue;
+            }
+
+            bufferArray = journalEntryList.stream().map(JournalEntry::byteBuffer).toArray(ByteBuffer[]::new);
+            position = -1;
+
+            // The segment can not be replaced between its size and the sync of this group
+            fileChannel = null;
+
+            try {
+                _channelLock.lock();
+
+                fileChannel = _fileChannel;
+                position = fileChannel.size();
+                while (bufferArray[bufferArray.length - 1].hasRemaining()) {
+                    fileChannel.write(bufferArray);
+                }
+                fileChannel.force(false);
+
+                _commitCount.incrementAndGet();
+                resultOutput = RestOutput.OK;
+
+            } catch (Throwable t) {
+                Api.error(t, "Failure to commit journal entries. INTERNAL FAILURE", journalEntryList.size(), this);
+                _failureCount.incrementAndGet();
+                resultOutput = RestOutput.internalFailure();
+
+                // Entries not acknowledged are cut, so that the next ones are not hidden behind them on replay
+                truncate(fileChannel, position);
+
+            } finally {
+                _channelLock.unlock();
+            }
+
+            for (JournalEntry committedEntry : journalEntryList) {
+                committedEntry.future().complete(resultOutput);
+            }
+            journalEntryList.clear();
+        }
+
+        // Appends still waiting are not acknowledged
+        _pendingQueue.forEach(pendingEntry -> pendingEntry.future().complete(RestOutput.notAvailable()));
+    }
+
+    private void truncate(FileChannel fileChannel, long position) {
+
+        try {
+            if ((fileChannel != null) && (position >= 0)) {
+                fileChannel.truncate(position);
+                return;
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to truncate journal segment", position, this);
+        }
+
+        // The end of the segment is unknown, so the next entries go to a new one.
+        // An entry left complete in the previous segment is replayed, as after a crash during its commit
+        try {
+            openSegment(_segmentIndex + 1);
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to open journal segment. Journal stopped", this);
+            _stopped.set(true);
+        }
+    }
+
+    private RestOutput<Result> awaitCommit(JournalEntry journalEntry) {
+
+        try {
+            return journalEntry.future().get(Setup.STORE_ENQUEUE_TIME_OUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Api.error("Interrupted while waiting for the journal", this);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to wait for the journal", this);
+        }
+
+        // Cancelled, unless already taken by the commit loop, as its records must then be handed over
+        if (journalEntry.claim()) {
+            return RestOutput.notAvailable();
+        }
+
+        return journalEntry.future().join();
+    }
+
+    RestOutput<Result> append(StoreBatch storeBatch, Supplier<RestOutput<Result>> handOverSupplier) {
+
+        JournalEntry journalEntry;
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(storeBatch, handOverSupplier)) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            journalEntry = new JournalEntry(encode(storeBatch));
+        } catch (Throwable t) {
+            Api.error(t, "Failure to encode journal entry. INTERNAL FAILURE", storeBatch, this);
+            return RestOutput.internalFailure();
+        }
+
+        try {
+            _segmentLock.readLock().lock();
+
+            if (_stopped.get()) {
+                Api.error("Journal is stopped. NOT AVAILABLE", storeBatch, this);
+                return RestOutput.notAvailable();
+            }
+
+            _appendCount.incrementAndGet();
+            _pendingQueue.add(journalEntry);
+
+            // Acknowledged once on disk
+            resultOutput = awaitCommit(journalEntry);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Journal commit is NOT OK", resultOutput, storeBatch, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            // The records reach the store before the segment of this entry may be deleted
+            return handOverSupplier.get();
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to append journal entry. NOT AVAILABLE", storeBatch, this);
+            return RestOutput.notAvailable();
+
+        } finally {
+            _segmentLock.readLock().unlock();
+        }
+    }
+
+    long size() {
+
+        try {
+            return _fileChannel.size();
+        } catch (Throwable t) {
+            return 0;
+        }
+    }
+
+    RestOutput<Result> checkpoint(Supplier<RestOutput<Result>> flushSupplier) {
+
+        long segmentIndex;
+        FileChannel fileChannel;
+        RestOutput<Result> resultOutput;
+
+        // Switch to a new segment once no append is in progress
+        try {
+            _segmentLock.writeLock().lock();
+            _channelLock.lock();
+
+            segmentIndex = _segmentIndex;
+            fileChannel = _fileChannel;
+
+            openSegment(segmentIndex + 1);
+            fileChannel.close();
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to switch journal segment. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+
+        } finally {
+            _channelLock.unlock();
+            _segmentLock.writeLock().unlock();
+        }
+
+        // All records of the previous segments are pending in the store, or written already
+        resultOutput = flushSupplier.get();
+        if (RestOutput.isNOK(resultOutput)) {
+            // The segments are kept, and deleted on the next checkpoint
+            return RestOutput.of(resultOutput);
+        }
+
+        return deleteSegments(segmentIndex);
+    }
+
+    private RestOutput<Result> deleteSegments(long lastSegmentIndex) {
+
+        try {
+            for (Path path : segments()) {
+                if (segmentIndex(path) <= lastSegmentIndex) {
+                    Files.delete(path);
+                }
+            }
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to delete journal segments. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    RestOutput<Result> stop(boolean flushed) {
+
+        _stopped.set(true);
+        _executorService.shutdown();
+
+        try {
+            _segmentLock.writeLock().lock();
+            _channelLock.lock();
+
+            _fileChannel.close();
+
+            // Segments are replayed on the next start unless all their records are in the store
+            if (flushed) {
+                return deleteSegments(_segmentIndex);
+            }
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to stop journal. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+
+        } finally {
+            _channelLock.unlock();
+            _segmentLock.writeLock().unlock();
+        }
+    }
+
+    private static void writeString(DataOutputStream dataOutputStream, String value) throws IOException {
+
+        dataOutputStream.writeBoolean(value != null);
+        if (value != null) {
+            dataOutputStream.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream dataInputStream) throws IOException {
+
+        if (dataInputStream.readBoolean() == false) {
+            return null;
+        }
+        return dataInputStream.readUTF();
+    }
+
+    private static void writeUUID(DataOutputStream dataOutputStream, UUID uuid) throws IOException {
+
+        dataOutputStream.writeLong(uuid.getMostSignificantBits());
+        dataOutputStream.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInputStream dataInputStream) throws IOException {
+
+        return new UUID(dataInputStream.readLong(), dataInputStream.readLong());
+    }
+
+    private static ByteBuffer encode(StoreBatch storeBatch) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream;
+        DataOutputStream dataOutputStream;
+        byte[] byteArray;
+        CRC32 crc32;
+        ByteBuffer byteBuffer;
+
+        byteArrayOutputStream = new ByteArrayOutputStream();
+        dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+        dataOutputStream.writeInt(storeBatch.teamRecordList().size());
+        for (TeamRecord teamRecord : storeBatch.teamRecordList()) {
+            writeString(dataOutputStream, teamRecord.userId());
+            writeUUID(dataOutputStream, teamRecord.teamId().getUUID());
+            writeString(dataOutputStream, teamRecord.name());
+            writeString(dataOutputStream, teamRecord.country());
+            dataOutputStream.writeLong(teamRecord.balance());
+        }
+
+        dataOutputStream.writeInt(storeBatch.playerRecordList().size());
+        for (PlayerRecord playerRecord : storeBatch.playerRecordList()) {
+            writeUUID(dataOutputStream, playerRecord.playerId().getUUID());
+            dataOutputStream.writeByte(playerRecord.playerType().ordinal());
+            writeString(dataOutputStream, playerRecord.firstName());
+            writeString(dataOutputStream, playerRecord.lastName());
+            writeString(dataOutputStream, playerRecord.country());
+            dataOutputStream.writeInt(playerRecord.age());
+            dataOutputStream.writeLong(playerRecord.assetValue());
+            dataOutputStream.writeLong(playerRecord.transferValue());
+            writeUUID(dataOutputStream, playerRecord.teamId().getUUID());
+        }
+
+        dataOutputStream.flush();
+        byteArray = byteArrayOutputStream.toByteArray();
+
+        crc32 = new CRC32();
+        crc32.update(byteArray);
+
+        // Length and checksum ahead of each entry, to detect one torn by a crash
+        byteBuffer = ByteBuffer.allocate(ENTRY_HEADER + byteArray.length);
+        byteBuffer.putInt(byteArray.length);
+        byteBuffer.putInt((int) crc32.getValue());
+        byteBuffer.put(byteArray);
+        byteBuffer.flip();
+
+        return byteBuffer;
+    }
+
+    private static StoreBatch decode(byte[] byteArray) throws IOException {
+
+        DataInputStream dataInputStream;
+        int count;
+        List<TeamRecord> teamRecordList;
+        List<PlayerRecord> playerRecordList;
+
+        dataInputStream = new DataInputStream(new ByteArrayInputStream(byteArray));
+
+        count = dataInputStream.readInt();
+        teamRecordList = new ArrayList<TeamRecord>(count);
+        for (int index = 0; index < count; index++) {
+            teamRecordList.add(new TeamRecord(readString(dataInputStream),
+                                              new TeamId(readUUID(dataInputStream)),
+                                              readString(dataInputStream),
+                                              readString(dataInputStream),
+                                              dataInputStream.readLong()));
+        }
+
+        count = dataInputStream.readInt();
+        playerRecordList = new ArrayList<PlayerRecord>(count);
+        for (int index = 0; index < count; index++) {
+            playerRecordList.add(new PlayerRecord(new PlayerId(readUUID(dataInputStream)),
+                                                  PlayerTypeArray[dataInputStream.readByte()],
+                                                  readString(dataInputStream),
+                                                  readString(dataInputStream),
+                                                  readString(dataInputStream),
+                                                  dataInputStream.readInt(),
+                                                  dataInputStream.readLong(),
+                                                  dataInputStream.readLong(),
+                                                  new TeamId(readUUID(dataInputStream))));
+        }
+
+        return new StoreBatch(teamRecordList, playerRecordList);
+    }
+
+    @Override
+    public String toString() {
+        return "StoreJournal [_folder=" + _folder
+               + ", _segmentIndex="
+               + _segmentIndex
+               + ", pending="
+               + _pendingQueue.size()
+               + ", _appendCount="
+               + _appendCount
+               + ", _commitCount="
+               + _commitCount
+               + ", _replayCount="
+               + _replayCount
+               + ", _failureCount="
+               + _failureCount
+               + "]";
+    }
+
+    private static class JournalEntry {
+
+        private final ByteBuffer                            _byteBuffer;
+        private final CompletableFuture<RestOutput<Result>> _future;
+
+        // Taken once, either by the commit loop to write the entry, or by its append to cancel it
+        private final AtomicBoolean                         _claimed;
+
+        private JournalEntry(ByteBuffer byteBuffer) {
+
+            _byteBuffer = byteBuffer;
+            _future = new CompletableFuture<RestOutput<Result>>();
+            _claimed = new AtomicBoolean(false);
+        }
+
+        private boolean claim() {
+            return _claimed.compareAndSet(false, true);
+        }
+
+        private ByteBuffer byteBuffer() {
+            return _byteBuffer;
+        }
+
+        private CompletableFuture<RestOutput<Result>> future() {
+            return _future;
+        }
+    }
+}
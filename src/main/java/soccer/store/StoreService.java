@@ -1,34 +1,61 @@
 package soccer.store;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
 
 import soccer.Setup;
 import soccer.base.Api;
 import soccer.base.RestOutput;
 import soccer.base.Result;
+import soccer.model.PlayerId;
+import soccer.model.TeamId;
 import soccer.store.player.PlayerCollection;
 import soccer.store.player.PlayerRecord;
 import soccer.store.team.TeamCollection;
 import soccer.store.team.TeamRecord;
+import soccer.store.token.RevokedTokenCollection;
+import soccer.store.token.RevokedTokenRecord;
 import soccer.store.user.UserCollection;
 import soccer.store.user.UserRecord;
 
 public class StoreService {
 
-    private final URI              _databaseURI;
-    private final String           _storeUser;
-    private final String           _storePassword;
-    private final String           _databaseUrl;
-    private final String           _databaseId;
+    private final URI                                      _databaseURI;
+    private final String                                   _storeUser;
+    private final String                                   _storePassword;
+    private final String                                   _databaseUrl;
+    private final String                                   _databaseId;
 
-    private final UserCollection   _userCollection;
-    private final TeamCollection   _teamCollection;
-    private final PlayerCollection _playerCollection;
+    private final ConnectionPool                           _connectionPool;
+    private final int                                      _fetchSize;
+
+    private final boolean                                  _writeBehind;
+    private final Duration                                 _flushPeriod;
+    private final WriteBehindQueue<TeamId, TeamRecord>     _teamQueue;
+    private final WriteBehindQueue<PlayerId, PlayerRecord> _playerQueue;
+    private final ReentrantLock                            _flushLock;
+    private final AtomicBoolean                            _stopped;
+
+    // Present when team and player updates are journaled, then written behind
+    private final Optional<StoreJournal>                   _journalOptional;
+
+    private final UserCollection                           _userCollection;
+    private final TeamCollection                           _teamCollection;
+    private final PlayerCollection                         _playerCollection;
+    private final RevokedTokenCollection                   _revokedTokenCollection;
 
     public StoreService(URI databaseURI) {
 
@@ -41,14 +68,46 @@ public class StoreService {
                        + ':'
                        + databaseURI().getPort()
                        + databaseURI().getPath()
-                       + "?sslmode=require";
+                       + "?sslmode=require"
+                       // Use server side prepared statements from the first execution
+                       + "&prepareThreshold=1"
+                       // Send JDBC batches of inserts as multi-row statements
+                       + "&reWriteBatchedInserts=true";
 
         String path = databaseURI().getPath();
         _databaseId = path.substring(path.lastIndexOf("/") + 1);
 
+        _connectionPool = new ConnectionPool(databaseUrl(),
+                                             storeUser(),
+                                             storePassword(),
+                                             Api.integerProperty(Setup.STORE_POOL_SIZE_PROPERTY,
+                                                                 Setup.DEFAULT_STORE_POOL_SIZE));
+
+        _fetchSize = Api.integerProperty(Setup.STORE_FETCH_SIZE_PROPERTY, Setup.DEFAULT_STORE_FETCH_SIZE);
+
         _userCollection = new UserCollection(this);
         _teamCollection = new TeamCollection(this);
         _playerCollection = new PlayerCollection(this);
+        _revokedTokenCollection = new RevokedTokenCollection(this);
+
+        _journalOptional = Optional.ofNullable(System.getProperty(Setup.STORE_JOURNAL_PATH_PROPERTY))
+                                   .map(journalPath -> new StoreJournal(Path.of(journalPath)));
+
+        // Team and player updates are written synchronously unless write behind is enabled, or implied by the journal
+        _writeBehind = Boolean.getBoolean(Setup.STORE_WRITE_BEHIND_PROPERTY) || _journalOptional.isPresent();
+        _flushPeriod = Api.durationProperty(Setup.STORE_FLUSH_PERIOD_PROPERTY, Setup.DEFAULT_STORE_FLUSH_PERIOD);
+        _teamQueue = new WriteBehindQueue<TeamId, TeamRecord>("team",
+                                                              TeamRecord::teamId,
+                                                              teamCollection()::storeTeamRecords,
+                                                              Api.integerProperty(Setup.STORE_QUEUE_DEPTH_PROPERTY,
+                                                                                  Setup.DEFAULT_STORE_QUEUE_DEPTH));
+        _playerQueue = new WriteBehindQueue<PlayerId, PlayerRecord>("player",
+                                                                    PlayerRecord::playerId,
+                                                                    playerCollection()::storePlayerRecords,
+                                                                    Api.integerProperty(Setup.STORE_QUEUE_DEPTH_PROPERTY,
+                                                                                        Setup.DEFAULT_STORE_QUEUE_DEPTH));
+        _flushLock = new ReentrantLock();
+        _stopped = new AtomicBoolean(false);
     }
 
     public URI databaseURI() {
@@ -71,6 +130,19 @@ public class StoreService {
         return _databaseId;
     }
 
+    public ConnectionPool connectionPool() {
+        return _connectionPool;
+    }
+
+    int fetchSize() {
+        return _fetchSize;
+    }
+
+    Connection connection() throws SQLException {
+
+        return connectionPool().borrow();
+    }
+
     private UserCollection userCollection() {
         return _userCollection;
     }
@@ -83,6 +155,76 @@ public class StoreService {
         return _playerCollection;
     }
 
+    private RevokedTokenCollection revokedTokenCollection() {
+        return _revokedTokenCollection;
+    }
+
+    private boolean writeBehind() {
+        return _writeBehind;
+    }
+
+    private WriteBehindQueue<TeamId, TeamRecord> teamQueue() {
+        return _teamQueue;
+    }
+
+    private WriteBehindQueue<PlayerId, PlayerRecord> playerQueue() {
+        return _playerQueue;
+    }
+
+    private Optional<StoreJournal> journalOptional() {
+        return _journalOptional;
+    }
+
+    public RestOutput<Result> flush() {
+
+        RestOutput<Result> resultOutput;
+
+        if (writeBehind() == false) {
+            return RestOutput.OK;
+        }
+
+        try {
+            _flushLock.lock();
+
+            // Flush the teams first, then their players
+            resultOutput = teamQueue().flush();
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("flush of teamQueue is NOT OK", resultOutput, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            resultOutput = playerQueue().flush();
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("flush of playerQueue is NOT OK", resultOutput, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            return RestOutput.OK;
+
+        } finally {
+            _flushLock.unlock();
+        }
+    }
+
+    private void flushPeriodically() {
+
+        if (_stopped.get()) {
+            return;
+        }
+
+        // Failed writes remain queued and are retried on the next period
+        // Once large enough, the journal moves to a new segment and drops the previous ones as they are flushed
+        if (journalOptional().isPresent() && (journalOptional().get().size() >= Setup.STORE_JOURNAL_SEGMENT_SIZE)) {
+            journalOptional().get().checkpoint(this::flush);
+        } else {
+            flush();
+        }
+
+        // Reschedule the flush later on
+        CompletableFuture.runAsync(this::flushPeriodically,
+                                   CompletableFuture.delayedExecutor(_flushPeriod.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
     private RestOutput<Result> createDatabase() {
 
         String storeUrl;
@@ -123,7 +265,7 @@ public class StoreService {
         String storeUrl;
         String updateSQL;
 
-        if (databaseId().startsWith(Setup.DATABASE_PREFIX) == false) {
+        if (isTemporary() == false) {
             // Database can not be dropped
             return RestOutput.OK;
         }
@@ -167,6 +309,13 @@ public class StoreService {
             return RestOutput.of(resultOutput);
         }
 
+        // Start the pool of connections to the database
+        resultOutput = connectionPool().start();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Start ConnectionPool is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
         // Initialize the User Collection
         resultOutput = userCollection().initCollection();
         if (RestOutput.isNOK(resultOutput)) {
@@ -188,45 +337,274 @@ public class StoreService {
             return RestOutput.of(resultOutput);
         }
 
+        // Initialize the RevokedToken Collection
+        resultOutput = revokedTokenCollection().initCollection();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Init RevokedTokenCollection is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        // Write again the updates journaled before a crash, then journal the next ones
+        if (journalOptional().isPresent()) {
+            resultOutput = journalOptional().get().start(this::writeBatch);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Start StoreJournal is NOT OK", resultOutput, this);
+                return RestOutput.of(resultOutput);
+            }
+        }
+
+        if (writeBehind()) {
+            // Write the queued updates in the background
+            flushPeriodically();
+        }
+
         return RestOutput.OK;
     }
 
     public RestOutput<Result> stop(boolean dropDatabase) {
 
+        RestOutput<Result> resultOutput;
+
+        // Stop the background flush. Pending updates are expected to be flushed beforehand
+        _stopped.set(true);
+        if ((teamQueue().depth() > 0) || (playerQueue().depth() > 0)) {
+            Api.error("StoreService stopped with pending updates", teamQueue(), playerQueue(), this);
+        }
+
+        // The journal is kept for the next start while updates are pending
+        if (journalOptional().isPresent()) {
+            resultOutput = journalOptional().get().stop((teamQueue().depth() == 0) && (playerQueue().depth() == 0));
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Stop StoreJournal is NOT OK", resultOutput, this);
+            }
+        }
+
+        // Close all pooled connections first as the database can not be dropped while in use
+        resultOutput = connectionPool().close();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("Close ConnectionPool is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
         if (dropDatabase) {
             return dropDatabase();
         }
         return RestOutput.OK;
     }
 
+    public boolean isTemporary() {
+
+        // Such a database is dropped when the service stops
+        return databaseId().startsWith(Setup.DATABASE_PREFIX);
+    }
+
+    public RestOutput<Long> changeSequence() {
+
+        String querySQL;
+
+        // Last value stamped on a row, or 0 before the first one
+        querySQL = "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM " + Collection.CHANGE_SEQUENCE + ";";
+
+        try (Connection connection = connection(); Statement statement = connection.createStatement()) {
+
+            try (ResultSet resultSet = statement.executeQuery(querySQL)) {
+
+                if (resultSet.next() == false) {
+                    Api.error("Change sequence not found. INTERNAL FAILURE", this);
+                    return RestOutput.internalFailure();
+                }
+
+                return RestOutput.ok(resultSet.getLong(1));
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to read the change sequence. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+        }
+    }
+
     public RestOutput<Result> storeUserRecord(UserRecord userRecord) {
 
         return userCollection().storeUserRecord(userRecord);
     }
 
-    public RestOutput<List<UserRecord>> loadUserRecords() {
+    public RestOutput<Result> loadUserRecords(Consumer<UserRecord> userRecordConsumer) {
+
+        return userCollection().loadUserRecords(userRecordConsumer);
+    }
+
+    public RestOutput<Result> loadUserRecords(long changeSequence, Consumer<UserRecord> userRecordConsumer) {
 
-        return userCollection().loadUserRecords();
+        return userCollection().loadUserRecords(changeSequence, userRecordConsumer);
     }
 
     public RestOutput<Result> storeTeamRecord(TeamRecord teamRecord) {
 
+        if (journalOptional().isPresent()) {
+            return journalBatch(new StoreBatch(List.of(teamRecord), List.of()));
+        }
+        if (writeBehind()) {
+            return teamQueue().enqueue(teamRecord);
+        }
         return teamCollection().storeTeamRecord(teamRecord);
     }
 
-    public RestOutput<List<TeamRecord>> loadTeamRecords() {
+    public RestOutput<Result> loadTeamRecords(Consumer<TeamRecord> teamRecordConsumer) {
+
+        return teamCollection().loadTeamRecords(teamRecordConsumer);
+    }
+
+    public RestOutput<Result> loadTeamRecords(long changeSequence, Consumer<TeamRecord> teamRecordConsumer) {
 
-        return teamCollection().loadTeamRecords();
+        return teamCollection().loadTeamRecords(changeSequence, teamRecordConsumer);
     }
 
     public RestOutput<Result> storePlayerRecord(PlayerRecord playerRecord) {
 
+        if (journalOptional().isPresent()) {
+            return journalBatch(new StoreBatch(List.of(), List.of(playerRecord)));
+        }
+        if (writeBehind()) {
+            return playerQueue().enqueue(playerRecord);
+        }
         return playerCollection().storePlayerRecord(playerRecord);
     }
 
-    public RestOutput<List<PlayerRecord>> loadPlayerRecords() {
+    private RestOutput<Result> writeBatch(StoreBatch storeBatch) {
+
+        RestOutput<Result> resultOutput;
+
+        // A transaction left open on failure is rolled back when the connection returns to the pool
+        try (Connection connection = connection()) {
+
+            // Write all records within a single transaction
+            connection.setAutoCommit(false);
+
+            resultOutput = teamCollection().writeRecords(connection, storeBatch.teamRecordList());
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("writeRecords of teams is NOT OK", resultOutput, storeBatch, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            resultOutput = playerCollection().writeRecords(connection, storeBatch.playerRecordList());
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("writeRecords of players is NOT OK", resultOutput, storeBatch, this);
+                return RestOutput.of(resultOutput);
+            }
+
+            connection.commit();
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to writeBatch. INTERNAL FAILURE", storeBatch, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    private RestOutput<Result> handOverBatch(StoreBatch storeBatch) {
+
+        // Never fails, as the room of all records was reserved before the batch was journaled
+        storeBatch.teamRecordList().forEach(teamQueue()::enqueueReserved);
+        storeBatch.playerRecordList().forEach(playerQueue()::enqueueReserved);
+
+        return RestOutput.OK;
+    }
+
+    private RestOutput<Result> journalBatch(StoreBatch storeBatch) {
+
+        int teamCount;
+        int playerCount;
+        RestOutput<Result> resultOutput;
+
+        teamCount = storeBatch.teamRecordList().size();
+        playerCount = storeBatch.playerRecordList().size();
+
+        // A journaled batch is acknowledged, so its records must be enqueued once journaled, whatever the queues
+        resultOutput = teamQueue().reserve(teamCount);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("reserve of teamQueue is NOT OK", resultOutput, storeBatch, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        resultOutput = playerQueue().reserve(playerCount);
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("reserve of playerQueue is NOT OK", resultOutput, storeBatch, this);
+            teamQueue().cancel(teamCount);
+            return RestOutput.of(resultOutput);
+        }
+
+        resultOutput = journalOptional().get().append(storeBatch, () -> handOverBatch(storeBatch));
+        if (RestOutput.isNOK(resultOutput)) {
+            // Not journaled, so the reserved room is not used
+            teamQueue().cancel(teamCount);
+            playerQueue().cancel(playerCount);
+            return RestOutput.of(resultOutput);
+        }
+
+        return RestOutput.OK;
+    }
+
+    public RestOutput<Result> storeBatch(StoreBatch storeBatch) {
+
+        RestOutput<Result> resultOutput;
+
+        if (Api.isNull(storeBatch) || Api.isNull(storeBatch.teamRecordList(), storeBatch.playerRecordList())) {
+            return RestOutput.badRequest();
+        }
+
+        if (writeBehind() == false) {
+            return writeBatch(storeBatch);
+        }
+
+        // Acknowledged once journaled, as the journal restores the whole batch after a crash
+        if (journalOptional().isPresent()) {
+            return journalBatch(storeBatch);
+        }
+
+        // A batch is always written synchronously to keep it atomic.
+        // Pending records of the same keys are older, so they are dropped instead of being flushed later on.
+        // Only once written, as they are still the latest acknowledged records when the batch fails
+        try {
+            _flushLock.lock();
+
+            resultOutput = writeBatch(storeBatch);
+            if (RestOutput.isNOK(resultOutput)) {
+                return resultOutput;
+            }
+
+            storeBatch.teamRecordList().forEach(teamQueue()::discard);
+            storeBatch.playerRecordList().forEach(playerQueue()::discard);
+
+            return resultOutput;
+
+        } finally {
+            _flushLock.unlock();
+        }
+    }
+
+    public RestOutput<Result> loadPlayerRecords(Consumer<PlayerRecord> playerRecordConsumer) {
+
+        return playerCollection().loadPlayerRecords(playerRecordConsumer);
+    }
+
+    public RestOutput<Result> loadPlayerRecords(long changeSequence, Consumer<PlayerRecord> playerRecordConsumer) {
+
+        return playerCollection().loadPlayerRecords(changeSequence, playerRecordConsumer);
+    }
+
+    public RestOutput<Result> storeRevokedTokenRecord(RevokedTokenRecord revokedTokenRecord) {
+
+        return revokedTokenCollection().storeRevokedTokenRecord(revokedTokenRecord);
+    }
+
+    public RestOutput<Result> loadRevokedTokenRecords(Consumer<RevokedTokenRecord> revokedTokenRecordConsumer) {
+
+        return revokedTokenCollection().loadRevokedTokenRecords(revokedTokenRecordConsumer);
+    }
+
+    public RestOutput<Result> deleteRevokedTokenRecords(long expiryMillis) {
 
-        return playerCollection().loadPlayerRecords();
+        return revokedTokenCollection().deleteRevokedTokenRecords(expiryMillis);
     }
 
     @Override
@@ -240,12 +618,24 @@ public class StoreService {
                + _databaseUrl
                + ", _databaseId="
                + _databaseId
+               + ", _connectionPool="
+               + _connectionPool
+               + ", _writeBehind="
+               + _writeBehind
+               + ", _teamQueue="
+               + _teamQueue
+               + ", _playerQueue="
+               + _playerQueue
+               + ", _journalOptional="
+               + _journalOptional
                + ", _userCollection="
                + _userCollection
                + ", _teamCollection="
                + _teamCollection
                + ", _playerCollection="
                + _playerCollection
+               + ", _revokedTokenCollection="
+               + _revokedTokenCollection
                + "]";
     }
 }
@@ -0,0 +1,210 @@
+package soccer.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+
+class WriteBehindQueue<T_Key, T_Record> {
+
+    private final String                                       _name;
+    private final Function<T_Record, T_Key>                    _keyFunction;
+    private final Function<List<T_Record>, RestOutput<Result>> _writeFunction;
+
+    private final ConcurrentHashMap<T_Key, T_Record>           _pendingMap;
+    private final Semaphore                                    _permits;
+
+    private final AtomicLong                                   _enqueueCount;
+    private final AtomicLong                                   _coalesceCount;
+    private final AtomicLong                                   _rejectCount;
+    private final AtomicLong                                   _writeCount;
+
+    WriteBehindQueue(String name,
+                     Function<T_Record, T_Key> keyFunction,
+                     Function<List<T_Record>, RestOutput<Result>> writeFunction,
+                     int maxDepth) {
+
+        _name = name;
+        _keyFunction = keyFunction;
+        _writeFunction = writeFunction;
+
+        // Only the latest record of each key is kept until written
+        _pendingMap = new ConcurrentHashMap<T_Key, T_Record>();
+        _permits = new Semaphore(maxDepth);
+
+        _enqueueCount = new AtomicLong(0);
+        _coalesceCount = new AtomicLong(0);
+        _rejectCount = new AtomicLong(0);
+        _writeCount = new AtomicLong(0);
+    }
+
+    int depth() {
+
+        return _pendingMap.size();
+    }
+
+    RestOutput<Result> enqueue(T_Record record) {
+
+        T_Key key;
+
+        if (Api.isNull(record)) {
+            return RestOutput.badRequest();
+        }
+
+        key = _keyFunction.apply(record);
+
+        _enqueueCount.incrementAndGet();
+
+        while (true) {
+
+            // Replace the pending record of this key if any
+            if (_pendingMap.replace(key, record) != null) {
+                _coalesceCount.incrementAndGet();
+                return RestOutput.OK;
+            }
+
+            // A new key needs room in the queue. Wait for the flusher otherwise
+            try {
+                if (_permits.tryAcquire(Setup.STORE_ENQUEUE_TIME_OUT.toNanos(), TimeUnit.NANOSECONDS) == false) {
+                    _rejectCount.incrementAndGet();
+                    Api.error("WriteBehindQueue is full. NOT AVAILABLE", record, this);
+                    return RestOutput.notAvailable();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Api.error("Interrupted while waiting to enqueue. NOT AVAILABLE", record, this);
+                return RestOutput.notAvailable();
+            }
+
+            if (_pendingMap.putIfAbsent(key, record) == null) {
+                return RestOutput.OK;
+            }
+
+            // Another record of this key was added meanwhile. Coalesce with it instead
+            _permits.release();
+        }
+    }
+
+    RestOutput<Result> reserve(int count) {
+
+        // Room taken ahead, for records that must then be enqueued without waiting nor failing
+        try {
+            if (_permits.tryAcquire(count, Setup.STORE_ENQUEUE_TIME_OUT.toNanos(), TimeUnit.NANOSECONDS) == false) {
+                _rejectCount.incrementAndGet();
+                Api.error("WriteBehindQueue is full to reserve. NOT AVAILABLE", count, this);
+                return RestOutput.notAvailable();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Api.error("Interrupted while waiting to reserve. NOT AVAILABLE", count, this);
+            return RestOutput.notAvailable();
+        }
+
+        return RestOutput.OK;
+    }
+
+    void cancel(int count) {
+
+        // Reserved room not used by any record
+        _permits.release(count);
+    }
+
+    void enqueueReserved(T_Record record) {
+
+        T_Key key;
+
+        key = _keyFunction.apply(record);
+
+        _enqueueCount.incrementAndGet();
+
+        while (true) {
+
+            // Replace the pending record of this key if any, so the reserved room is not needed
+            if (_pendingMap.replace(key, record) != null) {
+                _coalesceCount.incrementAndGet();
+                _permits.release();
+                return;
+            }
+
+            if (_pendingMap.putIfAbsent(key, record) == null) {
+                return;
+            }
+        }
+    }
+
+    void discard(T_Record record) {
+
+        // Drop any pending record of the same key, as this record is written by the caller
+        if (_pendingMap.remove(_keyFunction.apply(record)) != null) {
+            _permits.release();
+        }
+    }
+
+    RestOutput<Result> flush() {
+
+        List<T_Key> keyList;
+        int end;
+        List<T_Record> recordList;
+        T_Record record;
+        RestOutput<Result> resultOutput;
+
+        // Only write the keys pending right now, later ones are left to the next flush
+        // Flushes are serialized by the StoreService
+        keyList = new ArrayList<T_Key>(_pendingMap.keySet());
+
+        for (int start = 0; start < keyList.size(); start += Setup.STORE_FLUSH_BATCH_SIZE) {
+
+            end = Math.min(keyList.size(), start + Setup.STORE_FLUSH_BATCH_SIZE);
+            recordList = new ArrayList<T_Record>(end - start);
+
+            for (T_Key key : keyList.subList(start, end)) {
+                record = _pendingMap.get(key);
+                if (record != null) {
+                    recordList.add(record);
+                }
+            }
+
+            // Records stay pending when the write fails, so they are retried on the next flush
+            resultOutput = _writeFunction.apply(recordList);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Write of pending records is NOT OK", resultOutput, recordList.size(), this);
+                return RestOutput.of(resultOutput);
+            }
+
+            _writeCount.addAndGet(recordList.size());
+
+            // A record replaced during the write remains pending
+            for (T_Record writtenRecord : recordList) {
+                if (_pendingMap.remove(_keyFunction.apply(writtenRecord), writtenRecord)) {
+                    _permits.release();
+                }
+            }
+        }
+
+        return RestOutput.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindQueue [_name=" + _name
+               + ", depth="
+               + depth()
+               + ", _enqueueCount="
+               + _enqueueCount
+               + ", _coalesceCount="
+               + _coalesceCount
+               + ", _rejectCount="
+               + _rejectCount
+               + ", _writeCount="
+               + _writeCount
+               + "]";
+    }
+}
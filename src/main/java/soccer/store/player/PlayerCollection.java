@@ -3,7 +3,7 @@ package soccer.store.player;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.UUID;
 
 import soccer.base.Api;
@@ -31,6 +31,8 @@ public class PlayerCollection extends Collection<PlayerRecord> {
 
     private static final String   TEAM_ID               = "team_id";
 
+    private static final String   PLAYER_TYPE_ENUM      = "player_type_enum";
+
     private static final String[] FieldArray            = new String[] { PLAYER_ID,
                                                                          PLAYER_TYPE,
                                                                          PLAYER_FIRST_NAME,
@@ -52,16 +54,55 @@ public class PlayerCollection extends Collection<PlayerRecord> {
     }
 
     @Override
-    protected Map<String, String> updateFields(PlayerRecord record) {
-
-        return Map.of(PLAYER_FIRST_NAME,
-                      record.firstName(),
-                      PLAYER_LAST_NAME,
-                      record.lastName(),
-                      PLAYER_COUNTRY,
-                      record.country(),
-                      TEAM_ID,
-                      record.teamId().toText());
+    protected String[] updateFields() {
+
+        return new String[] { PLAYER_FIRST_NAME,
+                              PLAYER_LAST_NAME,
+                              PLAYER_COUNTRY,
+                              PLAYER_AGE,
+                              PLAYER_ASSET_VALUE,
+                              PLAYER_TRANSFER_VALUE,
+                              TEAM_ID };
+    }
+
+    @Override
+    protected List<String> migrations() {
+
+        return List.of(// 1. Typed columns instead of text
+                       join("ALTER TABLE ",
+                            COLLECTION,
+                            " ",
+                            joinComma(alterTypeEntry(PLAYER_ID, "uuid"),
+                                      alterTypeEntry(PLAYER_TYPE, PLAYER_TYPE_ENUM),
+                                      alterTypeEntry(PLAYER_AGE, "integer"),
+                                      alterTypeEntry(PLAYER_ASSET_VALUE, "bigint"),
+                                      alterTypeEntry(PLAYER_TRANSFER_VALUE, "bigint"),
+                                      alterTypeEntry(TEAM_ID, "uuid")),
+                            ";"),
+                       // 2. Players of a team
+                       join("CREATE INDEX IF NOT EXISTS ",
+                            COLLECTION,
+                            "_",
+                            TEAM_ID,
+                            " ON ",
+                            COLLECTION,
+                            " (",
+                            TEAM_ID,
+                            ");"),
+                       // 3. Players in the market only
+                       join("CREATE INDEX IF NOT EXISTS ",
+                            COLLECTION,
+                            "_market ON ",
+                            COLLECTION,
+                            " (",
+                            PLAYER_TRANSFER_VALUE,
+                            ") WHERE ",
+                            PLAYER_TRANSFER_VALUE,
+                            " > 0;"),
+                       // 4. The market is served from memory
+                       join("DROP INDEX IF EXISTS ", COLLECTION, "_market;"),
+                       // 5. Players changed since a snapshot
+                       changeSequenceMigration());
     }
 
     @Override
@@ -81,7 +122,7 @@ public class PlayerCollection extends Collection<PlayerRecord> {
             return null;
         }
 
-        playerId = new PlayerId(UUID.fromString(resultSet.getString(1)));
+        playerId = new PlayerId(resultSet.getObject(1, UUID.class));
 
         type = PlayerType.valueOf(resultSet.getString(2));
         firstName = resultSet.getString(3);
@@ -91,40 +132,49 @@ public class PlayerCollection extends Collection<PlayerRecord> {
         assetValue = resultSet.getLong(7);
         transferValue = resultSet.getLong(8);
 
-        teamId = new TeamId(UUID.fromString(resultSet.getString(9)));
+        teamId = new TeamId(resultSet.getObject(9, UUID.class));
 
         return new PlayerRecord(playerId, type, firstName, lastName, country, age, assetValue, transferValue, teamId);
     }
 
     @Override
-    protected String[] from(PlayerRecord playerRecord) {
+    protected Object[] from(PlayerRecord playerRecord) {
 
         if (Api.isNull(playerRecord)) {
             return null;
         }
 
-        return new String[] { playerRecord.playerId().toText(),
-                              playerRecord.playerType().toString(),
+        return new Object[] { playerRecord.playerId().getUUID(),
+                              playerRecord.playerType(),
                               playerRecord.firstName(),
                               playerRecord.lastName(),
                               playerRecord.country(),
-                              playerRecord.age().toString(),
-                              playerRecord.assetValue().toString(),
-                              playerRecord.transferValue().toString(),
-                              playerRecord.teamId().toText() };
+                              playerRecord.age(),
+                              playerRecord.assetValue(),
+                              playerRecord.transferValue(),
+                              playerRecord.teamId().getUUID() };
     }
 
     public RestOutput<Result> initCollection() {
 
-        return init(textEntry(PLAYER_ID),
-                    textEntry(PLAYER_TYPE),
+        RestOutput<Result> resultOutput;
+
+        // The type of players is needed by the table
+        resultOutput = createEnum(PLAYER_TYPE_ENUM, PlayerType.values());
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("createEnum to initCollection is NOT OK", resultOutput, this);
+            return RestOutput.of(resultOutput);
+        }
+
+        return init(uuidEntry(PLAYER_ID),
+                    enumEntry(PLAYER_TYPE, PLAYER_TYPE_ENUM),
                     textEntry(PLAYER_FIRST_NAME),
                     textEntry(PLAYER_LAST_NAME),
                     textEntry(PLAYER_COUNTRY),
-                    textEntry(PLAYER_AGE),
-                    textEntry(PLAYER_ASSET_VALUE),
-                    textEntry(PLAYER_TRANSFER_VALUE),
-                    textEntry(TEAM_ID),
+                    integerEntry(PLAYER_AGE),
+                    bigintEntry(PLAYER_ASSET_VALUE),
+                    bigintEntry(PLAYER_TRANSFER_VALUE),
+                    uuidEntry(TEAM_ID),
                     primaryKeyEntry(PLAYER_ID));
     }
 
@@ -133,8 +183,19 @@ public class PlayerCollection extends Collection<PlayerRecord> {
         return storeRecord(playerRecord);
     }
 
-    public RestOutput<List<PlayerRecord>> loadPlayerRecords() {
+    public RestOutput<Result> storePlayerRecords(List<PlayerRecord> playerRecordList) {
+
+        return storeRecords(playerRecordList);
+    }
+
+    public RestOutput<Result> loadPlayerRecords(Consumer<PlayerRecord> playerRecordConsumer) {
+
+        // Sorted by team so that the players of a team are read together
+        return loadRecords(TEAM_ID, playerRecordConsumer);
+    }
+
+    public RestOutput<Result> loadPlayerRecords(long changeSequence, Consumer<PlayerRecord> playerRecordConsumer) {
 
-        return loadRecords();
+        return loadRecords(null, changeSequence, playerRecordConsumer);
     }
 }
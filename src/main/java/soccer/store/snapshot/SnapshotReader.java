@@ -0,0 +1,226 @@
+package soccer.store.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+import soccer.store.user.UserRecord;
+
+public class SnapshotReader {
+
+    private final static PlayerType[] PlayerTypeArray = PlayerType.values();
+
+    private final Path                _path;
+
+    // Mapped off heap, released along with this reader
+    private final MappedByteBuffer    _mappedBuffer;
+
+    private final long                _changeSequence;
+    private final long                _createdMillis;
+    private final String              _databaseId;
+    private final int                 _bodyPosition;
+
+    private SnapshotReader(Path path,
+                           MappedByteBuffer mappedBuffer,
+                           long changeSequence,
+                           long createdMillis,
+                           String databaseId,
+                           int bodyPosition) {
+
+        _path = path;
+        _mappedBuffer = mappedBuffer;
+
+        _changeSequence = changeSequence;
+        _createdMillis = createdMillis;
+        _databaseId = databaseId;
+        _bodyPosition = bodyPosition;
+    }
+
+    public long changeSequence() {
+
+        return _changeSequence;
+    }
+
+    public long createdMillis() {
+
+        return _createdMillis;
+    }
+
+    public String databaseId() {
+
+        return _databaseId;
+    }
+
+    private static UUID getUUID(ByteBuffer buffer) {
+
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static String getString(ByteBuffer buffer) {
+
+        int length;
+        byte[] byteArray;
+
+        length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byteArray = new byte[length];
+        buffer.get(byteArray);
+
+        return new String(byteArray, StandardCharsets.UTF_8);
+    }
+
+    public RestOutput<Result> read(Consumer<UserRecord> userRecordConsumer,
+                                   Consumer<TeamRecord> teamRecordConsumer,
+                                   Consumer<PlayerRecord> playerRecordConsumer) {
+
+        ByteBuffer buffer;
+        long recordCount;
+        byte recordType;
+
+        if (Api.isNull(userRecordConsumer, teamRecordConsumer, playerRecordConsumer)) {
+            return RestOutput.badRequest();
+        }
+
+        // Each read goes through its own view of the mapped file
+        buffer = _mappedBuffer.duplicate();
+        buffer.position(_bodyPosition);
+
+        recordCount = 0;
+
+        try {
+            while ((recordType = buffer.get()) != SnapshotWriter.END_RECORD) {
+
+                switch (recordType) {
+                    case SnapshotWriter.USER_RECORD:
+                        userRecordConsumer.accept(new UserRecord(getString(buffer), getString(buffer)));
+                        break;
+                    case SnapshotWriter.TEAM_RECORD:
+                        teamRecordConsumer.accept(new TeamRecord(getString(buffer),
+                                                                 new TeamId(getUUID(buffer)),
+                                                                 getString(buffer),
+                                                                 getString(buffer),
+                                                                 buffer.getLong()));
+                        break;
+                    case SnapshotWriter.PLAYER_RECORD:
+                        playerRecordConsumer.accept(new PlayerRecord(new PlayerId(getUUID(buffer)),
+                                                                     PlayerTypeArray[buffer.get()],
+                                                                     getString(buffer),
+                                                                     getString(buffer),
+                                                                     getString(buffer),
+                                                                     buffer.getInt(),
+                                                                     buffer.getLong(),
+                                                                     buffer.getLong(),
+                                                                     new TeamId(getUUID(buffer))));
+                        break;
+                    default:
+                        Api.error("Unknown record in snapshot. INTERNAL FAILURE", recordType, recordCount, this);
+                        return RestOutput.internalFailure();
+                }
+
+                recordCount++;
+            }
+
+            if (buffer.getLong() != recordCount) {
+                Api.error("Records missing in snapshot. INTERNAL FAILURE", recordCount, this);
+                return RestOutput.internalFailure();
+            }
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to read snapshot. INTERNAL FAILURE", recordCount, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotReader [_path=" + _path
+               + ", _changeSequence="
+               + _changeSequence
+               + ", _createdMillis="
+               + _createdMillis
+               + ", _databaseId="
+               + _databaseId
+               + "]";
+    }
+
+    static RestOutput<SnapshotReader> open(Path path) {
+
+        long size;
+        MappedByteBuffer mappedBuffer;
+        CRC32 crc32;
+        int checksum;
+
+        if (Api.isNull(path)) {
+            return RestOutput.badRequest();
+        }
+
+        if (Files.isRegularFile(path) == false) {
+            return RestOutput.notFound();
+        }
+
+        // The mapping remains valid once the channel is closed
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            size = fileChannel.size();
+            if ((size < Integer.BYTES) || (size > Integer.MAX_VALUE)) {
+                Api.error("Snapshot size can not be mapped. BAD REQUEST", size, path);
+                return RestOutput.badRequest();
+            }
+
+            mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to map snapshot. INTERNAL FAILURE", path);
+            return RestOutput.internalFailure();
+        }
+
+        try {
+            // A snapshot partially written or damaged is rejected as a whole
+            checksum = mappedBuffer.getInt((int) size - Integer.BYTES);
+
+            crc32 = new CRC32();
+            crc32.update(mappedBuffer.duplicate().limit((int) size - Integer.BYTES));
+            if ((int) crc32.getValue() != checksum) {
+                Api.error("Snapshot checksum does not match. BAD REQUEST", path);
+                return RestOutput.badRequest();
+            }
+
+            if ((mappedBuffer.getInt() != SnapshotWriter.MAGIC)
+                || (mappedBuffer.getInt() != SnapshotWriter.FORMAT_VERSION)) {
+                Api.error("Snapshot format is not supported. BAD REQUEST", path);
+                return RestOutput.badRequest();
+            }
+
+            return RestOutput.ok(new SnapshotReader(path,
+                                                    mappedBuffer,
+                                                    mappedBuffer.getLong(),
+                                                    mappedBuffer.getLong(),
+                                                    getString(mappedBuffer),
+                                                    mappedBuffer.position()));
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to open snapshot. INTERNAL FAILURE", path);
+            return RestOutput.internalFailure();
+        }
+    }
+}
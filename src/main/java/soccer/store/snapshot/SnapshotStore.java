@@ -0,0 +1,213 @@
+package soccer.store.snapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.store.StoreService;
+
+public class SnapshotStore {
+
+    private final Path                                         _path;
+    private final Duration                                     _period;
+    private final StoreService                                 _storeService;
+
+    // Writes all users, teams and players into the snapshot
+    private final Function<SnapshotWriter, RestOutput<Result>> _contentFunction;
+
+    private final ReentrantLock                                _lock;
+    private final AtomicBoolean                                _stopped;
+
+    private final AtomicLong                                   _writeCount;
+    private final AtomicLong                                   _failureCount;
+    private volatile long                                      _changeSequence;
+    private volatile long                                      _size;
+
+    public SnapshotStore(Path path,
+                         StoreService storeService,
+                         Function<SnapshotWriter, RestOutput<Result>> contentFunction) {
+
+        _path = path;
+        _period = Api.durationProperty(Setup.SNAPSHOT_PERIOD_PROPERTY, Setup.DEFAULT_SNAPSHOT_PERIOD);
+        _storeService = storeService;
+
+        _contentFunction = contentFunction;
+
+        // Snapshots are written one at a time
+        _lock = new ReentrantLock();
+        _stopped = new AtomicBoolean(false);
+
+        _writeCount = new AtomicLong(0);
+        _failureCount = new AtomicLong(0);
+        _changeSequence = 0;
+        _size = 0;
+    }
+
+    private StoreService storeService() {
+
+        return _storeService;
+    }
+
+    public RestOutput<SnapshotReader> open() {
+
+        RestOutput<SnapshotReader> snapshotReaderOutput;
+        SnapshotReader snapshotReader;
+        RestOutput<Long> changeSequenceOutput;
+
+        snapshotReaderOutput = SnapshotReader.open(_path);
+        if (RestOutput.isNOK(snapshotReaderOutput)) {
+            return RestOutput.of(snapshotReaderOutput);
+        }
+        snapshotReader = snapshotReaderOutput.output();
+
+        // The snapshot must come from this database, and not from a previous one under the same name
+        if (snapshotReader.databaseId().equals(storeService().databaseId()) == false) {
+            Api.error("Snapshot of another database. BAD REQUEST", snapshotReader, this);
+            return RestOutput.badRequest();
+        }
+
+        changeSequenceOutput = storeService().changeSequence();
+        if (RestOutput.isNOK(changeSequenceOutput)) {
+            Api.error("changeSequence to open snapshot is NOT OK", changeSequenceOutput, this);
+            return RestOutput.of(changeSequenceOutput);
+        }
+
+        if (snapshotReader.changeSequence() > changeSequenceOutput.output()) {
+            Api.error("Snapshot is ahead of the database. BAD REQUEST", changeSequenceOutput, snapshotReader, this);
+            return RestOutput.badRequest();
+        }
+
+        return RestOutput.ok(snapshotReader);
+    }
+
+    public RestOutput<Result> write() {
+
+        long startNanos;
+        RestOutput<Long> changeSequenceOutput;
+        RestOutput<SnapshotWriter> snapshotWriterOutput;
+        SnapshotWriter snapshotWriter;
+        RestOutput<Result> resultOutput;
+        RestOutput<Long> sizeOutput;
+
+        try {
+            _lock.lock();
+
+            startNanos = System.nanoTime();
+
+            // Read before the content, so that any later change is replayed from the store on restart
+            changeSequenceOutput = storeService().changeSequence();
+            if (RestOutput.isNOK(changeSequenceOutput)) {
+                Api.error("changeSequence to write snapshot is NOT OK", changeSequenceOutput, this);
+                _failureCount.incrementAndGet();
+                return RestOutput.of(changeSequenceOutput);
+            }
+
+            snapshotWriterOutput = SnapshotWriter.open(_path,
+                                                       storeService().databaseId(),
+                                                       changeSequenceOutput.output());
+            if (RestOutput.isNOK(snapshotWriterOutput)) {
+                Api.error("SnapshotWriter to write snapshot is NOT OK", snapshotWriterOutput, this);
+                _failureCount.incrementAndGet();
+                return RestOutput.of(snapshotWriterOutput);
+            }
+            snapshotWriter = snapshotWriterOutput.output();
+
+            resultOutput = _contentFunction.apply(snapshotWriter);
+            if (RestOutput.isNOK(resultOutput)) {
+                Api.error("Content of snapshot is NOT OK", resultOutput, snapshotWriter, this);
+                snapshotWriter.abort();
+                _failureCount.incrementAndGet();
+                return RestOutput.of(resultOutput);
+            }
+
+            sizeOutput = snapshotWriter.commit();
+            if (RestOutput.isNOK(sizeOutput)) {
+                Api.error("commit of snapshot is NOT OK", sizeOutput, snapshotWriter, this);
+                _failureCount.incrementAndGet();
+                return RestOutput.of(sizeOutput);
+            }
+
+            _writeCount.incrementAndGet();
+            _changeSequence = changeSequenceOutput.output();
+            _size = sizeOutput.output();
+
+            Api.info("Snapshot written in " + Duration.ofNanos(System.nanoTime() - startNanos).toMillis() + " ms",
+                     this);
+
+            return RestOutput.OK;
+
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void writePeriodically() {
+
+        if (_stopped.get()) {
+            return;
+        }
+
+        // A failed snapshot is retried on the next period
+        write();
+
+        // Reschedule the snapshot later on
+        CompletableFuture.runAsync(this::writePeriodically,
+                                   CompletableFuture.delayedExecutor(_period.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    public void start() {
+
+        CompletableFuture.runAsync(this::writePeriodically,
+                                   CompletableFuture.delayedExecutor(_period.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    public RestOutput<Result> stop(boolean keep) {
+
+        _stopped.set(true);
+
+        if (keep) {
+            // A last snapshot, so that the next start replays as few changes as possible
+            return write();
+        }
+
+        // The database is dropped along with the store, so is its snapshot
+        try {
+            _lock.lock();
+
+            Files.deleteIfExists(_path);
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to delete snapshot. INTERNAL FAILURE", this);
+            return RestOutput.internalFailure();
+
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotStore [_path=" + _path
+               + ", _writeCount="
+               + _writeCount
+               + ", _failureCount="
+               + _failureCount
+               + ", _changeSequence="
+               + _changeSequence
+               + ", _size="
+               + _size
+               + "]";
+    }
+}
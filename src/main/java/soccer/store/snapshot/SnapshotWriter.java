@@ -0,0 +1,286 @@
+package soccer.store.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import soccer.Setup;
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+import soccer.store.user.UserRecord;
+
+public class SnapshotWriter {
+
+    // Layout of a snapshot file
+    static final int          MAGIC          = 0x534f4343;
+    static final int          FORMAT_VERSION = 1;
+
+    static final byte         END_RECORD     = 0;
+    static final byte         USER_RECORD    = 1;
+    static final byte         TEAM_RECORD    = 2;
+    static final byte         PLAYER_RECORD  = 3;
+
+    private final Path        _path;
+    private final Path        _temporaryPath;
+    private final FileChannel _fileChannel;
+
+    // Off heap buffer, checksummed as it is written to the file
+    private final ByteBuffer  _buffer;
+    private final CRC32       _crc32;
+    private long              _recordCount;
+
+    private SnapshotWriter(Path path, Path temporaryPath, FileChannel fileChannel) {
+
+        _path = path;
+        _temporaryPath = temporaryPath;
+        _fileChannel = fileChannel;
+
+        _buffer = ByteBuffer.allocateDirect(Setup.SNAPSHOT_BUFFER_SIZE);
+        _crc32 = new CRC32();
+        _recordCount = 0;
+    }
+
+    private void drain() throws IOException {
+
+        _buffer.flip();
+
+        _crc32.update(_buffer.duplicate());
+        while (_buffer.hasRemaining()) {
+            _fileChannel.write(_buffer);
+        }
+
+        _buffer.clear();
+    }
+
+    private void ensure(int length) throws IOException {
+
+        if (length > _buffer.capacity()) {
+            throw new IOException("Field of " + length + " bytes is larger than the buffer");
+        }
+        if (_buffer.remaining() < length) {
+            drain();
+        }
+    }
+
+    private void putByte(byte value) throws IOException {
+
+        ensure(Byte.BYTES);
+        _buffer.put(value);
+    }
+
+    private void putInt(int value) throws IOException {
+
+        ensure(Integer.BYTES);
+        _buffer.putInt(value);
+    }
+
+    private void putLong(long value) throws IOException {
+
+        ensure(Long.BYTES);
+        _buffer.putLong(value);
+    }
+
+    private void putUUID(UUID uuid) throws IOException {
+
+        putLong(uuid.getMostSignificantBits());
+        putLong(uuid.getLeastSignificantBits());
+    }
+
+    private void putString(String value) throws IOException {
+
+        byte[] byteArray;
+
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+
+        byteArray = value.getBytes(StandardCharsets.UTF_8);
+
+        ensure(Integer.BYTES + byteArray.length);
+        _buffer.putInt(byteArray.length);
+        _buffer.put(byteArray);
+    }
+
+    public RestOutput<Result> writeUser(UserRecord userRecord) {
+
+        if (Api.isNull(userRecord)) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            putByte(USER_RECORD);
+            putString(userRecord.userId());
+            putString(userRecord.userPassword());
+
+            _recordCount++;
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to writeUser. INTERNAL FAILURE", userRecord, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    public RestOutput<Result> writeTeam(TeamRecord teamRecord) {
+
+        if (Api.isNull(teamRecord)
+            || Api.isNull(teamRecord.teamId(), teamRecord.balance())
+            || Api.isNull(teamRecord.teamId().getUUID())) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            putByte(TEAM_RECORD);
+            putString(teamRecord.userId());
+            putUUID(teamRecord.teamId().getUUID());
+            putString(teamRecord.name());
+            putString(teamRecord.country());
+            putLong(teamRecord.balance());
+
+            _recordCount++;
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to writeTeam. INTERNAL FAILURE", teamRecord, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    public RestOutput<Result> writePlayer(PlayerRecord playerRecord) {
+
+        if (Api.isNull(playerRecord,
+                       playerRecord.playerId(),
+                       playerRecord.playerId().getUUID(),
+                       playerRecord.playerType(),
+                       playerRecord.age(),
+                       playerRecord.assetValue(),
+                       playerRecord.transferValue(),
+                       playerRecord.teamId(),
+                       playerRecord.teamId().getUUID())) {
+            return RestOutput.badRequest();
+        }
+
+        try {
+            putByte(PLAYER_RECORD);
+            putUUID(playerRecord.playerId().getUUID());
+            putByte((byte) playerRecord.playerType().ordinal());
+            putString(playerRecord.firstName());
+            putString(playerRecord.lastName());
+            putString(playerRecord.country());
+            putInt(playerRecord.age());
+            putLong(playerRecord.assetValue());
+            putLong(playerRecord.transferValue());
+            putUUID(playerRecord.teamId().getUUID());
+
+            _recordCount++;
+
+            return RestOutput.OK;
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to writePlayer. INTERNAL FAILURE", playerRecord, this);
+            return RestOutput.internalFailure();
+        }
+    }
+
+    RestOutput<Long> commit() {
+
+        long size;
+
+        try {
+            putByte(END_RECORD);
+            putLong(_recordCount);
+            drain();
+
+            // The checksum of all previous bytes closes the file
+            _buffer.putInt((int) _crc32.getValue());
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _fileChannel.write(_buffer);
+            }
+
+            _fileChannel.force(true);
+            size = _fileChannel.size();
+            _fileChannel.close();
+
+            // The previous snapshot remains in place until this one is complete
+            Files.move(_temporaryPath, _path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return RestOutput.ok(size);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to commit snapshot. INTERNAL FAILURE", this);
+            abort();
+            return RestOutput.internalFailure();
+        }
+    }
+
+    void abort() {
+
+        try {
+            _fileChannel.close();
+            Files.deleteIfExists(_temporaryPath);
+        } catch (Throwable t) {
+            Api.error(t, "Failure to abort snapshot", this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotWriter [_path=" + _path + ", _recordCount=" + _recordCount + "]";
+    }
+
+    static RestOutput<SnapshotWriter> open(Path path, String databaseId, long changeSequence) {
+
+        Path temporaryPath;
+        FileChannel fileChannel;
+        SnapshotWriter snapshotWriter;
+
+        if (Api.isNull(path, databaseId)) {
+            return RestOutput.badRequest();
+        }
+
+        temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            fileChannel = FileChannel.open(temporaryPath,
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.TRUNCATE_EXISTING,
+                                           StandardOpenOption.WRITE);
+
+            snapshotWriter = new SnapshotWriter(path, temporaryPath, fileChannel);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to open snapshot. INTERNAL FAILURE", path);
+            return RestOutput.internalFailure();
+        }
+
+        // Header, with the change sequence of the store reached by this snapshot
+        try {
+            snapshotWriter.putInt(MAGIC);
+            snapshotWriter.putInt(FORMAT_VERSION);
+            snapshotWriter.putLong(changeSequence);
+            snapshotWriter.putLong(System.currentTimeMillis());
+            snapshotWriter.putString(databaseId);
+
+            return RestOutput.ok(snapshotWriter);
+
+        } catch (Throwable t) {
+            Api.error(t, "Failure to write snapshot header. INTERNAL FAILURE", path);
+            snapshotWriter.abort();
+            return RestOutput.internalFailure();
+        }
+    }
+}
@@ -3,7 +3,7 @@ package soccer.store.team;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.UUID;
 
 import soccer.base.Api;
@@ -40,9 +40,32 @@ public class TeamCollection extends Collection<TeamRecord> {
     }
 
     @Override
-    protected Map<String, String> updateFields(TeamRecord record) {
+    protected String[] updateFields() {
 
-        return Map.of(TEAM_NAME, record.name(), TEAM_COUNTRY, record.country());
+        return new String[] { TEAM_NAME, TEAM_COUNTRY, TEAM_BALANCE };
+    }
+
+    @Override
+    protected List<String> migrations() {
+
+        return List.of(// 1. Typed columns instead of text
+                       join("ALTER TABLE ",
+                            COLLECTION,
+                            " ",
+                            joinComma(alterTypeEntry(TEAM_ID, "uuid"), alterTypeEntry(TEAM_BALANCE, "bigint")),
+                            ";"),
+                       // 2. Teams are loaded in the order of their identifier
+                       join("CREATE UNIQUE INDEX IF NOT EXISTS ",
+                            COLLECTION,
+                            "_",
+                            TEAM_ID,
+                            " ON ",
+                            COLLECTION,
+                            " (",
+                            TEAM_ID,
+                            ");"),
+                       // 3. Teams changed since a snapshot
+                       changeSequenceMigration());
     }
 
     @Override
@@ -59,7 +82,7 @@ public class TeamCollection extends Collection<TeamRecord> {
         }
 
         userId = resultSet.getString(1);
-        teamId = new TeamId(UUID.fromString(resultSet.getString(2)));
+        teamId = new TeamId(resultSet.getObject(2, UUID.class));
         name = resultSet.getString(3);
         country = resultSet.getString(4);
         balance = resultSet.getLong(5);
@@ -68,26 +91,26 @@ public class TeamCollection extends Collection<TeamRecord> {
     }
 
     @Override
-    protected String[] from(TeamRecord teamRecord) {
+    protected Object[] from(TeamRecord teamRecord) {
 
         if (Api.isNull(teamRecord)) {
             return null;
         }
 
-        return new String[] { teamRecord.userId(),
-                              teamRecord.teamId().toText(),
+        return new Object[] { teamRecord.userId(),
+                              teamRecord.teamId().getUUID(),
                               teamRecord.name(),
                               teamRecord.country(),
-                              teamRecord.balance().toString() };
+                              teamRecord.balance() };
     }
 
     public RestOutput<Result> initCollection() {
 
         return init(textEntry(USER_ID),
-                    textEntry(TEAM_ID),
+                    uuidEntry(TEAM_ID),
                     textEntry(TEAM_NAME),
                     textEntry(TEAM_COUNTRY),
-                    textEntry(TEAM_BALANCE),
+                    bigintEntry(TEAM_BALANCE),
                     primaryKeyEntry(USER_ID, TEAM_ID));
     }
 
@@ -96,8 +119,19 @@ public class TeamCollection extends Collection<TeamRecord> {
         return storeRecord(teamRecord);
     }
 
-    public RestOutput<List<TeamRecord>> loadTeamRecords() {
+    public RestOutput<Result> storeTeamRecords(List<TeamRecord> teamRecordList) {
+
+        return storeRecords(teamRecordList);
+    }
+
+    public RestOutput<Result> loadTeamRecords(Consumer<TeamRecord> teamRecordConsumer) {
+
+        // Sorted by team in the same order as the players
+        return loadRecords(TEAM_ID, teamRecordConsumer);
+    }
+
+    public RestOutput<Result> loadTeamRecords(long changeSequence, Consumer<TeamRecord> teamRecordConsumer) {
 
-        return loadRecords();
+        return loadRecords(null, changeSequence, teamRecordConsumer);
     }
 }
@@ -0,0 +1,104 @@
+package soccer.store.token;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.store.Collection;
+import soccer.store.StoreService;
+
+public class RevokedTokenCollection extends Collection<RevokedTokenRecord> {
+
+    private static final String   COLLECTION    = "revoked_token_collection";
+
+    private static final String   TOKEN_ID      = "token_id";
+    private static final String   EXPIRY_MILLIS = "expiry_millis";
+
+    private static final String[] FieldArray    = new String[] { TOKEN_ID, EXPIRY_MILLIS };
+
+    public RevokedTokenCollection(StoreService storeService) {
+        super(COLLECTION, FieldArray, storeService);
+    }
+
+    @Override
+    protected String[] primaryFields() {
+
+        return new String[] { TOKEN_ID };
+    }
+
+    @Override
+    protected String[] updateFields() {
+
+        // A token revoked again by another node keeps the same expiry
+        return new String[] { EXPIRY_MILLIS };
+    }
+
+    @Override
+    protected List<String> migrations() {
+
+        return List.of(// 1. Change sequence stamped by the upsert
+                       changeSequenceMigration());
+    }
+
+    @Override
+    protected RevokedTokenRecord to(ResultSet resultSet) throws SQLException {
+
+        if (Api.isNull(resultSet)) {
+            return null;
+        }
+
+        return new RevokedTokenRecord(resultSet.getString(1), resultSet.getLong(2));
+    }
+
+    @Override
+    protected Object[] from(RevokedTokenRecord revokedTokenRecord) {
+
+        if (Api.isNull(revokedTokenRecord)) {
+            return null;
+        }
+
+        return new Object[] { revokedTokenRecord.tokenId(), revokedTokenRecord.expiryMillis() };
+    }
+
+    public RestOutput<Result> initCollection() {
+
+        return init(textEntry(TOKEN_ID), bigintEntry(EXPIRY_MILLIS), primaryKeyEntry(TOKEN_ID));
+    }
+
+    public RestOutput<Result> storeRevokedTokenRecord(RevokedTokenRecord revokedTokenRecord) {
+
+        return storeRecord(revokedTokenRecord);
+    }
+
+    public RestOutput<Result> loadRevokedTokenRecords(Consumer<RevokedTokenRecord> revokedTokenRecordConsumer) {
+
+        return loadRecords(null, revokedTokenRecordConsumer);
+    }
+
+    public RestOutput<Result> deleteRevokedTokenRecords(long expiryMillis) {
+
+        String updateSQL;
+
+        // Tokens expired by then are rejected anyway
+        updateSQL = join("DELETE FROM ", COLLECTION, " WHERE ", EXPIRY_MILLIS, " < ?;");
+
+        try (Connection connection = connection()) {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(updateSQL)) {
+
+                preparedStatement.setLong(1, expiryMillis);
+                preparedStatement.executeUpdate();
+
+                return RestOutput.OK;
+            }
+        } catch (Throwable t) {
+            Api.error(t, "Failure to deleteRevokedTokenRecords. INTERNAL FAILURE", updateSQL, this);
+            return RestOutput.internalFailure();
+        }
+    }
+}
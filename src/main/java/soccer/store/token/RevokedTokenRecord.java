@@ -0,0 +1,26 @@
+package soccer.store.token;
+
+public class RevokedTokenRecord {
+
+    private final String _tokenId;
+    private final Long   _expiryMillis;
+
+    public RevokedTokenRecord(String tokenId, Long expiryMillis) {
+
+        _tokenId = tokenId;
+        _expiryMillis = expiryMillis;
+    }
+
+    public String tokenId() {
+        return _tokenId;
+    }
+
+    public Long expiryMillis() {
+        return _expiryMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RevokedTokenRecord [_tokenId=" + _tokenId + ", _expiryMillis=" + _expiryMillis + "]";
+    }
+}
@@ -3,7 +3,7 @@ package soccer.store.user;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 import soccer.base.Api;
 import soccer.base.RestOutput;
@@ -34,9 +34,17 @@ public class UserCollection extends Collection<UserRecord> {
     }
 
     @Override
-    protected Map<String, String> updateFields(UserRecord record) {
+    protected String[] updateFields() {
 
-        return Map.of();
+        // A user is never updated
+        return new String[] {};
+    }
+
+    @Override
+    protected List<String> migrations() {
+
+        return List.of(// 1. Users created since a snapshot
+                       changeSequenceMigration());
     }
 
     @Override
@@ -50,13 +58,13 @@ public class UserCollection extends Collection<UserRecord> {
     }
 
     @Override
-    protected String[] from(UserRecord userRecord) {
+    protected Object[] from(UserRecord userRecord) {
 
         if (Api.isNull(userRecord)) {
             return null;
         }
 
-        return new String[] { userRecord.userId(), userRecord.userPassword() };
+        return new Object[] { userRecord.userId(), userRecord.userPassword() };
     }
 
     public RestOutput<Result> initCollection() {
@@ -69,8 +77,13 @@ public class UserCollection extends Collection<UserRecord> {
         return storeRecord(userRecord);
     }
 
-    public RestOutput<List<UserRecord>> loadUserRecords() {
+    public RestOutput<Result> loadUserRecords(Consumer<UserRecord> userRecordConsumer) {
+
+        return loadRecords(null, userRecordConsumer);
+    }
+
+    public RestOutput<Result> loadUserRecords(long changeSequence, Consumer<UserRecord> userRecordConsumer) {
 
-        return loadRecords();
+        return loadRecords(null, changeSequence, userRecordConsumer);
     }
 }
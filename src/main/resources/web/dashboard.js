@@ -1,4 +1,16 @@
 
+// Number of players loaded per page of the market
+var MARKET_PAGE_SIZE = 50;
+
+// Delay in milliseconds to reload the team after an event about it
+var EVENT_REFRESH_DELAY = 500;
+
+// Team of the user as displayed
+var displayedTeam = null;
+
+// Rows of the market displayed so far, by playerId
+var marketRowMap = new Map();
+
 function loadUserId() {
 
     if (typeof (Storage) != undefined) {
@@ -15,6 +27,41 @@ function loadUserToken() {
     return null;
 }
 
+function loadEntityTag(url) {
+
+    if (typeof (Storage) != undefined) {
+        return sessionStorage.getItem('etag ' + url);
+    }
+    return null;
+}
+
+function loadEntity(url) {
+
+    if (typeof (Storage) != undefined) {
+        return sessionStorage.getItem('entity ' + url);
+    }
+    return null;
+}
+
+function storeEntity(url, xhr) {
+
+    // Keep the last version received, to revalidate it on the next load
+    var entityTag = xhr.getResponseHeader('ETag');
+    if ((typeof (Storage) != undefined) && (entityTag != null)) {
+        sessionStorage.setItem('etag ' + url, entityTag);
+        sessionStorage.setItem('entity ' + url, xhr.responseText);
+    }
+}
+
+function sendIfNoneMatch(url, xhr) {
+
+    // Only when the version it refers to is still stored
+    var entityTag = loadEntityTag(url);
+    if ((entityTag != null) && (loadEntity(url) != null)) {
+        xhr.setRequestHeader('If-None-Match', entityTag);
+    }
+}
+
 function defineTextElement(text) {
 
     var textElement = document.createElement('P');
@@ -283,6 +330,8 @@ function refreshTeam(team) {
 
 function displayTeam(team) {
 
+    displayedTeam = team;
+
     var teamTableBody = document.getElementById("teamTableBodyId")
     team.row = teamTableBody.insertRow(-1);
 
@@ -303,12 +352,18 @@ function loadTeam() {
     xhr.open("GET", "/team", true);
     xhr.setRequestHeader('Accept', 'application/json');
     xhr.setRequestHeader("User-Token", loadUserToken());
+    sendIfNoneMatch("/team", xhr);
 
     xhr.onreadystatechange = function() {
         if (xhr.readyState == 4) {
             if (xhr.status == 200) {
+                storeEntity("/team", xhr);
                 var team = JSON.parse(xhr.responseText);
                 displayTeam(team);
+            } else if (xhr.status == 304) {
+                // The stored team is still the current one
+                var team = JSON.parse(loadEntity("/team"));
+                displayTeam(team);
             } else {
                 alert("Failure to get team");
             }
@@ -351,10 +406,12 @@ function transferPlayer(marketPlayer, marketTeam) {
     xhr.send(JSON.stringify(postPlayer));
 }
 
-function displayMarketPlayer(marketPlayer, marketTeam, marketTableBody) {
+function refreshMarketPlayer(marketPlayer, marketTeam) {
 
-    // Create a new row
-    var row = marketTableBody.insertRow(-1);
+    var row = marketPlayer.row;
+    while (row.cells.length > 0) {
+        row.deleteCell(0);
+    }
 
     cell = row.insertCell(-1);
     cell.appendChild(defineTextElement(marketPlayer.playerId.uuid));
@@ -398,6 +455,18 @@ function displayMarketPlayer(marketPlayer, marketTeam, marketTableBody) {
     cell.appendChild(actionsElement);
 }
 
+function displayMarketPlayer(marketPlayer, marketTeam, marketTableBody) {
+
+    // Create a new row
+    marketPlayer.row = marketTableBody.insertRow(-1);
+    marketRowMap.set(marketPlayer.playerId.uuid, {
+        marketPlayer: marketPlayer,
+        marketTeam: marketTeam
+    });
+
+    refreshMarketPlayer(marketPlayer, marketTeam);
+}
+
 function displayMarketTeam(marketTeam, marketTableBody) {
 
     if (marketTeam.playerArray != null) {
@@ -416,20 +485,41 @@ function displayMarket(market) {
             displayMarketTeam(marketTeam, marketTableBody);
         }
     }
+
+    // Offer to load the next page if any
+    var marketMoreElement = document.getElementById("marketMoreId");
+    marketMoreElement.innerHTML = "";
+
+    if (market.cursor != null) {
+        marketMoreElement.appendChild(defineButtonElement("MORE", function() {
+            loadMarket(market.cursor);
+        }));
+    }
 }
 
-function loadMarket() {
+function loadMarket(cursor) {
+
+    var marketUrl = "/market?pageSize=" + MARKET_PAGE_SIZE;
+    if (cursor != null) {
+        marketUrl += "&cursor=" + encodeURIComponent(cursor);
+    }
 
     var xhr = new XMLHttpRequest();
-    xhr.open("GET", "/market", true);
+    xhr.open("GET", marketUrl, true);
     xhr.setRequestHeader('Accept', 'application/json');
     xhr.setRequestHeader("User-Token", loadUserToken());
+    sendIfNoneMatch(marketUrl, xhr);
 
     xhr.onreadystatechange = function() {
         if (xhr.readyState == 4) {
             if (xhr.status == 200) {
+                storeEntity(marketUrl, xhr);
                 var market = JSON.parse(xhr.responseText);
                 displayMarket(market);
+            } else if (xhr.status == 304) {
+                // The stored page of the market is still the current one
+                var market = JSON.parse(loadEntity(marketUrl));
+                displayMarket(market);
             } else {
                 alert("Failure to get market");
             }
@@ -438,6 +528,104 @@ function loadMarket() {
     xhr.send();
 }
 
+function isDisplayedTeam(teamId) {
+
+    return (displayedTeam != null) && (teamId != null) && (teamId.uuid == displayedTeam.teamId.uuid);
+}
+
+function findDisplayedPlayer(playerId) {
+
+    for (var player of displayedTeam.playerArray) {
+        if (player.playerId.uuid == playerId.uuid) {
+            return player;
+        }
+    }
+    return null;
+}
+
+function removeMarketPlayer(playerId) {
+
+    var marketEntry = marketRowMap.get(playerId.uuid);
+    if (marketEntry != null) {
+        marketEntry.marketPlayer.row.remove();
+        marketRowMap.delete(playerId.uuid);
+    }
+}
+
+function listenEvents() {
+
+    var eventSource = new EventSource("/events?userToken=" + encodeURIComponent(loadUserToken()));
+    var reloadTimeout = null;
+
+    // Reload the team once for a burst of events about it
+    var reloadTeam = function() {
+        if (reloadTimeout == null) {
+            reloadTimeout = setTimeout(function() {
+                reloadTimeout = null;
+
+                document.getElementById("teamTableBodyId").innerHTML = "";
+                document.getElementById("playerTableBodyId").innerHTML = "";
+
+                // An unchanged team is answered with 304 Not Modified
+                loadTeam();
+            }, EVENT_REFRESH_DELAY);
+        }
+    };
+
+    // Only the rows concerned are changed, so that the pages of the market loaded so far are kept
+    var onEvent = function(message) {
+
+        var event = JSON.parse(message.data);
+
+        switch (event.eventType) {
+
+            case "BALANCE_CHANGED":
+                if (isDisplayedTeam(event.teamId)) {
+                    displayedTeam.teamBalance = event.teamBalance;
+                    refreshTeam(displayedTeam);
+                }
+                break;
+
+            case "PLAYER_LISTED":
+                if (isDisplayedTeam(event.teamId)) {
+                    var player = findDisplayedPlayer(event.playerId);
+                    if (player != null) {
+                        player.playerTransferValue = event.player.playerTransferValue;
+                        refreshPlayer(player);
+                    } else {
+                        reloadTeam();
+                    }
+                }
+
+                // A player not displayed yet shows up with the page of the market it belongs to
+                var marketEntry = marketRowMap.get(event.playerId.uuid);
+                if (marketEntry != null) {
+                    marketEntry.marketPlayer.playerTransferValue = event.player.playerTransferValue;
+                    refreshMarketPlayer(marketEntry.marketPlayer, marketEntry.marketTeam);
+                }
+                break;
+
+            case "PLAYER_DELISTED":
+                if (isDisplayedTeam(event.teamId)) {
+                    reloadTeam();
+                }
+                removeMarketPlayer(event.playerId);
+                break;
+
+            case "PLAYER_TRANSFERRED":
+                if (isDisplayedTeam(event.teamId) || isDisplayedTeam(event.fromTeamId)) {
+                    reloadTeam();
+                }
+                removeMarketPlayer(event.playerId);
+                break;
+        }
+    };
+
+    for (var eventName of ["PLAYER_LISTED", "PLAYER_DELISTED", "PLAYER_TRANSFERRED", "BALANCE_CHANGED"]) {
+        eventSource.addEventListener(eventName, onEvent);
+    }
+}
+
 function displayUserName() {
 
     var usernameElement = document.getElementById("usernameId");
@@ -451,6 +639,8 @@ function displayPage() {
     loadTeam();
 
     loadMarket();
+
+    listenEvents();
 }
 
 displayPage();
@@ -0,0 +1,131 @@
+package soccer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.StringRequestContent;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import soccer.base.Api;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.handler.core.CoreHandler;
+import soccer.http.HttpCode;
+import soccer.model.Team;
+import soccer.model.User;
+import soccer.model.UserToken;
+
+public class Http2ServiceTest {
+
+    private CoreHandler  coreHandler = null;
+    private HttpClient   httpClient  = null;
+    private String       baseURL     = null;
+    private ObjectMapper jsonMapper  = new ObjectMapper();
+
+    @BeforeEach
+    private void initialize() throws Exception {
+
+        URI databaseURI;
+        int port;
+        RestOutput<CoreHandler> coreHandlerOutput;
+        RestOutput<Result> resultOutput;
+
+        // Serve HTTP/2 cleartext next to HTTP/1.1 on the connector
+        System.setProperty(Setup.HTTP_H2C_PROPERTY, "true");
+
+        // Use a test database with the defined prefix
+        databaseURI = Api.URI(Setup.DEFAULT_STORE_URI + Setup.DATABASE_PREFIX + UUID.randomUUID().toString());
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+
+        coreHandlerOutput = CoreHandler.with(databaseURI, Optional.empty(), Optional.of(port));
+        if (RestOutput.isNOK(coreHandlerOutput)) {
+            Api.error("CoreHandler creation is NOT OK", coreHandlerOutput, databaseURI);
+            throw new RuntimeException("CoreHandler creation for Http2ServiceTest failed");
+        }
+        coreHandler = coreHandlerOutput.output();
+
+        // Run the CoreHandler, along with its HTTP server
+        resultOutput = coreHandler.run();
+        if (RestOutput.isNOK(resultOutput)) {
+            Api.error("CoreHandler run for Http2ServiceTest is NOT OK", resultOutput, databaseURI);
+            throw new RuntimeException("CoreHandler run for Http2ServiceTest failed");
+        }
+
+        baseURL = "http://localhost:" + port;
+
+        // A clear text URL makes the client speak HTTP/2 from the first byte, without any upgrade
+        httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+        httpClient.start();
+    }
+
+    @AfterEach
+    private void terminate() throws Exception {
+
+        if (httpClient != null) {
+            httpClient.stop();
+        }
+        if (coreHandler != null) {
+            coreHandler.terminate();
+        }
+
+        System.clearProperty(Setup.HTTP_H2C_PROPERTY);
+    }
+
+    private String generateValidUsername() {
+
+        return UUID.randomUUID().toString().substring(0, 10) + "@soccer.com";
+    }
+
+    @Test
+    public void createUser_thenGetTeamOverHttp2() throws Exception {
+
+        User user;
+        UserToken userToken;
+        Team team;
+
+        user = new User(generateValidUsername(), "a2TT&d3mn");
+
+        // Post the new user
+        ContentResponse response1 = httpClient.newRequest(baseURL + "/user")
+                                              .method(HttpMethod.POST)
+                                              .body(new StringRequestContent("application/json",
+                                                                             jsonMapper.writeValueAsString(user)))
+                                              .send();
+
+        assertEquals("Response should be HTTP/2", HttpVersion.HTTP_2, response1.getVersion());
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response1.getStatus());
+
+        userToken = jsonMapper.readValue(response1.getContentAsString(), UserToken.class);
+        assertTrue("User Token should be returned", (userToken.getToken() != null));
+
+        // Get the team of this user, on the same connection
+        ContentResponse response2 = httpClient.newRequest(baseURL + "/team")
+                                              .method(HttpMethod.GET)
+                                              .header(Setup.USER_TOKEN, userToken.toText())
+                                              .send();
+
+        assertEquals("Response should be HTTP/2", HttpVersion.HTTP_2, response2.getVersion());
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response2.getStatus());
+
+        team = jsonMapper.readValue(response2.getContentAsString(), Team.class);
+        assertEquals("Team should have 20 players", 20, team.getPlayerArray().length);
+    }
+}
@@ -340,7 +340,7 @@ public class RestServiceTest extends JerseyTest {
 
         // Transfer this player to the other team
         Response response5 = target("/transfer").request(MediaType.APPLICATION_JSON_TYPE)
-                                                .header(Setup.USER_TOKEN, userToken1.toText())
+                                                .header(Setup.USER_TOKEN, userToken2.toText())
                                                 .post(Entity.entity(transferPlayer, MediaType.APPLICATION_JSON_TYPE));
 
         assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response5.getStatus());
@@ -349,4 +349,86 @@ public class RestServiceTest extends JerseyTest {
         assertNull("TransferPlayerOutcome should not include any error", transferPlayerOutcome.getError());
     }
 
+    @Test
+    public void createValidUser_thenTransferOwnPlayer() {
+
+        String userId;
+        User user;
+        UserToken userToken;
+        Team team;
+        Player player;
+        Player updatePlayer;
+        Player transferPlayer;
+        UpdatePlayerOutcome updatePlayerOutcome;
+        TransferPlayerOutcome transferPlayerOutcome;
+
+        userId = generateValidUsername();
+        user = new User(userId, "aWWWQ2TT&d3mn");
+
+        // Post this User
+        Response response1 = target("/user").request(MediaType.APPLICATION_JSON_TYPE)
+                                            .post(Entity.entity(user, MediaType.APPLICATION_JSON_TYPE));
+
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response1.getStatus());
+
+        userToken = response1.readEntity(UserToken.class);
+        assertTrue("User Token should be returned", (userToken.getToken() != null));
+
+        // Get this Team
+        Response response2 = target("/team").request(MediaType.APPLICATION_JSON_TYPE)
+                                            .header(Setup.USER_TOKEN, userToken.toText())
+                                            .get();
+
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response2.getStatus());
+
+        team = response2.readEntity(Team.class);
+
+        // Select a player
+        int playerIndex = ThreadLocalRandom.current().nextInt(20);
+        player = team.getPlayerArray()[playerIndex];
+
+        // Update the player to add it to the market
+        updatePlayer = new Player(player.getPlayerId(),
+                                  player.getPlayerType(),
+                                  "newPlayerFirstName",
+                                  "newPlayerLastName",
+                                  "newCountry",
+                                  null,
+                                  null,
+                                  2000000L,
+                                  player.getTeamId());
+        Response response3 = target("/player/" + updatePlayer.getPlayerId()
+                                                             .toText()).request(MediaType.APPLICATION_JSON_TYPE)
+                                                                       .header(Setup.USER_TOKEN, userToken.toText())
+                                                                       .put(Entity.entity(updatePlayer,
+                                                                                          MediaType.APPLICATION_JSON_TYPE));
+
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response3.getStatus());
+
+        updatePlayerOutcome = response3.readEntity(UpdatePlayerOutcome.class);
+        assertNull("UpdatePlayerOutcome should not include any error", updatePlayerOutcome.getError());
+
+        transferPlayer = new Player(player.getPlayerId(), player.getTeamId());
+
+        // Buy this player back from its own team
+        Response response4 = target("/transfer").request(MediaType.APPLICATION_JSON_TYPE)
+                                                .header(Setup.USER_TOKEN, userToken.toText())
+                                                .post(Entity.entity(transferPlayer, MediaType.APPLICATION_JSON_TYPE));
+
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response4.getStatus());
+
+        transferPlayerOutcome = response4.readEntity(TransferPlayerOutcome.class);
+        assertTrue("TransferPlayerOutcome should be rejected", (transferPlayerOutcome.getError() != null));
+
+        // The balance remains as it was
+        Response response5 = target("/team").request(MediaType.APPLICATION_JSON_TYPE)
+                                            .header(Setup.USER_TOKEN, userToken.toText())
+                                            .get();
+
+        assertEquals("Http Response should be 200-OK", HttpCode.OK_200, response5.getStatus());
+
+        team = response5.readEntity(Team.class);
+        assertEquals("Team balance should be 5 million", team.getTeamBalance(), Long.valueOf(5000000));
+    }
+
 }
@@ -0,0 +1,145 @@
+package soccer.handler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import soccer.Setup;
+import soccer.model.Player;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+import soccer.store.user.UserRecord;
+
+public class SnapshotAssemblyTest {
+
+    private SnapshotAssembly            snapshotAssembly;
+    private List<UserRecord>            userRecordList;
+    private HashMap<TeamId, TeamRecord> teamRecordMap;
+    private HashMap<TeamId, Player[]>   playerArrayMap;
+
+    @BeforeEach
+    private void initialize() {
+
+        snapshotAssembly = new SnapshotAssembly();
+        userRecordList = new ArrayList<UserRecord>();
+        teamRecordMap = new HashMap<TeamId, TeamRecord>();
+        playerArrayMap = new HashMap<TeamId, Player[]>();
+    }
+
+    private PlayerRecord player(PlayerId playerId, long transferValue, TeamId teamId) {
+
+        return new PlayerRecord(playerId,
+                                PlayerType.MIDFIELDER,
+                                "firstName",
+                                "lastName",
+                                "country",
+                                25,
+                                Setup.DEFAULT_PLAYER_ASSET_VALUE,
+                                transferValue,
+                                teamId);
+    }
+
+    private List<TeamRecord> restore() {
+
+        return snapshotAssembly.restore(userRecordList::add, (teamRecord, playerArray) -> {
+            teamRecordMap.put(teamRecord.teamId(), teamRecord);
+            playerArrayMap.put(teamRecord.teamId(), playerArray);
+            return true;
+        });
+    }
+
+    @Test
+    public void replayTransfer_overSnapshot() {
+
+        TeamId sellerTeamId;
+        TeamId buyerTeamId;
+        PlayerId playerId;
+
+        sellerTeamId = TeamId.random();
+        buyerTeamId = TeamId.random();
+        playerId = PlayerId.random();
+
+        // Snapshot taken while the player was listed by the seller
+        snapshotAssembly.offerUser(new UserRecord("seller@soccer.com", "password"));
+        snapshotAssembly.offerUser(new UserRecord("buyer@soccer.com", "password"));
+        snapshotAssembly.offerTeam(new TeamRecord("seller@soccer.com", sellerTeamId, "seller", "country", 1000L));
+        snapshotAssembly.offerTeam(new TeamRecord("buyer@soccer.com", buyerTeamId, "buyer", "country", 5000L));
+        snapshotAssembly.offerPlayer(player(playerId, 2000L, sellerTeamId));
+        snapshotAssembly.offerPlayer(player(PlayerId.random(), Setup.PLAYER_NO_TRANSFER_VALUE, sellerTeamId));
+        snapshotAssembly.offerPlayer(player(PlayerId.random(), Setup.PLAYER_NO_TRANSFER_VALUE, buyerTeamId));
+
+        // Transfer committed in the store after the snapshot
+        snapshotAssembly.replayTeam(new TeamRecord("seller@soccer.com", sellerTeamId, "seller", "country", 3000L));
+        snapshotAssembly.replayTeam(new TeamRecord("buyer@soccer.com", buyerTeamId, "buyer", "country", 3000L));
+        snapshotAssembly.replayPlayer(player(playerId, Setup.PLAYER_NO_TRANSFER_VALUE, buyerTeamId));
+
+        assertEquals("Replayed records should not be duplicates", 0, snapshotAssembly.duplicateCount());
+        assertEquals("No player should be orphan", 0, snapshotAssembly.orphanPlayerCount());
+
+        assertTrue("No team should be parked", restore().isEmpty());
+
+        assertEquals("Both users should be restored", 2, userRecordList.size());
+        assertEquals("Seller should be credited", Long.valueOf(3000L), teamRecordMap.get(sellerTeamId).balance());
+        assertEquals("Buyer should be debited", Long.valueOf(3000L), teamRecordMap.get(buyerTeamId).balance());
+
+        assertEquals("Seller should have one player left", 1, playerArrayMap.get(sellerTeamId).length);
+        assertEquals("Buyer should have two players", 2, playerArrayMap.get(buyerTeamId).length);
+    }
+
+    @Test
+    public void playerTwiceInSnapshot_isCounted() {
+
+        TeamId teamId;
+        PlayerId playerId;
+
+        teamId = TeamId.random();
+        playerId = PlayerId.random();
+
+        snapshotAssembly.offerTeam(new TeamRecord("user@soccer.com", teamId, "team", "country", 1000L));
+        snapshotAssembly.offerPlayer(player(playerId, Setup.PLAYER_NO_TRANSFER_VALUE, teamId));
+        snapshotAssembly.offerPlayer(player(playerId, Setup.PLAYER_NO_TRANSFER_VALUE, teamId));
+
+        assertEquals("Player written twice should be a duplicate", 1, snapshotAssembly.duplicateCount());
+    }
+
+    @Test
+    public void playerWithoutTeam_isOrphan() {
+
+        TeamId teamId;
+
+        teamId = TeamId.random();
+
+        snapshotAssembly.offerTeam(new TeamRecord("user@soccer.com", teamId, "team", "country", 1000L));
+        snapshotAssembly.offerPlayer(player(PlayerId.random(), Setup.PLAYER_NO_TRANSFER_VALUE, teamId));
+        snapshotAssembly.replayPlayer(player(PlayerId.random(), Setup.PLAYER_NO_TRANSFER_VALUE, TeamId.random()));
+
+        assertEquals("Player of an unknown team should be orphan", 1, snapshotAssembly.orphanPlayerCount());
+    }
+
+    @Test
+    public void teamRejected_isParked() {
+
+        TeamId teamId;
+        List<TeamRecord> parkedTeamList;
+
+        teamId = TeamId.random();
+
+        snapshotAssembly.offerTeam(new TeamRecord("user@soccer.com", teamId, "team", "country", 1000L));
+        snapshotAssembly.offerPlayer(player(PlayerId.random(), Setup.PLAYER_NO_TRANSFER_VALUE, teamId));
+
+        // The user of this team is not known
+        parkedTeamList = snapshotAssembly.restore(userRecordList::add, (teamRecord, playerArray) -> false);
+
+        assertEquals("Team should be parked", 1, parkedTeamList.size());
+        assertEquals("Parked team should be the rejected one", teamId, parkedTeamList.get(0).teamId());
+    }
+}
@@ -0,0 +1,278 @@
+package soccer.handler.market;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import soccer.Setup;
+import soccer.base.RestOutput;
+import soccer.handler.player.PlayerHandler;
+import soccer.handler.player.PlayerStorage;
+import soccer.model.Market;
+import soccer.model.MarketQuery;
+import soccer.model.Player;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.Team;
+import soccer.model.TeamId;
+import soccer.model.event.Event;
+import soccer.model.event.EventType;
+
+public class MarketIndexTest {
+
+    private List<Event>   eventList;
+    private MarketIndex   marketIndex;
+    private PlayerStorage playerStorage;
+    private TeamId        sellerTeamId;
+    private TeamId        buyerTeamId;
+
+    @BeforeEach
+    private void initialize() {
+
+        eventList = new ArrayList<Event>();
+        marketIndex = new MarketIndex(eventList::add);
+        playerStorage = new PlayerStorage();
+
+        // Players are listed by the seller, and the market is retrieved by the buyer
+        sellerTeamId = TeamId.random();
+        buyerTeamId = TeamId.random();
+
+        marketIndex.publishTeam(sellerTeamId, "seller", "country", 5000000L);
+        marketIndex.publishTeam(buyerTeamId, "buyer", "country", 5000000L);
+    }
+
+    private Player player(long transferValue, int age) {
+
+        return new Player(PlayerId.random(),
+                          PlayerType.DEFENDER,
+                          "firstName",
+                          "lastName",
+                          "country",
+                          age,
+                          Setup.DEFAULT_PLAYER_ASSET_VALUE,
+                          transferValue,
+                          sellerTeamId);
+    }
+
+    private MarketQuery query(String cursor, Long minPrice, Long maxPrice, Integer minAge, Integer maxAge) {
+
+        return new MarketQuery(cursor, null, null, null, minPrice, maxPrice, minAge, maxAge);
+    }
+
+    private Market retrieve(MarketQuery marketQuery, int pageSize) {
+
+        RestOutput<Market> marketOutput;
+
+        marketOutput = marketIndex.retrieveMarket(marketQuery, buyerTeamId, pageSize);
+        assertTrue("Market should be retrieved", marketOutput.isOK());
+
+        return marketOutput.output();
+    }
+
+    private List<PlayerId> playerIds(Market market) {
+
+        List<PlayerId> playerIdList;
+
+        playerIdList = new ArrayList<PlayerId>();
+        for (Team team : market.getTeamArray()) {
+            for (Player player : team.getPlayerArray()) {
+                playerIdList.add(player.getPlayerId());
+            }
+        }
+
+        return playerIdList;
+    }
+
+    @Test
+    public void offerPlayers_thenRetrieveByPrice() {
+
+        Player player1;
+        Player player2;
+        Player player3;
+        Market market;
+
+        player1 = player(300000L, 25);
+        player2 = player(100000L, 25);
+        player3 = player(200000L, 25);
+
+        marketIndex.offerPlayer(player1);
+        marketIndex.offerPlayer(player2);
+        marketIndex.offerPlayer(player3);
+
+        market = retrieve(query(null, null, null, null, null), 10);
+
+        assertEquals("Players should be sorted by price",
+                     List.of(player2.getPlayerId(), player3.getPlayerId(), player1.getPlayerId()),
+                     playerIds(market));
+        assertNull("Single page should have no cursor", market.getCursor());
+        assertEquals("Three players should be listed", 3, eventList.size());
+    }
+
+    @Test
+    public void offerPlayer_thenChangeValue_thenLeaveMarket() {
+
+        Player player;
+        PlayerHandler playerHandler;
+        Market market;
+
+        player = player(100000L, 25);
+        playerHandler = PlayerHandler.with(player, playerStorage).output();
+
+        // Enter the market
+        playerHandler.indexMarket(sellerTeamId, marketIndex);
+        assertEquals("Player should be listed", 1, marketIndex.size());
+
+        // Move within the market, without being listed twice
+        playerHandler.release();
+        player = new Player(player.getPlayerId(),
+                            player.getPlayerType(),
+                            player.getPlayerFirstName(),
+                            player.getPlayerLastName(),
+                            player.getPlayerCountry(),
+                            player.getPlayerAge(),
+                            player.getPlayerAssetValue(),
+                            900000L,
+                            sellerTeamId);
+        playerHandler = PlayerHandler.with(player, playerStorage).output();
+        playerHandler.indexMarket(sellerTeamId, marketIndex);
+
+        market = retrieve(query(null, null, 500000L, null, null), 10);
+        assertEquals("Old price should not be listed anymore", List.of(), playerIds(market));
+
+        market = retrieve(query(null, 500000L, null, null, null), 10);
+        assertEquals("New price should be listed once", List.of(player.getPlayerId()), playerIds(market));
+
+        // Leave the market
+        playerHandler.release();
+        player.setPlayerTransferValue(Setup.PLAYER_NO_TRANSFER_VALUE);
+        playerHandler = PlayerHandler.with(player, playerStorage).output();
+        playerHandler.indexMarket(sellerTeamId, marketIndex);
+
+        assertEquals("Player should be delisted", 0, marketIndex.size());
+        assertEquals("Last event should be a delisting",
+                     EventType.PLAYER_DELISTED,
+                     eventList.get(eventList.size() - 1).getEventType());
+
+        playerHandler.release();
+    }
+
+    @Test
+    public void offerPlayer_thenTransfer() {
+
+        Player player;
+        PlayerHandler playerHandler;
+        Market market;
+
+        player = player(100000L, 25);
+        playerHandler = PlayerHandler.with(player, playerStorage).output();
+        playerHandler.indexMarket(sellerTeamId, marketIndex);
+
+        // The transfer removes the player from the market
+        assertTrue("Transfer should succeed",
+                   playerHandler.transfer(playerHandler.transferRecord(buyerTeamId), marketIndex).isOK());
+
+        market = retrieve(query(null, null, null, null, null), 10);
+        assertEquals("Transferred player should not be listed", List.of(), playerIds(market));
+        assertEquals("Market should be empty", 0, marketIndex.size());
+
+        playerHandler.release();
+    }
+
+    @Test
+    public void retrieveMarket_byPages() {
+
+        List<PlayerId> expectedList;
+        List<PlayerId> retrievedList;
+        Player player;
+        String cursor;
+        Market market;
+        int pageCount;
+
+        expectedList = new ArrayList<PlayerId>();
+        for (int index = 0; index < 7; index++) {
+            player = player((index < 4) ? 100000L : 200000L, 25);
+            marketIndex.offerPlayer(player);
+            expectedList.add(player.getPlayerId());
+        }
+
+        // Players of a same price are ordered by their identifier
+        expectedList.subList(0, 4).sort(null);
+        expectedList.subList(4, 7).sort(null);
+
+        retrievedList = new ArrayList<PlayerId>();
+        cursor = null;
+        pageCount = 0;
+
+        do {
+            market = retrieve(query(cursor, null, null, null, null), 3);
+            retrievedList.addAll(playerIds(market));
+            cursor = market.getCursor();
+            pageCount++;
+        } while (cursor != null);
+
+        assertEquals("Market should span three pages", 3, pageCount);
+        assertEquals("Each player should be retrieved once, in order", expectedList, retrievedList);
+    }
+
+    @Test
+    public void retrieveMarket_withPriceAndAgeFilters() {
+
+        Player youngCheap;
+        Player youngExpensive;
+        Player oldCheap;
+        Player oldExpensive;
+        Market market;
+
+        youngCheap = player(100000L, 20);
+        youngExpensive = player(900000L, 20);
+        oldCheap = player(150000L, 35);
+        oldExpensive = player(950000L, 35);
+
+        marketIndex.offerPlayer(youngCheap);
+        marketIndex.offerPlayer(youngExpensive);
+        marketIndex.offerPlayer(oldCheap);
+        marketIndex.offerPlayer(oldExpensive);
+
+        market = retrieve(query(null, 100000L, 200000L, null, null), 10);
+        assertEquals("Price range should be inclusive",
+                     List.of(youngCheap.getPlayerId(), oldCheap.getPlayerId()),
+                     playerIds(market));
+
+        market = retrieve(query(null, null, null, 30, null), 10);
+        assertEquals("Minimum age should exclude younger players",
+                     List.of(oldCheap.getPlayerId(), oldExpensive.getPlayerId()),
+                     playerIds(market));
+
+        market = retrieve(query(null, null, null, null, 20), 10);
+        assertEquals("Maximum age should exclude older players",
+                     List.of(youngCheap.getPlayerId(), youngExpensive.getPlayerId()),
+                     playerIds(market));
+
+        market = retrieve(query(null, 500000L, null, null, 30), 10);
+        assertEquals("Filters should combine", List.of(youngExpensive.getPlayerId()), playerIds(market));
+    }
+
+    @Test
+    public void retrieveMarket_withoutOwnPlayers() {
+
+        Market market;
+        RestOutput<Market> marketOutput;
+
+        marketIndex.offerPlayer(player(100000L, 25));
+
+        // The seller does not see its own players
+        marketOutput = marketIndex.retrieveMarket(query(null, null, null, null, null), sellerTeamId, 10);
+        market = marketOutput.output();
+        assertEquals("Own players should not be listed", List.of(), playerIds(market));
+
+        // A cursor must come from a previous page
+        marketOutput = marketIndex.retrieveMarket(query("not-a-cursor", null, null, null, null), buyerTeamId, 10);
+        assertTrue("Invalid cursor should be a bad request", marketOutput.isBadRequest());
+    }
+}
@@ -0,0 +1,228 @@
+package soccer.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import soccer.Setup;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+
+public class StoreJournalTest {
+
+    @TempDir
+    Path                     folder;
+
+    private List<StoreBatch> replayList   = new ArrayList<StoreBatch>();
+    private List<StoreBatch> handOverList = new ArrayList<StoreBatch>();
+
+    private StoreBatch batch(String teamName, long balance) {
+
+        TeamId teamId;
+
+        teamId = TeamId.random();
+
+        return new StoreBatch(List.of(new TeamRecord("user@soccer.com", teamId, teamName, null, balance)),
+                              List.of(new PlayerRecord(PlayerId.random(),
+                                                       PlayerType.GOAL_KEEPER,
+                                                       "firstName",
+                                                       "lastName",
+                                                       "country",
+                                                       30,
+                                                       Setup.DEFAULT_PLAYER_ASSET_VALUE,
+                                                       Setup.PLAYER_NO_TRANSFER_VALUE,
+                                                       teamId)));
+    }
+
+    private RestOutput<Result> replay(StoreBatch storeBatch) {
+
+        replayList.add(storeBatch);
+
+        return RestOutput.OK;
+    }
+
+    private StoreJournal start() {
+
+        StoreJournal storeJournal;
+
+        storeJournal = new StoreJournal(folder);
+        assertTrue("Journal should start", storeJournal.start(this::replay).isOK());
+
+        return storeJournal;
+    }
+
+    private void append(StoreJournal storeJournal, StoreBatch storeBatch) {
+
+        RestOutput<Result> resultOutput;
+
+        resultOutput = storeJournal.append(storeBatch, () -> {
+            handOverList.add(storeBatch);
+            return RestOutput.OK;
+        });
+        assertTrue("Append should be acknowledged", resultOutput.isOK());
+    }
+
+    private List<Path> segments() throws Exception {
+
+        try (Stream<Path> pathStream = Files.list(folder)) {
+            return pathStream.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<String> replayedNames() {
+
+        return replayList.stream().map(sb -> sb.teamRecordList().get(0).name()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void appendEntries_thenReplayInOrder() {
+
+        StoreJournal storeJournal;
+        StoreBatch storeBatch;
+        TeamRecord teamRecord;
+        PlayerRecord playerRecord;
+
+        storeJournal = start();
+        assertEquals("Empty journal should replay nothing", 0, replayList.size());
+
+        storeBatch = batch("first", 1000L);
+        append(storeJournal, storeBatch);
+        append(storeJournal, batch("second", 2000L));
+
+        assertEquals("Both entries should be handed over", 2, handOverList.size());
+
+        // Kept for the next start, as if the records were still pending
+        assertTrue("Journal should stop", storeJournal.stop(false).isOK());
+
+        start().stop(true);
+
+        assertEquals("Entries should be replayed in order", List.of("first", "second"), replayedNames());
+
+        teamRecord = replayList.get(0).teamRecordList().get(0);
+        assertEquals("TeamId should be replayed", storeBatch.teamRecordList().get(0).teamId(), teamRecord.teamId());
+        assertNull("Missing country should be replayed", teamRecord.country());
+        assertEquals("Balance should be replayed", Long.valueOf(1000L), teamRecord.balance());
+
+        playerRecord = replayList.get(0).playerRecordList().get(0);
+        assertEquals("PlayerId should be replayed",
+                     storeBatch.playerRecordList().get(0).playerId(),
+                     playerRecord.playerId());
+        assertEquals("Type should be replayed", PlayerType.GOAL_KEEPER, playerRecord.playerType());
+        assertEquals("Team of player should be replayed", teamRecord.teamId(), playerRecord.teamId());
+    }
+
+    @Test
+    public void tornEntry_endsReplay() throws Exception {
+
+        StoreJournal storeJournal;
+        List<Path> segmentList;
+        ByteBuffer byteBuffer;
+
+        storeJournal = start();
+        append(storeJournal, batch("first", 1000L));
+        storeJournal.stop(false);
+
+        segmentList = segments();
+        assertEquals("One segment should be kept", 1, segmentList.size());
+
+        // Header of an entry longer than what remains, as written by a crash
+        byteBuffer = ByteBuffer.allocate(2 * Integer.BYTES + 3);
+        byteBuffer.putInt(64);
+        byteBuffer.putInt(0);
+        byteBuffer.put(new byte[] { 1, 2, 3 });
+        Files.write(segmentList.get(0), byteBuffer.array(), StandardOpenOption.APPEND);
+
+        storeJournal = start();
+        assertEquals("Only the complete entry should be replayed", List.of("first"), replayedNames());
+
+        // The torn entry is dropped along with its replayed segment, so the next entries are not hidden behind it
+        append(storeJournal, batch("second", 2000L));
+        storeJournal.stop(false);
+
+        replayList.clear();
+        start().stop(true);
+        assertEquals("Entry appended after the torn one should be replayed", List.of("second"), replayedNames());
+    }
+
+    @Test
+    public void damagedEntry_endsReplay() throws Exception {
+
+        StoreJournal storeJournal;
+        List<Path> segmentList;
+        byte[] byteArray;
+
+        storeJournal = start();
+        append(storeJournal, batch("first", 1000L));
+        append(storeJournal, batch("second", 2000L));
+        storeJournal.stop(false);
+
+        segmentList = segments();
+
+        // A single bit flipped within the payload of the last entry
+        byteArray = Files.readAllBytes(segmentList.get(0));
+        byteArray[byteArray.length - 1] ^= 0x01;
+        Files.write(segmentList.get(0), byteArray);
+
+        start().stop(true);
+
+        assertEquals("Replay should end at the damaged entry", List.of("first"), replayedNames());
+    }
+
+    @Test
+    public void failedReplay_keepsSegments() throws Exception {
+
+        StoreJournal storeJournal;
+
+        storeJournal = start();
+        append(storeJournal, batch("first", 1000L));
+        storeJournal.stop(false);
+
+        // The store is not available to write the replayed records
+        storeJournal = new StoreJournal(folder);
+        assertTrue("Start should fail along with its replay",
+                   RestOutput.isNOK(storeJournal.start(storeBatch -> RestOutput.notAvailable())));
+
+        assertEquals("Segment should be kept for the next start", 1, segments().size());
+
+        start().stop(true);
+        assertEquals("Entry should be replayed on the next start", List.of("first"), replayedNames());
+    }
+
+    @Test
+    public void checkpoint_dropsFlushedSegments() throws Exception {
+
+        StoreJournal storeJournal;
+
+        storeJournal = start();
+        append(storeJournal, batch("first", 1000L));
+
+        // Records of the previous segment are flushed, so it is not replayed anymore
+        assertTrue("Checkpoint should succeed", storeJournal.checkpoint(() -> RestOutput.OK).isOK());
+        assertEquals("Only the new segment should remain", 1, segments().size());
+
+        append(storeJournal, batch("second", 2000L));
+        storeJournal.stop(false);
+
+        start().stop(true);
+        assertEquals("Only entries after the checkpoint should be replayed", List.of("second"), replayedNames());
+
+        assertEquals("No segment should remain once flushed", 0, segments().size());
+    }
+}
@@ -0,0 +1,63 @@
+package soccer.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import soccer.base.RestOutput;
+import soccer.base.Result;
+
+public class WriteBehindQueueTest {
+
+    private List<String>                     writtenList;
+    private WriteBehindQueue<String, String> writeBehindQueue;
+
+    @BeforeEach
+    private void initialize() {
+
+        writtenList = new ArrayList<String>();
+
+        // Records keyed by their first letter
+        writeBehindQueue = new WriteBehindQueue<String, String>("test",
+                                                                record -> record.substring(0, 1),
+                                                                this::write,
+                                                                3);
+    }
+
+    private RestOutput<Result> write(List<String> recordList) {
+
+        writtenList.addAll(recordList);
+
+        return RestOutput.OK;
+    }
+
+    @Test
+    public void reserveRoom_thenEnqueueWithoutWaiting() {
+
+        assertTrue("Room for two records should be reserved", writeBehindQueue.reserve(2).isOK());
+
+        writeBehindQueue.enqueueReserved("a1");
+        writeBehindQueue.enqueueReserved("b1");
+        assertEquals("Both records should be pending", 2, writeBehindQueue.depth());
+
+        // A record of a pending key gives its reserved room back
+        assertTrue("Room for one record should be reserved", writeBehindQueue.reserve(1).isOK());
+        writeBehindQueue.enqueueReserved("a2");
+        assertEquals("Records of the same key should coalesce", 2, writeBehindQueue.depth());
+
+        assertTrue("Flush should succeed", writeBehindQueue.flush().isOK());
+
+        writtenList.sort(null);
+        assertEquals("Only the latest record of each key should be written", List.of("a2", "b1"), writtenList);
+
+        // All the room is available again once flushed
+        assertTrue("Room for three records should be reserved", writeBehindQueue.reserve(3).isOK());
+        writeBehindQueue.cancel(3);
+        assertTrue("Cancelled room should be available", writeBehindQueue.enqueue("c1").isOK());
+    }
+}
@@ -0,0 +1,192 @@
+package soccer.store.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import soccer.Setup;
+import soccer.base.RestOutput;
+import soccer.base.Result;
+import soccer.model.PlayerId;
+import soccer.model.PlayerType;
+import soccer.model.TeamId;
+import soccer.store.player.PlayerRecord;
+import soccer.store.team.TeamRecord;
+import soccer.store.user.UserRecord;
+
+public class SnapshotTest {
+
+    private static final String DATABASE_ID = "database-id";
+
+    @TempDir
+    Path                        folder;
+
+    private List<UserRecord>    userRecordList   = new ArrayList<UserRecord>();
+    private List<TeamRecord>    teamRecordList   = new ArrayList<TeamRecord>();
+    private List<PlayerRecord>  playerRecordList = new ArrayList<PlayerRecord>();
+
+    private Path snapshotPath() {
+
+        return folder.resolve("snapshot.bin");
+    }
+
+    private PlayerRecord player(TeamId teamId, String country) {
+
+        return new PlayerRecord(PlayerId.random(),
+                                PlayerType.ATTACKER,
+                                "firstName",
+                                "lastName",
+                                country,
+                                25,
+                                Setup.DEFAULT_PLAYER_ASSET_VALUE,
+                                Setup.PLAYER_NO_TRANSFER_VALUE,
+                                teamId);
+    }
+
+    private SnapshotWriter open(long changeSequence) {
+
+        RestOutput<SnapshotWriter> snapshotWriterOutput;
+
+        snapshotWriterOutput = SnapshotWriter.open(snapshotPath(), DATABASE_ID, changeSequence);
+        assertTrue("Snapshot should open for writing", snapshotWriterOutput.isOK());
+
+        return snapshotWriterOutput.output();
+    }
+
+    private SnapshotReader read() {
+
+        RestOutput<SnapshotReader> snapshotReaderOutput;
+        RestOutput<Result> resultOutput;
+
+        snapshotReaderOutput = SnapshotReader.open(snapshotPath());
+        assertTrue("Snapshot should open for reading", snapshotReaderOutput.isOK());
+
+        resultOutput = snapshotReaderOutput.output()
+                                           .read(userRecordList::add, teamRecordList::add, playerRecordList::add);
+        assertTrue("Snapshot should be read", resultOutput.isOK());
+
+        return snapshotReaderOutput.output();
+    }
+
+    @Test
+    public void writeSnapshot_thenReadSameRecords() {
+
+        SnapshotWriter snapshotWriter;
+        SnapshotReader snapshotReader;
+        TeamId teamId;
+        PlayerRecord playerRecord;
+        TeamRecord teamRecord;
+
+        teamId = TeamId.random();
+        playerRecord = player(teamId, "C\u00f4te d'Ivoire");
+
+        snapshotWriter = open(42L);
+        snapshotWriter.writeUser(new UserRecord("user@soccer.com", "password"));
+        snapshotWriter.writeTeam(new TeamRecord("user@soccer.com", teamId, "team", null, 5000000L));
+        snapshotWriter.writePlayer(playerRecord);
+        assertTrue("Snapshot should be committed", snapshotWriter.commit().isOK());
+
+        snapshotReader = read();
+
+        assertEquals("Change sequence should be kept", 42L, snapshotReader.changeSequence());
+        assertEquals("Database should be kept", DATABASE_ID, snapshotReader.databaseId());
+
+        assertEquals("One user should be read", 1, userRecordList.size());
+        assertEquals("User should be kept", "user@soccer.com", userRecordList.get(0).userId());
+        assertEquals("Password should be kept", "password", userRecordList.get(0).userPassword());
+
+        assertEquals("One team should be read", 1, teamRecordList.size());
+        teamRecord = teamRecordList.get(0);
+        assertEquals("TeamId should be kept", teamId, teamRecord.teamId());
+        assertEquals("Name should be kept", "team", teamRecord.name());
+        assertNull("Missing country should be kept", teamRecord.country());
+        assertEquals("Balance should be kept", Long.valueOf(5000000L), teamRecord.balance());
+
+        assertEquals("One player should be read", 1, playerRecordList.size());
+        assertEquals("PlayerId should be kept", playerRecord.playerId(), playerRecordList.get(0).playerId());
+        assertEquals("Type should be kept", PlayerType.ATTACKER, playerRecordList.get(0).playerType());
+        assertEquals("Country should be kept", "C\u00f4te d'Ivoire", playerRecordList.get(0).country());
+        assertEquals("Team of player should be kept", teamId, playerRecordList.get(0).teamId());
+    }
+
+    @Test
+    public void writeSnapshot_largerThanBuffer() {
+
+        SnapshotWriter snapshotWriter;
+        TeamId teamId;
+        int playerCount;
+
+        teamId = TeamId.random();
+
+        // Several drains of the buffer, and records split across them
+        playerCount = 3 * Setup.SNAPSHOT_BUFFER_SIZE / 64;
+
+        snapshotWriter = open(1L);
+        for (int index = 0; index < playerCount; index++) {
+            snapshotWriter.writePlayer(player(teamId, "country" + index));
+        }
+        assertTrue("Snapshot should be committed", snapshotWriter.commit().isOK());
+
+        read();
+
+        assertEquals("All players should be read", playerCount, playerRecordList.size());
+        assertEquals("Last player should be read last",
+                     "country" + (playerCount - 1),
+                     playerRecordList.get(playerCount - 1).country());
+    }
+
+    @Test
+    public void damagedSnapshot_isRejected() throws Exception {
+
+        SnapshotWriter snapshotWriter;
+        byte[] byteArray;
+
+        snapshotWriter = open(1L);
+        snapshotWriter.writeTeam(new TeamRecord("user@soccer.com", TeamId.random(), "team", "country", 1L));
+        assertTrue("Snapshot should be committed", snapshotWriter.commit().isOK());
+
+        // A single bit flipped within the records
+        byteArray = Files.readAllBytes(snapshotPath());
+        byteArray[byteArray.length / 2] ^= 0x01;
+        Files.write(snapshotPath(), byteArray);
+
+        assertTrue("Damaged snapshot should be a bad request", SnapshotReader.open(snapshotPath()).isBadRequest());
+
+        // A snapshot cut short by a crash
+        Files.write(snapshotPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+        assertTrue("Truncated snapshot should be a bad request", SnapshotReader.open(snapshotPath()).isBadRequest());
+    }
+
+    @Test
+    public void abortedSnapshot_keepsPreviousOne() {
+
+        SnapshotWriter snapshotWriter;
+
+        assertTrue("Missing snapshot should not be found", SnapshotReader.open(snapshotPath()).isNotFound());
+
+        snapshotWriter = open(1L);
+        snapshotWriter.writeUser(new UserRecord("first@soccer.com", "password"));
+        assertTrue("First snapshot should be committed", snapshotWriter.commit().isOK());
+
+        snapshotWriter = open(2L);
+        snapshotWriter.writeUser(new UserRecord("second@soccer.com", "password"));
+        snapshotWriter.abort();
+
+        assertFalse("Temporary file should be deleted",
+                    Files.exists(snapshotPath().resolveSibling(snapshotPath().getFileName() + ".tmp")));
+
+        assertEquals("First snapshot should remain", 1L, read().changeSequence());
+        assertEquals("Only the first user should be read", 1, userRecordList.size());
+        assertEquals("First user should be read", "first@soccer.com", userRecordList.get(0).userId());
+    }
+}